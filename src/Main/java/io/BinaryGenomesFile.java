@@ -0,0 +1,229 @@
+package io;
+
+import model.genomes.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A compact binary form of an input genomes file.
+ *
+ * Format:
+ * magic "CSBG", version
+ * dictionary: number of orthology groups, followed by their ids in order of first appearance
+ * genomes: number of genomes, followed by the id and name of each genome
+ * replicons: number of replicons, followed by the id, genome id, name, number of genes and genes of each replicon, in
+ * ascending order of id. A gene is a varint (orthology group index << 1 | 1 if on the reverse strand).
+ *
+ * Reading the file adds the replicons to GenomesInfo in the same order as {@link GenomesFileParser}, so the genome
+ * ids, replicon ids and alphabet are the same as when parsing the text file it was converted from.
+ */
+public class BinaryGenomesFile {
+
+    private static final byte[] MAGIC = {'C', 'S', 'B', 'G'};
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @return true if the file starts with the magic bytes of the binary genomes format
+     */
+    public static boolean isBinaryGenomesFile(String filePath) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(filePath)) {
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n == -1) {
+                    return false;
+                }
+                read += n;
+            }
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("File " + filePath + " was not found.");
+        }
+        return Arrays.equals(header, MAGIC);
+    }
+
+    public static void write(GenomesInfo genomesInfo, String filePath) throws IOException {
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(filePath), BUFFER_SIZE))) {
+
+            out.write(MAGIC);
+            out.writeInt(VERSION);
+
+            writeGenomes(genomesInfo, out);
+
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("Cannot create file " + filePath);
+        }
+    }
+
+    /**
+     * Writes the dictionary, genomes and replicons sections
+     */
+    static void writeGenomes(GenomesInfo genomesInfo, DataOutputStream out) throws IOException {
+
+        List<Genome> genomes = new ArrayList<>(genomesInfo.getGenomes());
+        genomes.sort(Comparator.comparingInt(Genome::getId));
+
+        List<Replicon> replicons = new ArrayList<>();
+        genomes.forEach(genome -> replicons.addAll(genome.getReplicons()));
+        replicons.sort(Comparator.comparingInt(Replicon::getRepliconId));
+
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (Replicon replicon : replicons) {
+            for (Gene gene : getGenes(replicon)) {
+                dictionary.putIfAbsent(gene.getCogId(), dictionary.size());
+            }
+        }
+
+        writeVarint(out, dictionary.size());
+        for (String cogId : dictionary.keySet()) {
+            out.writeUTF(cogId);
+        }
+
+        writeVarint(out, genomes.size());
+        for (Genome genome : genomes) {
+            out.writeInt(genome.getId());
+            out.writeUTF(genome.getName());
+        }
+
+        writeVarint(out, replicons.size());
+        for (Replicon replicon : replicons) {
+            out.writeInt(replicon.getRepliconId());
+            out.writeInt(replicon.getGenomeId());
+            out.writeUTF(replicon.getName());
+
+            List<Gene> genes = getGenes(replicon);
+            writeVarint(out, genes.size());
+            for (Gene gene : genes) {
+                int strand = gene.getStrand() == Strand.REVERSE ? 1 : 0;
+                writeVarint(out, dictionary.get(gene.getCogId()) << 1 | strand);
+            }
+        }
+    }
+
+    /**
+     * @return the genes of the replicon, without the genes repeated at the end of a circular replicon
+     */
+    private static List<Gene> getGenes(Replicon replicon){
+        return replicon.getGenes().subList(0, replicon.size());
+    }
+
+    public static GenomesInfo read(String filePath, boolean circular) throws IOException, IllegalArgumentException {
+
+        GenomesInfo genomesInfo = new GenomesInfo();
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filePath), BUFFER_SIZE))) {
+
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            int version = in.readInt();
+            if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                throw new IllegalArgumentException("File " + filePath + " is not a binary genomes file of version "
+                        + VERSION);
+            }
+
+            readGenomes(in, genomesInfo, circular);
+
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("File " + filePath + " was not found.");
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IOException("An exception occurred while reading " + filePath);
+        }
+
+        return genomesInfo;
+    }
+
+    /**
+     * Reads the sections written by {@link #writeGenomes(GenomesInfo, DataOutputStream)} into {@code genomesInfo}
+     */
+    static void readGenomes(DataInputStream in, GenomesInfo genomesInfo, boolean circular) throws IOException {
+
+        //the code of each orthology group on the forward strand and on the reverse strand
+        GeneTable geneTable = genomesInfo.getGeneTable();
+        int[][] dictionary = new int[readVarint(in)][];
+        for (int i = 0; i < dictionary.length; i++) {
+            String cogId = in.readUTF();
+            dictionary[i] = new int[]{geneTable.encode(cogId, Strand.FORWARD), geneTable.encode(cogId, Strand.REVERSE)};
+        }
+
+        Map<Integer, Genome> genomes = new HashMap<>();
+        int genomesCount = readVarint(in);
+        for (int i = 0; i < genomesCount; i++) {
+            int genomeId = in.readInt();
+            genomes.put(genomeId, new Genome(in.readUTF(), genomeId));
+        }
+
+        int repliconsCount = readVarint(in);
+        for (int i = 0; i < repliconsCount; i++) {
+            int repliconId = in.readInt();
+            int genomeId = in.readInt();
+            String repliconName = in.readUTF();
+
+            int[] repliconGenes = new int[readVarint(in)];
+            for (int j = 0; j < repliconGenes.length; j++) {
+                int gene = readVarint(in);
+                repliconGenes[j] = dictionary[gene >>> 1][gene & 1];
+            }
+
+            Genome genome = genomes.get(genomeId);
+            Replicon replicon = new Replicon(repliconName, repliconId, genomeId, Strand.FORWARD, geneTable,
+                    repliconGenes, circular);
+
+            genome.addReplicon(replicon);
+
+            genomesInfo.addGenome(genome);
+            genomesInfo.addRepliconInfo(replicon);
+        }
+    }
+
+    static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Converts an input genomes file to the binary format
+     *
+     * Usage: java -cp CSBFinder.jar io.BinaryGenomesFile [input genomes file] [output binary file]
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java -cp CSBFinder.jar io.BinaryGenomesFile INPUT_GENOMES_FILE OUTPUT_FILE");
+            System.exit(1);
+        }
+
+        try {
+            GenomesInfo genomesInfo = Parsers.parseGenomesFile(args[0], false,
+                    Runtime.getRuntime().availableProcessors());
+            write(genomesInfo, args[1]);
+
+            System.out.println(String.format("%d genomes and %d replicons written to %s",
+                    genomesInfo.getNumberOfGenomes(), genomesInfo.getNumberOfReplicons(), args[1]));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
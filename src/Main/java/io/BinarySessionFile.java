@@ -0,0 +1,433 @@
+package io;
+
+import model.genomes.Gene;
+import model.genomes.GeneTable;
+import model.genomes.GenomesInfo;
+import model.genomes.Strand;
+import model.patterns.InstanceLocation;
+import model.patterns.Locations;
+import model.patterns.Pattern;
+import model.postprocess.Family;
+import mvc.view.graphics.GeneColors;
+
+import java.awt.*;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * A binary session file, in which the instances of each pattern are loaded only when they are first accessed.
+ *
+ * Format:
+ * magic "CSBS", version
+ * table of contents: offsets of the genomes, colors, instances and catalog sections
+ * header: the arguments of the session
+ * genomes: as in {@link BinaryGenomesFile}
+ * colors: number of colors, followed by the orthology group id and RGB value of each color
+ * instances: a block per pattern, with the number of locations followed by the genome id, replicon id, start index
+ * and length of each location, sorted by genome, replicon and start index
+ * catalog: number of patterns, followed by the id, score, family id, number of genomes with an instance, genes,
+ * and the offset, length and number of locations of the instances block of each pattern
+ *
+ * The genomes and catalog are read when the file is opened. The instances section is memory mapped in segments that
+ * contain whole blocks, and a segment is mapped when one of its blocks is first accessed.
+ */
+public class BinarySessionFile {
+
+    private static final byte[] MAGIC = {'C', 'S', 'B', 'S'};
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Position of the table of contents, right after the magic and version
+     */
+    private static final long TOC_OFFSET = MAGIC.length + 4;
+    private static final int TOC_SIZE = 4 * 8;
+
+    /**
+     * Maximal size of a mapped segment of the instances section, unless a single block is larger
+     */
+    private static final long MAX_SEGMENT_SIZE = 1 << 28;
+
+    /**
+     * @return true if the file starts with the magic bytes of the binary session format
+     */
+    public static boolean isBinarySessionFile(String filePath) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(filePath)) {
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n == -1) {
+                    return false;
+                }
+                read += n;
+            }
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("File " + filePath + " was not found.");
+        }
+        return Arrays.equals(header, MAGIC);
+    }
+
+    /**
+     * Writes the session to a temporary file that then replaces {@code filePath}, so that a session that was loaded
+     * from {@code filePath} can be saved to the same path while its instances are still read from the old file
+     */
+    public static void write(List<Family> families, GenomesInfo genomesInfo, String arguments, GeneColors colors,
+                             String filePath) throws IOException {
+
+        Path path = Paths.get(filePath).toAbsolutePath();
+        Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+        try {
+            try (FileOutputStream fileOut = new FileOutputStream(tempPath.toFile());
+                 CountingOutputStream counter = new CountingOutputStream(
+                         new BufferedOutputStream(fileOut, BUFFER_SIZE));
+                 DataOutputStream out = new DataOutputStream(counter)) {
+
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.write(new byte[TOC_SIZE]);
+
+                out.writeUTF(arguments);
+
+                long genomesOffset = counter.getCount();
+                BinaryGenomesFile.writeGenomes(genomesInfo, out);
+
+                long colorsOffset = counter.getCount();
+                writeColors(colors, out);
+
+                long instancesOffset = counter.getCount();
+                List<Pattern> patterns = new ArrayList<>();
+                List<Integer> familyIds = new ArrayList<>();
+                long[] blockOffsets = new long[countPatterns(families) + 1];
+                int[] locationsCounts = new int[blockOffsets.length - 1];
+                for (Family family : families) {
+                    for (Pattern pattern : family.getPatterns()) {
+                        blockOffsets[patterns.size()] = counter.getCount();
+                        locationsCounts[patterns.size()] = writeInstances(pattern, out);
+                        patterns.add(pattern);
+                        familyIds.add(family.getFamilyId());
+                    }
+                }
+
+                long catalogOffset = counter.getCount();
+                blockOffsets[patterns.size()] = catalogOffset;
+
+                BinaryGenomesFile.writeVarint(out, patterns.size());
+                for (int i = 0; i < patterns.size(); i++) {
+                    writePattern(patterns.get(i), familyIds.get(i), out);
+                    out.writeLong(blockOffsets[i]);
+                    out.writeInt((int) (blockOffsets[i + 1] - blockOffsets[i]));
+                    out.writeInt(locationsCounts[i]);
+                }
+                out.flush();
+
+                ByteBuffer toc = ByteBuffer.allocate(TOC_SIZE);
+                toc.putLong(genomesOffset).putLong(colorsOffset).putLong(instancesOffset).putLong(catalogOffset);
+                toc.flip();
+                FileChannel channel = fileOut.getChannel();
+                channel.position(TOC_OFFSET);
+                while (toc.hasRemaining()) {
+                    channel.write(toc);
+                }
+            }
+
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw new IOException("Cannot create file " + filePath);
+        }
+    }
+
+    /**
+     * Counts the written bytes, since {@link DataOutputStream#size()} is limited to 2GB
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out){
+            super(out);
+            count = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount(){
+            return count;
+        }
+    }
+
+    private static int countPatterns(List<Family> families){
+        return families.stream().mapToInt(family -> family.getPatterns().size()).sum();
+    }
+
+    private static void writeColors(GeneColors colors, DataOutputStream out) throws IOException {
+        List<Map.Entry<String, Color>> entries = new ArrayList<>();
+        colors.getGeneToColor().forEachRemaining(entries::add);
+
+        BinaryGenomesFile.writeVarint(out, entries.size());
+        for (Map.Entry<String, Color> entry : entries) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().getRGB());
+        }
+    }
+
+    /**
+     * @return the number of written locations
+     */
+    private static int writeInstances(Pattern pattern, DataOutputStream out) throws IOException {
+        List<InstanceLocation> locations = pattern.getPatternLocations().getSortedLocations();
+
+        BinaryGenomesFile.writeVarint(out, locations.size());
+        for (InstanceLocation location : locations) {
+            BinaryGenomesFile.writeVarint(out, location.getGenomeId());
+            BinaryGenomesFile.writeVarint(out, location.getRepliconId());
+            BinaryGenomesFile.writeVarint(out, location.getActualStartIndex());
+            BinaryGenomesFile.writeVarint(out, location.getLength());
+        }
+        return locations.size();
+    }
+
+    private static void writePattern(Pattern pattern, int familyId, DataOutputStream out) throws IOException {
+        out.writeUTF(String.valueOf(pattern.getPatternId()));
+        out.writeDouble(pattern.getScore());
+        out.writeInt(familyId);
+        out.writeInt(pattern.getInstancesPerGenomeCount());
+
+        Gene[] genes = pattern.getPatternGenes();
+        BinaryGenomesFile.writeVarint(out, genes.length);
+        for (Gene gene : genes) {
+            out.writeUTF(gene.getCogId());
+            out.writeByte(gene.getStrand().ordinal());
+        }
+    }
+
+    /**
+     * @return the arguments of the session
+     */
+    public static String readArguments(String filePath) throws IOException, IllegalArgumentException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filePath)))) {
+            readHeader(in, filePath);
+            in.readFully(new byte[TOC_SIZE]);
+            return in.readUTF();
+
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("File " + filePath + " was not found.");
+        } catch (IOException e) {
+            throw new IOException("An exception occurred while reading " + filePath);
+        }
+    }
+
+    /**
+     * Reads the genomes, colors and families of the session. The instances of the patterns are read when they are
+     * first accessed.
+     */
+    public static void read(List<Family> families, String filePath, GenomesInfo genomesInfo, GeneColors colors,
+                            boolean circular) throws IOException, IllegalArgumentException {
+
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+
+            DataInputStream in = openSection(channel, 0);
+            readHeader(in, filePath);
+            long genomesOffset = in.readLong();
+            long colorsOffset = in.readLong();
+            long instancesOffset = in.readLong();
+            long catalogOffset = in.readLong();
+
+            BinaryGenomesFile.readGenomes(openSection(channel, genomesOffset), genomesInfo, circular);
+
+            readColors(openSection(channel, colorsOffset), colors);
+
+            readCatalog(openSection(channel, catalogOffset), filePath, genomesInfo, families);
+
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("File " + filePath + " was not found.");
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IOException("An exception occurred while reading " + filePath);
+        }
+    }
+
+    private static void readHeader(DataInputStream in, String filePath) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        int version = in.readInt();
+        if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+            throw new IllegalArgumentException("File " + filePath + " is not a binary session file of version "
+                    + VERSION);
+        }
+    }
+
+    /**
+     * @return a stream that reads the file from {@code offset}, it is closed with the channel
+     */
+    private static DataInputStream openSection(FileChannel channel, long offset) throws IOException {
+        channel.position(offset);
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+    }
+
+    private static void readColors(DataInputStream in, GeneColors colors) throws IOException {
+        int count = BinaryGenomesFile.readVarint(in);
+        for (int i = 0; i < count; i++) {
+            String cogId = in.readUTF();
+            colors.setColor(cogId, new Color(in.readInt()));
+        }
+    }
+
+    private static void readCatalog(DataInputStream in, String filePath, GenomesInfo genomesInfo,
+                                    List<Family> families) throws IOException {
+
+        InstanceBlocks blocks = new InstanceBlocks(filePath);
+
+        HashMap<Integer, Family> familiesMap = new HashMap<>();
+        Strand[] strands = Strand.values();
+        GeneTable geneTable = genomesInfo.getGeneTable();
+
+        int patternsCount = BinaryGenomesFile.readVarint(in);
+        for (int i = 0; i < patternsCount; i++) {
+            String patternId = in.readUTF();
+            double score = in.readDouble();
+            int familyId = in.readInt();
+            int instancesPerGenomeCount = in.readInt();
+
+            Gene[] genes = new Gene[BinaryGenomesFile.readVarint(in)];
+            for (int j = 0; j < genes.length; j++) {
+                String cogId = in.readUTF();
+                genes[j] = geneTable.getGene(cogId, strands[in.readByte()]);
+            }
+
+            long blockOffset = in.readLong();
+            int blockLength = in.readInt();
+            int locationsCount = in.readInt();
+
+            Pattern pattern = new Pattern(patternId, genes);
+            pattern.setScore(score);
+            pattern.setFamilyId(familyId);
+            int blockIndex = blocks.addBlock(blockOffset, blockLength);
+            pattern.setPatternLocations(new Locations(() -> blocks.readLocations(blockIndex, locationsCount)),
+                    instancesPerGenomeCount);
+
+            Family family = Parsers.parseFamily(familiesMap, pattern, genomesInfo);
+            familiesMap.put(family.getFamilyId(), family);
+        }
+
+        familiesMap.values().forEach(Family::sortPatternsAndSetScore);
+
+        families.addAll(familiesMap.values());
+    }
+
+    /**
+     * The instance blocks of the patterns in the instances section, mapped in segments on demand
+     */
+    private static class InstanceBlocks {
+
+        private final String filePath;
+
+        private final List<Long> blockOffsets;
+        private final List<Integer> blockSegments;
+
+        private final List<Long> segmentOffsets;
+        private final List<Long> segmentEnds;
+        private final List<MappedByteBuffer> segments;
+
+        InstanceBlocks(String filePath){
+            this.filePath = filePath;
+            blockOffsets = new ArrayList<>();
+            blockSegments = new ArrayList<>();
+            segmentOffsets = new ArrayList<>();
+            segmentEnds = new ArrayList<>();
+            segments = new ArrayList<>();
+        }
+
+        /**
+         * Adds the next block, blocks are added in ascending order of offset
+         *
+         * @return the index of the block
+         */
+        int addBlock(long offset, int length){
+            int last = segmentOffsets.size() - 1;
+            if (last == -1 || offset + length - segmentOffsets.get(last) > MAX_SEGMENT_SIZE) {
+                segmentOffsets.add(offset);
+                segmentEnds.add(offset + length);
+                segments.add(null);
+                last++;
+            } else {
+                segmentEnds.set(last, offset + length);
+            }
+
+            blockOffsets.add(offset);
+            blockSegments.add(last);
+            return blockOffsets.size() - 1;
+        }
+
+        List<InstanceLocation> readLocations(int blockIndex, int locationsCount){
+            int segmentIndex = blockSegments.get(blockIndex);
+            ByteBuffer block = getSegment(segmentIndex).duplicate();
+            block.position((int) (blockOffsets.get(blockIndex) - segmentOffsets.get(segmentIndex)));
+
+            int count = readVarint(block);
+            if (count != locationsCount) {
+                throw new UncheckedIOException(new IOException("An exception occurred while reading " + filePath));
+            }
+
+            List<InstanceLocation> locations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int genomeId = readVarint(block);
+                int repliconId = readVarint(block);
+                int startIndex = readVarint(block);
+                int length = readVarint(block);
+
+                locations.add(new InstanceLocation(repliconId, genomeId, startIndex, length, Strand.FORWARD, 0, 0,
+                        repliconId));
+            }
+            return locations;
+        }
+
+        private synchronized MappedByteBuffer getSegment(int segmentIndex){
+            MappedByteBuffer segment = segments.get(segmentIndex);
+            if (segment == null) {
+                long offset = segmentOffsets.get(segmentIndex);
+                try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+                    segment = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                            segmentEnds.get(segmentIndex) - offset);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(new IOException("An exception occurred while reading " + filePath));
+                }
+                segments.set(segmentIndex, segment);
+            }
+            return segment;
+        }
+
+        private static int readVarint(ByteBuffer buffer) {
+            int value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = buffer.get() & 0xff;
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+    }
+}
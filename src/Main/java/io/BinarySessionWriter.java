@@ -0,0 +1,64 @@
+package io;
+
+import model.cogs.CogInfo;
+import model.genomes.GenomesInfo;
+import model.postprocess.Family;
+import mvc.view.graphics.GeneColors;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writes a session file in the format of {@link BinarySessionFile}
+ */
+public class BinarySessionWriter implements PatternsWriter {
+
+    private GenomesInfo genomesInfo;
+
+    private GeneColors colors;
+
+    private String arguments;
+
+    private int countPrintedPatterns;
+
+    private String path;
+
+    public BinarySessionWriter(String path, GenomesInfo genomesInfo, GeneColors colors){
+        this.path = path;
+        this.genomesInfo = genomesInfo;
+        this.colors = colors;
+
+        arguments = "";
+        countPrintedPatterns = 0;
+    }
+
+    @Override
+    public void write(List<Family> families, CogInfo cogInfo) {
+        try {
+            BinarySessionFile.write(families, genomesInfo, arguments, colors, path);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+        families.forEach(family -> countPrintedPatterns += family.getPatterns().size());
+    }
+
+    @Override
+    public void writeHeader(String header) {
+        arguments = header;
+    }
+
+    @Override
+    public void closeFile() {
+    }
+
+    @Override
+    public int getCountPrintedPatterns() {
+        return countPrintedPatterns;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+}
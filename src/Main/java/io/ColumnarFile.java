@@ -0,0 +1,378 @@
+package io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A binary table stored in columns, so that it can be memory mapped by analysis tools (e.g. numpy.memmap).
+ *
+ * Format, all numbers are little-endian:
+ * magic "CSBT", int32 version, int32 number of columns
+ * per column: int16 name length, UTF-8 name, int8 width in bytes, int64 offset, int64 number of values
+ * int64 offset of the dictionary, int32 number of strings in the dictionary
+ * the values of each column, fixed-width and contiguous, starting at the column offset (8-byte aligned)
+ * dictionary: int64 offsets of the strings (one more than their number, relative to the end of the offsets),
+ * followed by the UTF-8 bytes of the strings
+ *
+ * Columns of width 1 and 4 contain integers, columns of width 8 contain doubles. Strings are stored in columns as
+ * their int32 index in the dictionary.
+ */
+public class ColumnarFile {
+
+    private static final byte[] MAGIC = {'C', 'S', 'B', 'T'};
+    private static final int VERSION = 1;
+
+    private static final int COLUMN_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * @return true if the file starts with the magic bytes of a columnar file
+     */
+    public static boolean isColumnarFile(String filePath) throws IOException {
+        byte[] header = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(filePath)) {
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n == -1) {
+                    return false;
+                }
+                read += n;
+            }
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("File " + filePath + " was not found.");
+        }
+        return Arrays.equals(header, MAGIC);
+    }
+
+    /**
+     * Writes the values of each column in a single pass over the rows. The number of values of each column must be
+     * known in advance.
+     */
+    public static class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final String path;
+
+        private final String[] names;
+        private final int[] widths;
+        private final long[] sizes;
+
+        private final long[] offsets;
+        private final long[] written;
+        private final ByteBuffer[] buffers;
+
+        private final Map<String, Integer> dictionary;
+        private final List<byte[]> strings;
+
+        private final long dataEnd;
+
+        /**
+         * @param widths width in bytes of the values of each column: 1, 4 or 8
+         * @param sizes number of values of each column
+         */
+        public Writer(String path, String[] names, int[] widths, long[] sizes) throws IOException {
+            this.path = path;
+            this.names = names;
+            this.widths = widths;
+            this.sizes = sizes;
+
+            channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+
+            long position = align(headerSize(names));
+            offsets = new long[names.length];
+            for (int i = 0; i < names.length; i++) {
+                offsets[i] = position;
+                position = align(position + widths[i] * sizes[i]);
+            }
+            dataEnd = position;
+
+            written = new long[names.length];
+            buffers = new ByteBuffer[names.length];
+            for (int i = 0; i < names.length; i++) {
+                buffers[i] = ByteBuffer.allocate(COLUMN_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            dictionary = new HashMap<>();
+            strings = new ArrayList<>();
+        }
+
+        private static int headerSize(String[] names){
+            int size = MAGIC.length + 4 + 4;
+            for (String name : names) {
+                size += 2 + name.getBytes(StandardCharsets.UTF_8).length + 1 + 8 + 8;
+            }
+            return size + 8 + 4;
+        }
+
+        private static long align(long position){
+            return (position + 7) & ~7L;
+        }
+
+        /**
+         * @return the index of the string in the dictionary
+         */
+        public int addString(String str){
+            Integer index = dictionary.get(str);
+            if (index == null) {
+                index = strings.size();
+                dictionary.put(str, index);
+                strings.add(str.getBytes(StandardCharsets.UTF_8));
+            }
+            return index;
+        }
+
+        public void putByte(int column, int value) throws IOException {
+            reserve(column, 1).put((byte) value);
+        }
+
+        public void putInt(int column, int value) throws IOException {
+            reserve(column, 4).putInt(value);
+        }
+
+        public void putLong(int column, long value) throws IOException {
+            reserve(column, 8).putLong(value);
+        }
+
+        public void putDouble(int column, double value) throws IOException {
+            reserve(column, 8).putDouble(value);
+        }
+
+        private ByteBuffer reserve(int column, int width) throws IOException {
+            if (widths[column] != width) {
+                throw new IllegalArgumentException("Column " + names[column] + " has width " + widths[column]);
+            }
+            if (written[column] == sizes[column]) {
+                throw new IllegalStateException("Column " + names[column] + " is full");
+            }
+            ByteBuffer buffer = buffers[column];
+            if (buffer.remaining() < width) {
+                flush(column);
+            }
+            written[column]++;
+            return buffer;
+        }
+
+        private void flush(int column) throws IOException {
+            ByteBuffer buffer = buffers[column];
+            buffer.flip();
+            long position = offsets[column] + (written[column] - buffer.remaining() / widths[column]) * widths[column];
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                for (int i = 0; i < names.length; i++) {
+                    flush(i);
+                    if (written[i] != sizes[i]) {
+                        throw new IllegalStateException("Column " + names[i] + " has " + written[i] + " of "
+                                + sizes[i] + " values");
+                    }
+                }
+
+                writeDictionary();
+                writeHeader();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void writeDictionary() throws IOException {
+            ByteBuffer stringOffsets = ByteBuffer.allocate(8 * (strings.size() + 1)).order(ByteOrder.LITTLE_ENDIAN);
+            long offset = 0;
+            stringOffsets.putLong(offset);
+            for (byte[] str : strings) {
+                offset += str.length;
+                stringOffsets.putLong(offset);
+            }
+            stringOffsets.flip();
+
+            long position = dataEnd;
+            while (stringOffsets.hasRemaining()) {
+                position += channel.write(stringOffsets, position);
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(COLUMN_BUFFER_SIZE);
+            for (byte[] str : strings) {
+                int written = 0;
+                while (written < str.length) {
+                    int length = Math.min(buffer.remaining(), str.length - written);
+                    buffer.put(str, written, length);
+                    written += length;
+                    if (!buffer.hasRemaining()) {
+                        buffer.flip();
+                        while (buffer.hasRemaining()) {
+                            position += channel.write(buffer, position);
+                        }
+                        buffer.clear();
+                    }
+                }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(headerSize(names)).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(names.length);
+            for (int i = 0; i < names.length; i++) {
+                byte[] name = names[i].getBytes(StandardCharsets.UTF_8);
+                header.putShort((short) name.length);
+                header.put(name);
+                header.put((byte) widths[i]);
+                header.putLong(offsets[i]);
+                header.putLong(sizes[i]);
+            }
+            header.putLong(dataEnd);
+            header.putInt(strings.size());
+            header.flip();
+
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * Reads the columns of a file by memory mapping them
+     */
+    public static class Reader {
+
+        private final String path;
+
+        private final Map<String, Column> columns;
+
+        private final String[] strings;
+
+        public Reader(String path) throws IOException, IllegalArgumentException {
+            this.path = path;
+            columns = new HashMap<>();
+
+            try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+
+                ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                        Math.min(channel.size(), 1 << 16)).order(ByteOrder.LITTLE_ENDIAN);
+
+                byte[] magic = new byte[MAGIC.length];
+                header.get(magic);
+                int version = header.getInt();
+                if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+                    throw new IllegalArgumentException("File " + path + " is not a columnar file of version "
+                            + VERSION);
+                }
+
+                int columnsCount = header.getInt();
+                for (int i = 0; i < columnsCount; i++) {
+                    byte[] name = new byte[header.getShort()];
+                    header.get(name);
+                    int width = header.get();
+                    long offset = header.getLong();
+                    long size = header.getLong();
+
+                    String columnName = new String(name, StandardCharsets.UTF_8);
+                    MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, offset, width * size);
+                    columns.put(columnName, new Column(column.order(ByteOrder.LITTLE_ENDIAN), width, size));
+                }
+
+                long dictionaryOffset = header.getLong();
+                strings = new String[header.getInt()];
+
+                ByteBuffer stringOffsets = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                        8L * (strings.length + 1)).order(ByteOrder.LITTLE_ENDIAN);
+                long bytesOffset = dictionaryOffset + 8L * (strings.length + 1);
+                ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, bytesOffset,
+                        stringOffsets.getLong(8 * strings.length));
+                for (int i = 0; i < strings.length; i++) {
+                    int start = (int) stringOffsets.getLong(8 * i);
+                    int end = (int) stringOffsets.getLong(8 * (i + 1));
+                    byte[] str = new byte[end - start];
+                    bytes.position(start);
+                    bytes.get(str);
+                    strings[i] = new String(str, StandardCharsets.UTF_8);
+                }
+
+            } catch (NoSuchFileException e) {
+                throw new FileNotFoundException("File " + path + " was not found.");
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException if the file does not contain the column
+         */
+        public Column getColumn(String name){
+            Column column = columns.get(name);
+            if (column == null) {
+                throw new IllegalArgumentException("File " + path + " does not contain the column " + name);
+            }
+            return column;
+        }
+
+        /**
+         * @return the string with index {@code index} in the dictionary
+         */
+        public String getString(int index){
+            return strings[index];
+        }
+    }
+
+    /**
+     * The values of a column, read from a mapped buffer
+     */
+    public static class Column {
+
+        private final ByteBuffer values;
+        private final int width;
+        private final long size;
+
+        Column(ByteBuffer values, int width, long size){
+            this.values = values;
+            this.width = width;
+            this.size = size;
+        }
+
+        public long size(){
+            return size;
+        }
+
+        public int getWidth(){
+            return width;
+        }
+
+        public byte getByte(int row){
+            return values.get(row);
+        }
+
+        public int getInt(int row){
+            return values.getInt(row * 4);
+        }
+
+        public long getLong(int row){
+            return values.getLong(row * 8);
+        }
+
+        public double getDouble(int row){
+            return values.getDouble(row * 8);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io;
+
+import model.OutputType;
+import model.cogs.CogInfo;
+import model.genomes.Gene;
+import model.genomes.Genome;
+import model.genomes.GenomesInfo;
+import model.patterns.InstanceLocation;
+import model.patterns.Pattern;
+import model.postprocess.Family;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the catalog and the instances in the format of {@link ColumnarFile}.
+ *
+ * Catalog columns: id, length, score, count, family, genes_start (the index in the gene columns of the first gene
+ * of each pattern, followed by the number of genes), gene, strand (1 forward, -1 reverse, 0 none).
+ * Instances columns: pattern (the row of the pattern in the catalog), genome, replicon, start, end.
+ * The id, gene, genome and replicon columns are indexes in the dictionary of the file.
+ */
+public class ColumnarWriter implements PatternsWriter {
+
+    public static final String[] CATALOG_COLUMNS = {"id", "length", "score", "count", "family", "genes_start",
+            "gene", "strand"};
+    private static final int[] CATALOG_WIDTHS = {4, 4, 8, 4, 4, 4, 4, 1};
+
+    public static final String[] INSTANCES_COLUMNS = {"pattern", "genome", "replicon", "start", "end"};
+    private static final int[] INSTANCES_WIDTHS = {4, 4, 4, 4, 4};
+
+    private GenomesInfo genomesInfo;
+
+    private int countPrintedPatterns;
+
+    private String path;
+    private String instancesPath;
+
+    /**
+     * @param path path of the catalog file, without extension
+     * @param instancesPath path of the instances file, without extension
+     */
+    public ColumnarWriter(String path, String instancesPath, GenomesInfo genomesInfo){
+        this.path = path + "." + OutputType.COLUMNAR.extension;
+        this.instancesPath = instancesPath + "." + OutputType.COLUMNAR.extension;
+        this.genomesInfo = genomesInfo;
+
+        countPrintedPatterns = 0;
+    }
+
+    @Override
+    public void write(List<Family> families, CogInfo cogInfo) {
+        try {
+            writeCatalog(families);
+            writeInstances(families);
+        } catch (IOException e) {
+            System.out.println("Cannot create file " + path);
+            System.exit(1);
+        }
+    }
+
+    private void writeCatalog(List<Family> families) throws IOException {
+        long patternsCount = 0;
+        long genesCount = 0;
+        for (Family family : families) {
+            for (Pattern pattern : family.getPatterns()) {
+                patternsCount++;
+                genesCount += pattern.getLength();
+            }
+        }
+
+        long[] sizes = {patternsCount, patternsCount, patternsCount, patternsCount, patternsCount, patternsCount + 1,
+                genesCount, genesCount};
+
+        try (ColumnarFile.Writer catalog = new ColumnarFile.Writer(path, CATALOG_COLUMNS, CATALOG_WIDTHS, sizes)) {
+            int genesStart = 0;
+            for (Family family : families) {
+                for (Pattern pattern : family.getPatterns()) {
+                    catalog.putInt(0, catalog.addString(String.valueOf(pattern.getPatternId())));
+                    catalog.putInt(1, pattern.getLength());
+                    catalog.putDouble(2, pattern.getScore());
+                    catalog.putInt(3, pattern.getInstancesPerGenomeCount());
+                    catalog.putInt(4, family.getFamilyId());
+                    catalog.putInt(5, genesStart);
+
+                    for (Gene gene : pattern.getPatternGenes()) {
+                        catalog.putInt(6, catalog.addString(gene.getCogId()));
+                        catalog.putByte(7, gene.getStrand().numericValue);
+                    }
+                    genesStart += pattern.getPatternGenes().length;
+
+                    countPrintedPatterns++;
+                }
+            }
+            catalog.putInt(5, genesStart);
+        }
+    }
+
+    private void writeInstances(List<Family> families) throws IOException {
+        long locationsCount = 0;
+        for (Family family : families) {
+            for (Pattern pattern : family.getPatterns()) {
+                locationsCount += pattern.getPatternLocations().getInstanceLocations().size();
+            }
+        }
+
+        long[] sizes = new long[INSTANCES_COLUMNS.length];
+        Arrays.fill(sizes, locationsCount);
+
+        try (ColumnarFile.Writer instances = new ColumnarFile.Writer(instancesPath, INSTANCES_COLUMNS,
+                INSTANCES_WIDTHS, sizes)) {
+
+            //the dictionary indexes of the names of the genomes and replicons
+            int[] genomeNames = new int[genomesInfo.getNumberOfGenomes()];
+            int[] repliconNames = new int[genomesInfo.getNumberOfReplicons()];
+            for (Genome genome : genomesInfo.getGenomes()) {
+                genomeNames[genome.getId()] = instances.addString(genome.getName());
+                genome.getReplicons().forEach(replicon -> repliconNames[replicon.getRepliconId()] =
+                        instances.addString(replicon.getName()));
+            }
+
+            int row = 0;
+            for (Family family : families) {
+                for (Pattern pattern : family.getPatterns()) {
+                    for (InstanceLocation location : pattern.getPatternLocations().getSortedLocations()) {
+                        instances.putInt(0, row);
+                        instances.putInt(1, genomeNames[location.getGenomeId()]);
+                        instances.putInt(2, repliconNames[location.getRepliconId()]);
+                        instances.putInt(3, location.getActualStartIndex());
+                        instances.putInt(4, location.getActualEndIndex());
+                    }
+                    row++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void writeHeader(String header) {
+    }
+
+    @Override
+    public void closeFile() {
+    }
+
+    @Override
+    public int getCountPrintedPatterns() {
+        return countPrintedPatterns;
+    }
+
+    @Override
+    public String getPath() {
+        return path;
+    }
+
+    public String getInstancesPath() {
+        return instancesPath;
+    }
+}
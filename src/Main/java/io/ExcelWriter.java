@@ -6,6 +6,7 @@ import model.genomes.Gene;
 import model.OutputType;
 import model.patterns.Pattern;
 import model.postprocess.Family;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
@@ -13,131 +14,303 @@ import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import java.io.FileOutputStream;
 import java.math.RoundingMode;
 import java.text.DecimalFormat;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
+ * Writes the catalog to xlsx workbooks.
+ *
+ * A workbook contains at most as many CSBs as the rows of a sheet, additional CSBs are written to additional
+ * workbooks (shards) named [path]_2.xlsx, [path]_3.xlsx, ..., which are generated concurrently. Descriptions that
+ * exceed the rows of a sheet continue in additional sheets of the same workbook.
  */
 public class ExcelWriter implements PatternsWriter{
 
+    private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+
+    private static final String CATALOG_SHEET = "Catalog";
+    private static final String FILTERED_PATTERNS_SHEET = "Filtered CSBs";
+    private static final String DESCRIPTION_SHEET = "CSBs description";
+
     String path;
 
-    private FileOutputStream catalogFile;
-    private SXSSFWorkbook catalogWorkbook;
-    //sheets
-    private Sheet catalogSheet;
-    private Sheet filteredPatternsSheet;
-    private Sheet patternsDescriptionSheet;
+    private String pathWithoutExtension;
 
     boolean cogInfoExists;
     boolean includeFamilies;
 
-    private int countPrintedPatterns;
-    private int countPrintedFilteredPatterns;
-    private int nextLineIndexDescSheet;
+    private String header;
 
+    private int numOfThreads;
+    /**
+     * Maximal number of rows in a sheet, including the header
+     */
+    private int maxRows;
 
-    private static final DecimalFormat DF = new DecimalFormat("#.####");
+    private int countPrintedPatterns;
+    private int countShards;
 
     public ExcelWriter(boolean cogInfoExists, boolean includeFamilies, String path){
+        this(cogInfoExists, includeFamilies, path, 1);
+    }
+
+    /**
+     * @param numOfThreads number of shards that are generated concurrently
+     */
+    public ExcelWriter(boolean cogInfoExists, boolean includeFamilies, String path, int numOfThreads){
+        this(cogInfoExists, includeFamilies, path, numOfThreads, MAX_ROWS);
+    }
 
-        DF.setRoundingMode(RoundingMode.HALF_UP);
+    /**
+     * @param maxRows maximal number of rows in a sheet, at most the row limit of xlsx
+     */
+    public ExcelWriter(boolean cogInfoExists, boolean includeFamilies, String path, int numOfThreads,
+                       int maxRows){
 
         this.cogInfoExists = cogInfoExists;
         this.includeFamilies = includeFamilies;
-        this.path = path + "." + OutputType.XLSX.extension;
+        this.pathWithoutExtension = path;
+        this.path = getShardPath(0);
+
+        this.numOfThreads = Math.max(1, numOfThreads);
+        this.maxRows = Math.min(maxRows, MAX_ROWS);
+
+        header = null;
 
         countPrintedPatterns = 0;
-        countPrintedFilteredPatterns = 0;
-        nextLineIndexDescSheet = 0;
+        countShards = 0;
+    }
 
-        init();
+    /**
+     * @return the path of the workbook with index {@code shard}
+     */
+    private String getShardPath(int shard){
+        String suffix = shard == 0 ? "" : "_" + (shard + 1);
+        return pathWithoutExtension + suffix + "." + OutputType.XLSX.extension;
     }
 
-    private void init(){
+    public List<String> getShardPaths(){
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, countShards); i++) {
+            paths.add(getShardPath(i));
+        }
+        return paths;
+    }
 
-        try {
-            catalogFile = new FileOutputStream(path);
+    public void write(List<Family> families, CogInfo cogInfo) {
 
-            catalogWorkbook = new SXSSFWorkbook(10);
-            catalogSheet = catalogWorkbook.createSheet("Catalog");
+        List<List<FamilyPart>> shards = splitToShards(families);
+        Map<String, String> cogDescriptions = getCogDescriptions(cogInfo);
 
-            if (includeFamilies) {
-                filteredPatternsSheet = catalogWorkbook.createSheet("Filtered CSBs");
-            }
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            int shardIndex = countShards + i;
+            List<FamilyPart> shard = shards.get(i);
+            tasks.add(Executors.callable(() -> writeShard(shardIndex, shard, cogInfo, cogDescriptions)));
+        }
+        countShards += shards.size();
 
-            if (cogInfoExists){
-                patternsDescriptionSheet = catalogWorkbook.createSheet("CSBs description");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numOfThreads, Math.max(1, tasks.size())));
+        try {
+            for (Future<Object> future : executor.invokeAll(tasks)) {
+                future.get();
             }
-        } catch (Exception e) {
-            System.out.println("Cannot create file " + path + ". Close the file first.");
+        } catch (InterruptedException | ExecutionException e) {
+            System.out.println("A problem occurred while trying to write to file " + path);
+            System.exit(1);
+        } finally {
+            executor.shutdown();
         }
 
+        families.forEach(family -> countPrintedPatterns += family.getPatterns().size());
     }
 
-    private void writeHeaderToSheet(String header, Sheet sheet){
-        Row row = sheet.createRow(0);
-        int i = 0;
-        for (String str: header.split("\t")){
-            row.createCell(i++).setCellValue(str);
+    /**
+     * Patterns of a family with indexes in [from, to) that are written to the same workbook
+     */
+    private static class FamilyPart {
+        final Family family;
+        final int from;
+        final int to;
+
+        FamilyPart(Family family, int from, int to){
+            this.family = family;
+            this.from = from;
+            this.to = to;
         }
     }
 
+    private List<List<FamilyPart>> splitToShards(List<Family> families){
+        int patternsPerShard = maxRows - 1;
+
+        List<List<FamilyPart>> shards = new ArrayList<>();
+        List<FamilyPart> shard = new ArrayList<>();
+        int shardSize = 0;
+        for (Family family : families) {
+            int from = 0;
+            int size = family.getPatterns().size();
+            while (from < size) {
+                if (shardSize == patternsPerShard) {
+                    shards.add(shard);
+                    shard = new ArrayList<>();
+                    shardSize = 0;
+                }
+                int to = Math.min(size, from + patternsPerShard - shardSize);
+                shard.add(new FamilyPart(family, from, to));
+                shardSize += to - from;
+                from = to;
+            }
+        }
+        if (shardSize > 0 || shards.isEmpty()) {
+            shards.add(shard);
+        }
+        return shards;
+    }
 
-    public void printFamily(Family family, CogInfo cogInfo){
-
-        printTopScoringPattern(family.getTopScoringPattern(), family.getFamilyId(), cogInfo);
+    /**
+     * @return the description of each orthology group, computed once for all patterns
+     */
+    private Map<String, String> getCogDescriptions(CogInfo cogInfo){
+        Map<String, String> cogDescriptions = new HashMap<>();
+        if (cogInfoExists) {
+            for (Map.Entry<String, COG> entry : cogInfo.getCogInfo().entrySet()) {
+                cogDescriptions.put(entry.getKey(), entry.getValue().getCogDesc());
+            }
+        }
+        return cogDescriptions;
+    }
 
-        for (Pattern pattern: family.getPatterns()) {
+    private void writeShard(int shardIndex, List<FamilyPart> shard, CogInfo cogInfo,
+                            Map<String, String> cogDescriptions){
 
-            countPrintedPatterns++;
-            printPatternLineToExcelSheet(catalogSheet, pattern, countPrintedPatterns, family.getFamilyId(), cogInfo);
+        String shardPath = getShardPath(shardIndex);
+        SXSSFWorkbook workbook = new SXSSFWorkbook(10);
+        try (FileOutputStream file = new FileOutputStream(shardPath)) {
 
-            if (patternsDescriptionSheet != null) {
-                nextLineIndexDescSheet = printPatternDescToExcelSheet(patternsDescriptionSheet,
-                        nextLineIndexDescSheet, pattern, cogInfo);
-            }
+            new ShardWriter(workbook, cogInfo, cogDescriptions).write(shard);
 
+            workbook.write(file);
+        } catch (Exception e) {
+            System.out.println("Cannot create file " + shardPath + ". Close the file first.");
+            System.exit(1);
+        } finally {
+            workbook.dispose();
         }
     }
 
     /**
-     * Prints a pattern with the highest score in its family to a different sheet
+     * Writes the patterns of a shard to the sheets of a workbook
      */
-    public void printTopScoringPattern(Pattern pattern, int familyId, CogInfo cogInfo){
-        if (pattern != null) {
+    private class ShardWriter {
+
+        private final SXSSFWorkbook workbook;
+        private final CogInfo cogInfo;
+        private final Map<String, String> cogDescriptions;
+
+        private final DecimalFormat df;
+
+        private Sheet catalogSheet;
+        private Sheet filteredPatternsSheet;
+        private Sheet patternsDescriptionSheet;
+
+        private int countDescriptionSheets;
 
-            countPrintedFilteredPatterns++;
-            printPatternLineToExcelSheet(filteredPatternsSheet, pattern, countPrintedFilteredPatterns, familyId, cogInfo);
+        private int nextRowCatalogSheet;
+        private int nextRowFilteredSheet;
+        private int nextRowDescSheet;
+
+        ShardWriter(SXSSFWorkbook workbook, CogInfo cogInfo, Map<String, String> cogDescriptions){
+            this.workbook = workbook;
+            this.cogInfo = cogInfo;
+            this.cogDescriptions = cogDescriptions;
+
+            df = new DecimalFormat("#.####");
+            df.setRoundingMode(RoundingMode.HALF_UP);
+
+            catalogSheet = createSheetWithHeader(CATALOG_SHEET);
+            nextRowCatalogSheet = 1;
+
+            if (includeFamilies) {
+                filteredPatternsSheet = createSheetWithHeader(FILTERED_PATTERNS_SHEET);
+                nextRowFilteredSheet = 1;
+            }
+
+            if (cogInfoExists){
+                patternsDescriptionSheet = workbook.createSheet(DESCRIPTION_SHEET);
+                countDescriptionSheets = 1;
+                nextRowDescSheet = 0;
+            }
         }
-    }
 
+        private Sheet createSheetWithHeader(String name){
+            Sheet sheet = workbook.createSheet(name);
+            if (header != null) {
+                Row row = sheet.createRow(0);
+                int i = 0;
+                for (String str: header.split("\t")){
+                    row.createCell(i++).setCellValue(str);
+                }
+            }
+            return sheet;
+        }
+
+        void write(List<FamilyPart> shard){
+            for (FamilyPart part : shard) {
+                Family family = part.family;
+
+                //the top scoring pattern is written once, with the first part of the family
+                if (part.from == 0 && filteredPatternsSheet != null) {
+                    Pattern pattern = family.getTopScoringPattern();
+                    if (pattern != null) {
+                        printPatternLineToExcelSheet(filteredPatternsSheet, pattern, nextRowFilteredSheet++,
+                                family.getFamilyId());
+                    }
+                }
+
+                for (Pattern pattern : family.getPatterns().subList(part.from, part.to)) {
+                    printPatternLineToExcelSheet(catalogSheet, pattern, nextRowCatalogSheet++,
+                            family.getFamilyId());
 
-    private void printPatternLineToExcelSheet(Sheet sheet, Pattern pattern, int rowNum, int familyId,
-                                               CogInfo cogInfo){
-        Row row = sheet.createRow(rowNum);
-        int col = 0;
-        row.createCell(col++).setCellValue(pattern.getPatternId());
-        row.createCell(col++).setCellValue(pattern.getLength());
-        try{
-            row.createCell(col++).setCellValue(Double.valueOf(DF.format(pattern.getScore())));
-        }catch (Exception e){
-            row.createCell(col).setCellValue(DF.format(pattern.getScore()));
+                    if (patternsDescriptionSheet != null) {
+                        printPatternDescToExcelSheet(pattern);
+                    }
+                }
+            }
         }
-        row.createCell(col++).setCellValue(pattern.getInstancesPerGenomeCount());
 
-        String patternGenes = pattern.toString();
+        private void printPatternLineToExcelSheet(Sheet sheet, Pattern pattern, int rowNum, int familyId){
+            Row row = sheet.createRow(rowNum);
+            int col = 0;
+            row.createCell(col++).setCellValue(pattern.getPatternId());
+            row.createCell(col++).setCellValue(pattern.getLength());
+            try{
+                row.createCell(col++).setCellValue(Double.valueOf(df.format(pattern.getScore())));
+            }catch (Exception e){
+                row.createCell(col).setCellValue(df.format(pattern.getScore()));
+            }
+            row.createCell(col++).setCellValue(pattern.getInstancesPerGenomeCount());
+
+            String patternGenes = pattern.toString();
 
-        row.createCell(col++).setCellValue(patternGenes);
+            row.createCell(col++).setCellValue(patternGenes);
 
-        if (cogInfo.cogInfoExists()) {
-            row.createCell(col++).setCellValue(pattern.getMainFunctionalCategory());
+            if (cogInfo.cogInfoExists()) {
+                row.createCell(col++).setCellValue(pattern.getMainFunctionalCategory());
+            }
+            row.createCell(col++).setCellValue(familyId);
         }
-        row.createCell(col++).setCellValue(familyId);
-    }
 
-    private int printPatternDescToExcelSheet(Sheet sheet, int rowNum, Pattern pattern, CogInfo cogInfo){
-        try {
-            Row row = sheet.createRow(rowNum++);
+        private void printPatternDescToExcelSheet(Pattern pattern){
+            //a description, followed by an empty row
+            int rows = pattern.getLength() + 2;
+            if (nextRowDescSheet + rows > maxRows) {
+                countDescriptionSheets++;
+                patternsDescriptionSheet = workbook.createSheet(DESCRIPTION_SHEET + " (" + countDescriptionSheets
+                        + ")");
+                nextRowDescSheet = 0;
+            }
+
+            Row row = patternsDescriptionSheet.createRow(nextRowDescSheet++);
             row.createCell(0).setCellValue("FAMILY_ID=");
             row.createCell(1).setCellValue(pattern.getPatternId());
             row.createCell(2).setCellValue("Count=");
@@ -146,45 +319,23 @@ public class ExcelWriter implements PatternsWriter{
             row.createCell(5).setCellValue(pattern.getScore());
 
             for (Gene gene : pattern.getPatternGenes()) {
-                row = sheet.createRow(rowNum++);
-
-                COG cog_obj = cogInfo.getCog(gene.getCogId());
+                row = patternsDescriptionSheet.createRow(nextRowDescSheet++);
 
                 row.createCell(0).setCellValue(gene.getCogId());
-                if (cog_obj != null) {
-                    row.createCell(1).setCellValue(cog_obj.getCogDesc());
-                } else {
-                    row.createCell(1).setCellValue("-");
-                }
+                row.createCell(1).setCellValue(cogDescriptions.getOrDefault(gene.getCogId(), "-"));
             }
-        }catch (IllegalArgumentException e){
-            System.out.println(String.format("Can't write line number %d to excel sheet. " +
-                    "Choose a different output file format", rowNum));
+            nextRowDescSheet++;
         }
-        return rowNum+1;
-    }
-
-
-    public void write(List<Family> families, CogInfo cogInfo) {
-        families.forEach(family -> printFamily(family, cogInfo));
     }
 
     @Override
     public void writeHeader(String header) {
-        writeHeaderToSheet(header, catalogSheet);
-
-        if (includeFamilies) {
-            writeHeaderToSheet(header, filteredPatternsSheet);
-        }
+        this.header = header;
     }
 
     public void closeFile(){
-        try {
-            catalogWorkbook.write(catalogFile);
-            catalogFile.close();
-        } catch (Exception e) {
-            System.out.println("A problem occurred while trying to write to file "+ path);
-            System.exit(1);
+        if (countShards == 0) {
+            write(Collections.emptyList(), new CogInfo());
         }
     }
 
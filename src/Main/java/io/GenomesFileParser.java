@@ -0,0 +1,467 @@
+package io;
+
+import model.genomes.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+/**
+ * Parses an input genomes file, see {@link Parsers#parseGenomesFile(String, boolean)} for the format.
+ *
+ * The file is memory-mapped and split to chunks that start at a '>' line, so each replicon is contained in a single
+ * chunk. The chunks are tokenized concurrently, directly from the mapped bytes: a gene line is split at its tab
+ * without creating a String, and its orthology group is encoded to an index in a dictionary of the chunk. The chunks
+ * are then merged in file order, exactly as the file is read line by line, so the genome ids, replicon ids and
+ * alphabet are the same. All genes with the same orthology group and strand share a single {@link Gene}.
+ *
+ * Lines end with '\n' or "\r\n".
+ */
+public class GenomesFileParser {
+
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 26;
+    /**
+     * Number of chunks per thread, so that threads that finish early can take more chunks
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int SCAN_BUFFER_SIZE = 1 << 16;
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    private final int numOfThreads;
+    private final long chunkSize;
+
+    public GenomesFileParser(int numOfThreads){
+        this(numOfThreads, 0);
+    }
+
+    /**
+     * @param chunkSize approximate size in bytes of the chunks that are tokenized concurrently,
+     *                  0 to derive it from the size of the file
+     */
+    public GenomesFileParser(int numOfThreads, long chunkSize){
+        this.numOfThreads = Math.max(1, numOfThreads);
+        this.chunkSize = chunkSize;
+    }
+
+    public GenomesInfo parse(String filePath, boolean circular) throws IOException, IllegalArgumentException {
+
+        if (filePath == null) {
+            throw new IllegalArgumentException();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+        try (RandomAccessFile file = new RandomAccessFile(filePath, "r")) {
+            FileChannel channel = file.getChannel();
+
+            List<Future<Chunk>> chunks = new ArrayList<>();
+            long[] boundaries = findChunkBoundaries(channel);
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                long start = boundaries[i];
+                long end = boundaries[i+1];
+                chunks.add(executor.submit(() -> tokenize(channel, start, end, filePath)));
+            }
+
+            return merge(chunks, filePath, circular);
+
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("File " + filePath + " was not found.");
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            throw new IOException("An exception occurred while reading " + filePath);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return offsets of the chunks in the file, the first is 0 and the last is the size of the file. Each chunk
+     * except the first starts with '>' at the beginning of a line.
+     */
+    private long[] findChunkBoundaries(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+
+        long targetChunkSize = chunkSize;
+        if (targetChunkSize <= 0) {
+            targetChunkSize = fileSize / (numOfThreads * CHUNKS_PER_THREAD);
+            targetChunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, targetChunkSize));
+        }
+
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+
+        long position = targetChunkSize;
+        while (position < fileSize) {
+            long boundary = findRecordStart(channel, position);
+            if (boundary == -1) {
+                break;
+            }
+            boundaries.add(boundary);
+            position = boundary + targetChunkSize;
+        }
+        boundaries.add(fileSize);
+
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * @return the offset of the first '>' that begins a line, at or after {@code position}, or -1 if there is none
+     */
+    private static long findRecordStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+        //the byte before position tells whether position begins a line
+        long offset = position - 1;
+        byte previous = 0;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = buffer.get(i);
+                if (b == '>' && previous == '\n' && offset + i >= position) {
+                    return offset + i;
+                }
+                previous = b;
+            }
+            offset += read;
+        }
+    }
+
+    private static Chunk tokenize(FileChannel channel, long start, long end, String filePath) throws IOException {
+
+        if (end - start > Integer.MAX_VALUE) {
+            throw new IOException("A replicon in " + filePath + " is too long");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+        Chunk chunk = new Chunk();
+        Record record = null;
+
+        int lineNumber = 0;
+        int lineStart = 0;
+        int limit = buffer.limit();
+        while (lineStart < limit) {
+            lineNumber++;
+
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int nextLineStart = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd-1) == '\r') {
+                lineEnd--;
+            }
+
+            if (lineEnd > lineStart && buffer.get(lineStart) == '>') {
+                String rawLine = decode(buffer, lineStart, lineEnd);
+                String[] title;
+                try {
+                    title = Parsers.parseGenomeTitle(rawLine, lineNumber, filePath);
+                } catch (IllegalArgumentException e) {
+                    chunk.setError(lineNumber, absoluteLineNumber ->
+                            Parsers.parseGenomeTitle(rawLine, absoluteLineNumber, filePath));
+                    return chunk;
+                }
+                record = new Record(title);
+                chunk.records.add(record);
+
+            } else {
+                if (record == null) {
+                    //genes that precede the first title of the file
+                    record = new Record(null);
+                    chunk.records.add(record);
+                }
+                if (!tokenizeGeneLine(buffer, lineStart, lineEnd, chunk, record)) {
+                    String rawLine = decode(buffer, lineStart, lineEnd);
+                    //the line is parsed again only to throw its exception, the gene is not kept
+                    chunk.setError(lineNumber, absoluteLineNumber ->
+                            Parsers.parseGeneLine(rawLine, absoluteLineNumber, filePath, new GeneTable()));
+                    return chunk;
+                }
+            }
+
+            lineStart = nextLineStart;
+        }
+
+        chunk.lineCount = lineNumber;
+        return chunk;
+    }
+
+    /**
+     * Tokenizes the line [lineStart, lineEnd) in the same way as {@link Parsers#parseGeneLine}, and adds the gene to
+     * {@code record}
+     *
+     * @return false if the line is not a valid gene line
+     */
+    private static boolean tokenizeGeneLine(ByteBuffer buffer, int lineStart, int lineEnd, Chunk chunk,
+                                            Record record){
+        //trim
+        while (lineStart < lineEnd && (buffer.get(lineStart) & 0xff) <= ' ') {
+            lineStart++;
+        }
+        while (lineEnd > lineStart && (buffer.get(lineEnd-1) & 0xff) <= ' ') {
+            lineEnd--;
+        }
+
+        int cogEnd = lineStart;
+        while (cogEnd < lineEnd && buffer.get(cogEnd) != '\t') {
+            cogEnd++;
+        }
+        int strandStart = cogEnd + 1;
+        int strandEnd = strandStart;
+        while (strandEnd < lineEnd && buffer.get(strandEnd) != '\t') {
+            strandEnd++;
+        }
+        if (cogEnd == lineEnd || strandEnd - strandStart != 1) {
+            return false;
+        }
+
+        int strand;
+        byte rawStrand = buffer.get(strandStart);
+        if (rawStrand == '+') {
+            strand = 0;
+        } else if (rawStrand == '-') {
+            strand = 1;
+        } else {
+            return false;
+        }
+
+        int cogIndex = chunk.dictionary.getIndex(buffer, lineStart, cogEnd);
+        record.add(cogIndex << 1 | strand);
+        return true;
+    }
+
+    private static String decode(ByteBuffer buffer, int start, int end){
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, CHARSET);
+    }
+
+    /**
+     * Adds the replicons of the chunks to a GenomesInfo, in file order, as the file is read line by line
+     */
+    private static GenomesInfo merge(List<Future<Chunk>> chunks, String filePath, boolean circular)
+            throws InterruptedException, IOException {
+
+        GenomesInfo genomesInfo = new GenomesInfo();
+        //orthology group -> the codes of its gene on the forward strand and of its gene on the reverse strand
+        Map<String, int[]> geneCodes = new HashMap<>();
+        GeneTable geneTable = genomesInfo.getGeneTable();
+
+        Genome genome = new Genome();
+        Replicon replicon = new Replicon(Strand.FORWARD, geneTable);
+
+        int precedingLines = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk;
+            try {
+                chunk = chunks.get(i).get();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            //the chunk is not referenced after it is merged
+            chunks.set(i, null);
+
+            if (chunk.errorFactory != null) {
+                throw chunk.errorFactory.apply(precedingLines + chunk.errorLineNumber);
+            }
+
+            int[][] chunkGeneCodes = new int[chunk.dictionary.size()][];
+            for (int cogIndex = 0; cogIndex < chunkGeneCodes.length; cogIndex++) {
+                chunkGeneCodes[cogIndex] = geneCodes.computeIfAbsent(chunk.dictionary.getCogId(cogIndex),
+                        cogId -> new int[]{geneTable.encode(cogId, Strand.FORWARD),
+                                geneTable.encode(cogId, Strand.REVERSE)});
+            }
+
+            for (Record record : chunk.records) {
+                if (record.title != null) {
+                    if (replicon.size() > 0) {
+
+                        genome.addReplicon(replicon);
+
+                        genomesInfo.addGenome(genome);
+                        genomesInfo.addRepliconInfo(replicon);
+                    }
+
+                    String currGenomeName = record.title[0];
+                    String repliconName = record.title[1];
+
+                    genome = Parsers.getNewOrExistingGenome(genomesInfo, currGenomeName);
+                    replicon = new Replicon(repliconName, genomesInfo.getNumberOfReplicons(),
+                            genome.getId(), Strand.FORWARD, geneTable, circular);
+                }
+
+                for (int j = 0; j < record.size; j++) {
+                    int gene = record.genes[j];
+                    replicon.addGeneCode(chunkGeneCodes[gene >>> 1][gene & 1]);
+                }
+            }
+
+            precedingLines += chunk.lineCount;
+        }
+
+        genome.addReplicon(replicon);
+
+        genomesInfo.addGenome(genome);
+        genomesInfo.addRepliconInfo(replicon);
+
+        return genomesInfo;
+    }
+
+    /**
+     * The replicons in a chunk of the file
+     */
+    private static class Chunk {
+        private final List<Record> records;
+        private final CogDictionary dictionary;
+        private int lineCount;
+
+        /**
+         * Creates the exception of an invalid line, given its line number in the file
+         */
+        private IntFunction<IllegalArgumentException> errorFactory;
+        private int errorLineNumber;
+
+        Chunk(){
+            records = new ArrayList<>();
+            dictionary = new CogDictionary();
+        }
+
+        /**
+         * @param reparseLine parses the invalid line given its line number in the file, hence throws the exception
+         *                    that the line by line parsing throws
+         */
+        void setError(int lineNumber, IntConsumer reparseLine){
+            errorLineNumber = lineNumber;
+            errorFactory = absoluteLineNumber -> {
+                try {
+                    reparseLine.accept(absoluteLineNumber);
+                } catch (IllegalArgumentException e) {
+                    return e;
+                }
+                return new IllegalArgumentException("Invalid line " + absoluteLineNumber);
+            };
+        }
+    }
+
+    /**
+     * A title line and the genes that follow it, each gene encoded as (orthology group index << 1 | strand)
+     */
+    private static class Record {
+        private final String[] title;
+        private int[] genes;
+        private int size;
+
+        Record(String[] title){
+            this.title = title;
+            genes = new int[16];
+            size = 0;
+        }
+
+        void add(int gene){
+            if (size == genes.length) {
+                genes = Arrays.copyOf(genes, size * 2);
+            }
+            genes[size++] = gene;
+        }
+    }
+
+    /**
+     * Assigns consecutive indexes to the orthology group ids of a chunk, looked up by their bytes
+     */
+    private static class CogDictionary {
+        private int[] table;
+        private final List<byte[]> keys;
+        private final List<String> cogIds;
+
+        CogDictionary(){
+            table = new int[64];
+            Arrays.fill(table, -1);
+            keys = new ArrayList<>();
+            cogIds = new ArrayList<>();
+        }
+
+        int getIndex(ByteBuffer buffer, int start, int end){
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+
+            int mask = table.length - 1;
+            int slot = mix(hash) & mask;
+            while (table[slot] != -1) {
+                byte[] key = keys.get(table[slot]);
+                if (equals(key, buffer, start, end)) {
+                    return table[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            byte[] key = new byte[end - start];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = buffer.get(start + i);
+            }
+            int index = keys.size();
+            keys.add(key);
+            cogIds.add(new String(key, CHARSET));
+            table[slot] = index;
+
+            if (keys.size() * 2 > table.length) {
+                rehash();
+            }
+            return index;
+        }
+
+        private void rehash(){
+            table = new int[table.length * 2];
+            Arrays.fill(table, -1);
+            int mask = table.length - 1;
+            for (int index = 0; index < keys.size(); index++) {
+                int slot = mix(Arrays.hashCode(keys.get(index))) & mask;
+                while (table[slot] != -1) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = index;
+            }
+        }
+
+        private static int mix(int hash){
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean equals(byte[] key, ByteBuffer buffer, int start, int end){
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int size(){
+            return cogIds.size();
+        }
+
+        String getCogId(int index){
+            return cogIds.get(index);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package io;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens input files that may be compressed.
+ *
+ * The compression is detected by the magic bytes at the beginning of the file, regardless of the file name.
+ * A gzip file is decompressed by a separate thread, while the caller parses the previously decompressed blocks.
+ */
+public class InputFiles {
+
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * Maximal number of decompressed blocks waiting to be read
+     */
+    private static final int MAX_PENDING_BLOCKS = 16;
+
+    /**
+     * @return a reader of the decompressed content of the file, using the default charset
+     */
+    public static BufferedReader newBufferedReader(String filePath) throws IOException, IllegalArgumentException {
+        return new BufferedReader(new InputStreamReader(newInputStream(filePath), Charset.defaultCharset()),
+                BUFFER_SIZE);
+    }
+
+    /**
+     * @return a stream of the decompressed content of the file
+     * @throws FileNotFoundException if the file does not exist
+     * @throws IllegalArgumentException if the file is compressed in an unsupported format
+     */
+    public static InputStream newInputStream(String filePath) throws IOException, IllegalArgumentException {
+        InputStream in = new BufferedInputStream(new FileInputStream(filePath), BUFFER_SIZE);
+
+        try {
+            if (startsWith(in, GZIP_MAGIC)) {
+                return new BackgroundInputStream(new GZIPInputStream(in, BUFFER_SIZE));
+            }
+            if (startsWith(in, ZSTD_MAGIC)) {
+                throw new IllegalArgumentException("File " + filePath + " is compressed with Zstandard, which is " +
+                        "not supported. Decompress it, or compress it with gzip.");
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    /**
+     * @return true if the file is compressed, hence can only be read sequentially by {@link #newInputStream(String)}
+     */
+    public static boolean isCompressed(String filePath) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(filePath), ZSTD_MAGIC.length)) {
+            return startsWith(in, GZIP_MAGIC) || startsWith(in, ZSTD_MAGIC);
+        }
+    }
+
+    /**
+     * Checks whether the stream starts with {@code magic}, without consuming it
+     */
+    private static boolean startsWith(InputStream in, byte[] magic) throws IOException {
+        in.mark(magic.length);
+        try {
+            for (byte b : magic) {
+                if (in.read() != (b & 0xff)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Reads a stream in a separate thread, ahead of the consumer, in blocks. The source is closed by the reader thread
+     * when it stops, so that it is never closed while it is read.
+     */
+    private static class BackgroundInputStream extends InputStream {
+
+        private static final byte[] END = new byte[0];
+
+        private final InputStream source;
+        private final BlockingQueue<byte[]> blocks;
+        private final Thread readerThread;
+
+        private volatile IOException exception;
+
+        private byte[] block;
+        private int position;
+
+        BackgroundInputStream(InputStream source){
+            this.source = source;
+            blocks = new ArrayBlockingQueue<>(MAX_PENDING_BLOCKS);
+            block = null;
+            position = 0;
+
+            readerThread = new Thread(this::readSource, "decompress");
+            readerThread.setDaemon(true);
+            readerThread.start();
+        }
+
+        private void readSource(){
+            try {
+                while (true) {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int length = 0;
+                    while (length < buffer.length) {
+                        int read = source.read(buffer, length, buffer.length - length);
+                        if (read == -1) {
+                            break;
+                        }
+                        length += read;
+                    }
+
+                    if (length > 0) {
+                        blocks.put(length == buffer.length ? buffer : Arrays.copyOf(buffer, length));
+                    }
+                    if (length < buffer.length) {
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                exception = e;
+            } catch (InterruptedException e) {
+                //closed by the consumer
+                closeSource();
+                return;
+            }
+
+            closeSource();
+            try {
+                blocks.put(END);
+            } catch (InterruptedException e) {
+                //closed by the consumer
+            }
+        }
+
+        private void closeSource(){
+            try {
+                source.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                }
+            }
+        }
+
+        /**
+         * @return false if the end of the stream was reached
+         */
+        private boolean nextBlock() throws IOException {
+            if (block == END) {
+                return false;
+            }
+            if (block != null && position < block.length) {
+                return true;
+            }
+            try {
+                block = blocks.take();
+                position = 0;
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (block == END) {
+                if (exception != null) {
+                    throw exception;
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextBlock()) {
+                return -1;
+            }
+            return block[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!nextBlock()) {
+                return -1;
+            }
+            int length = Math.min(len, block.length - position);
+            System.arraycopy(block, position, b, off, length);
+            position += length;
+            return length;
+        }
+
+        /**
+         * Stops the reader thread, which closes the source after its current read, and waits for it
+         */
+        @Override
+        public void close() throws IOException {
+            readerThread.interrupt();
+            try {
+                readerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package io;
+
+import model.genomes.Genome;
+import model.genomes.GenomesInfo;
+import model.genomes.Replicon;
+import model.patterns.InstanceLocation;
+import model.patterns.Pattern;
+import model.postprocess.Family;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.DecimalFormat;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Writes a UTF-8 text file with the instances of patterns, in the format of {@link Writer}.
+ *
+ * Lines are formatted into a reusable byte buffer, with integers formatted directly and the names of genomes and
+ * replicons encoded once, and the buffer is written to a FileChannel when it is full. If the number of threads is
+ * greater than 1, the instances of different families are formatted concurrently, and written in order.
+ */
+public class InstancesWriter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private static final ThreadLocal<DecimalFormat> DF = ThreadLocal.withInitial(() -> new DecimalFormat("#.####"));
+
+    private final FileChannel channel;
+    private final String path;
+
+    private final int numOfThreads;
+
+    private final LineBuffer buffer;
+
+    /**
+     * Names of the genomes and replicons, indexed by id
+     */
+    private byte[][] genomeNames;
+    private byte[][] repliconNames;
+
+    private final GenomesInfo genomesInfo;
+
+    public InstancesWriter(String path, GenomesInfo genomesInfo, int numOfThreads) throws IOException {
+        this.path = path;
+        this.genomesInfo = genomesInfo;
+        this.numOfThreads = Math.max(1, numOfThreads);
+
+        channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = new LineBuffer(BUFFER_SIZE);
+
+        genomeNames = null;
+        repliconNames = null;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void print(String str) {
+        buffer.append(str);
+        flushIfFull();
+    }
+
+    public void print(char c) {
+        buffer.append(c);
+        flushIfFull();
+    }
+
+    public void println(String line) {
+        buffer.append(line);
+        buffer.newLine();
+        flushIfFull();
+    }
+
+    public void println() {
+        buffer.newLine();
+        flushIfFull();
+    }
+
+    /**
+     * Writes the instances of the patterns of all families, in order
+     */
+    public void printInstances(List<Family> families) {
+        if (numOfThreads == 1) {
+            families.forEach(family -> family.getPatterns()
+                    .forEach(pattern -> printInstances(pattern, family.getFamilyId())));
+            return;
+        }
+
+        encodeNames();
+
+        ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+        Deque<Future<LineBuffer>> formatted = new ArrayDeque<>();
+        try {
+            for (Family family : families) {
+                formatted.add(executor.submit(() -> {
+                    LineBuffer familyBuffer = new LineBuffer(1024);
+                    for (Pattern pattern : family.getPatterns()) {
+                        formatInstances(pattern, family.getFamilyId(), familyBuffer);
+                    }
+                    return familyBuffer;
+                }));
+
+                //bound the number of formatted families in memory
+                if (formatted.size() > numOfThreads * 4) {
+                    append(formatted.poll().get());
+                }
+            }
+            while (!formatted.isEmpty()) {
+                append(formatted.poll().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("An exception occurred while writing " + path));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UncheckedIOException(new IOException("An exception occurred while writing " + path));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void printInstances(Pattern pattern, int familyId) {
+        encodeNames();
+        formatInstances(pattern, familyId, buffer);
+        flushIfFull();
+    }
+
+    /**
+     * Formats a line with the pattern, followed by a line per genome with the locations of its instances
+     */
+    private void formatInstances(Pattern pattern, int familyId, LineBuffer out) {
+        out.append('>');
+        out.append(String.valueOf(pattern.getPatternId()));
+        out.append('\t');
+        out.append(pattern.getLength());
+        out.append('\t');
+        out.append(DF.get().format(pattern.getScore()));
+        out.append('\t');
+        out.append(pattern.getInstancesPerGenomeCount());
+        out.append('\t');
+        out.append(pattern.toString());
+        out.append('\t');
+        out.append(familyId);
+        out.newLine();
+
+        int genomeId = -1;
+        for (InstanceLocation instanceLocation : pattern.getPatternLocations().getSortedLocations()) {
+
+            if (instanceLocation.getGenomeId() != genomeId) {
+                if (genomeId != -1) {
+                    out.newLine();
+                }
+                genomeId = instanceLocation.getGenomeId();
+                out.append(genomeNames[genomeId]);
+            }
+
+            out.append('\t');
+            out.append(repliconNames[instanceLocation.getRepliconId()]);
+            out.append('|');
+            out.append('[');
+            out.append(instanceLocation.getActualStartIndex());
+            out.append(',');
+            out.append(instanceLocation.getActualEndIndex());
+            out.append(']');
+        }
+        out.newLine();
+    }
+
+    private void encodeNames() {
+        if (genomeNames != null) {
+            return;
+        }
+
+        int maxGenomeId = -1;
+        int maxRepliconId = -1;
+        for (Genome genome : genomesInfo.getGenomes()) {
+            maxGenomeId = Math.max(maxGenomeId, genome.getId());
+            for (Replicon replicon : genome.getReplicons()) {
+                maxRepliconId = Math.max(maxRepliconId, replicon.getRepliconId());
+            }
+        }
+
+        genomeNames = new byte[maxGenomeId + 1][];
+        repliconNames = new byte[maxRepliconId + 1][];
+        for (Genome genome : genomesInfo.getGenomes()) {
+            genomeNames[genome.getId()] = genome.getName().getBytes(StandardCharsets.UTF_8);
+            for (Replicon replicon : genome.getReplicons()) {
+                repliconNames[replicon.getRepliconId()] = replicon.getName().getBytes(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    private void append(LineBuffer lines) {
+        buffer.append(lines);
+        flushIfFull();
+    }
+
+    private void flushIfFull() {
+        if (buffer.size() >= BUFFER_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered lines to the file
+     */
+    public void flush() {
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(LineBuffer lines) {
+        try {
+            ByteBuffer bytes = ByteBuffer.wrap(lines.bytes, 0, lines.size);
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException("An exception occurred while writing " + path));
+        }
+    }
+
+    public void close() {
+        try {
+            flush();
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException("An exception occurred while writing " + path));
+        }
+    }
+
+    /**
+     * A growable array of UTF-8 encoded text
+     */
+    private static class LineBuffer {
+
+        private byte[] bytes;
+        private int size;
+
+        /**
+         * Digits of an int, in reverse order
+         */
+        private final byte[] digits;
+
+        LineBuffer(int capacity) {
+            bytes = new byte[capacity];
+            size = 0;
+            digits = new byte[10];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        void append(byte[] str) {
+            ensureCapacity(size + str.length);
+            System.arraycopy(str, 0, bytes, size, str.length);
+            size += str.length;
+        }
+
+        void append(LineBuffer other) {
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.bytes, 0, bytes, size, other.size);
+            size += other.size;
+        }
+
+        void append(char c) {
+            if (c >= 0x80) {
+                append(String.valueOf(c));
+                return;
+            }
+            ensureCapacity(size + 1);
+            bytes[size++] = (byte) c;
+        }
+
+        void append(String str) {
+            int length = str.length();
+            ensureCapacity(size + length);
+            for (int i = 0; i < length; i++) {
+                char c = str.charAt(i);
+                if (c >= 0x80) {
+                    //not ASCII
+                    append(str.substring(i).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                bytes[size++] = (byte) c;
+            }
+        }
+
+        void append(int value) {
+            if (value == Integer.MIN_VALUE) {
+                append(Integer.toString(value));
+                return;
+            }
+            ensureCapacity(size + 11);
+            if (value < 0) {
+                bytes[size++] = '-';
+                value = -value;
+            }
+            int count = 0;
+            do {
+                digits[count++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value != 0);
+            while (count > 0) {
+                bytes[size++] = digits[--count];
+            }
+        }
+
+        void newLine() {
+            append(LINE_SEPARATOR);
+        }
+    }
+}
@@ -10,10 +10,11 @@ import model.postprocess.Family;
 import java.awt.*;
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.*;
 
 
 public class Parsers {
@@ -43,12 +44,17 @@ public class Parsers {
     private final static String COLORS_END = "<\\colors>";
     private final static String COLORS_DELIMITER = "=";
 
+    /**
+     * Minimal number of lines of the instances section in a chunk that is parsed by a single thread
+     */
+    private final static int INSTANCES_CHUNK_LINES = 4096;
+
     public static List<Pattern> parseReferenceGenomesFile(GenomesInfo genomesInfo, String referenceGenomesPath)
             throws IOException {
 
         List<Pattern> patterns = new ArrayList<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(referenceGenomesPath))) {
+        try (BufferedReader br = InputFiles.newBufferedReader(referenceGenomesPath)) {
             String line = br.readLine();
             while (line != null) {
                 String genomeName = line.trim();
@@ -72,12 +78,17 @@ public class Parsers {
         return patterns;
     }
 
+    /**
+     * The patterns of the file do not belong to a dataset, their genes are encoded in a table of their own and are
+     * encoded again in the table of the dataset in which they are searched
+     */
     public static List<Pattern> parsePatternsFile(String inputPatternsFilePath)
             throws IOException, IllegalArgumentException {
 
         List<Pattern> patterns = new ArrayList<>();
+        GeneTable geneTable = new GeneTable();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(inputPatternsFilePath))) {
+        try (BufferedReader br = InputFiles.newBufferedReader(inputPatternsFilePath)) {
 
             String line = br.readLine();
             int lineNumber = 0;
@@ -89,7 +100,7 @@ public class Parsers {
                     patternId = line.substring(1);
 
                 } else {
-                    Gene[] genes = parseGenes(line, lineNumber, inputPatternsFilePath);
+                    Gene[] genes = parseGenes(line, lineNumber, inputPatternsFilePath, geneTable);
                     Pattern pattern = new Pattern(patternId, genes);
                     patterns.add(pattern);
                 }
@@ -105,7 +116,8 @@ public class Parsers {
         return patterns;
     }
 
-    private static Gene[] parseGenes(String line, int lineNumber, String inputPatternsFilePath) throws IllegalArgumentException {
+    private static Gene[] parseGenes(String line, int lineNumber, String inputPatternsFilePath, GeneTable geneTable)
+            throws IllegalArgumentException {
         String[] patternArr = line.split(PATTERN_DELIMITER);
         Gene[] genes = new Gene[patternArr.length];
         if (patternArr.length > 0) {
@@ -119,7 +131,7 @@ public class Parsers {
                         gene = gene.substring(0, gene.length() - 1);
                     }
 
-                    genes[i++] = new Gene(gene.intern(), strand);
+                    genes[i++] = geneTable.getGene(gene, strand);
                 }
             }
         } else {
@@ -143,8 +155,10 @@ public class Parsers {
      * @param rawLine
      * @param lineNumber of {@code rawLine} in {@code filePath}
      * @param filePath
+     * @param geneTable the table in which the gene is encoded
      */
-    private static Gene parseGeneLine(String rawLine, int lineNumber, String filePath) throws IllegalArgumentException {
+    static Gene parseGeneLine(String rawLine, int lineNumber, String filePath, GeneTable geneTable)
+            throws IllegalArgumentException {
 
         Objects.requireNonNull(rawLine, "rawLine is null");
         Objects.requireNonNull(filePath, "filePath is null");
@@ -164,7 +178,7 @@ public class Parsers {
                     rawStrand, lineNumber, filePath));
         }
 
-        return new Gene(geneId.intern(), strand);
+        return geneTable.getGene(geneId, strand);
     }
 
     /**
@@ -178,7 +192,7 @@ public class Parsers {
      *
      * @param rawTitle
      */
-    private static String[] parseGenomeTitle(String rawTitle, int lineNumber, String filePath) throws IllegalArgumentException {
+    static String[] parseGenomeTitle(String rawTitle, int lineNumber, String filePath) throws IllegalArgumentException {
 
         Objects.requireNonNull(rawTitle, "rawTitle is null");
         Objects.requireNonNull(filePath, "filePath is null");
@@ -199,7 +213,7 @@ public class Parsers {
         return String.format("Expected %s, got \"%s\" in file %s line %d", expected, recieved, path, lineNumber);
     }
 
-    private static Genome getNewOrExistingGenome(GenomesInfo genomesInfo, String currGenomeName) {
+    static Genome getNewOrExistingGenome(GenomesInfo genomesInfo, String currGenomeName) {
         Genome genome;
         if (genomesInfo.genomeExists(currGenomeName)) {
             genome = genomesInfo.getGenome(currGenomeName);
@@ -217,7 +231,11 @@ public class Parsers {
         }
         String[] args = new String[0];
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+        if (BinarySessionFile.isBinarySessionFile(filePath)) {
+            return BinarySessionFile.readArguments(filePath).split(" ");
+        }
+
+        try (BufferedReader br = InputFiles.newBufferedReader(filePath)) {
 
             args = br.readLine().split(" ");
 
@@ -231,17 +249,35 @@ public class Parsers {
     }
 
 
+    /**
+     * @param filePath path to a session file, in the text format or in the binary format of
+     *                 {@link BinarySessionFile}. The instances in a binary session file are read on demand.
+     */
     public static void parseSessionFile(List<Family> families, String filePath, GenomesInfo genomesInfo,
                                         GeneColors colors, boolean circular)
             throws IOException, IllegalArgumentException, FileNotFoundException, NullPointerException {
+        parseSessionFile(families, filePath, genomesInfo, colors, circular, 1);
+    }
+
+    /**
+     * @param numOfThreads number of threads that parse the instances of a text session file
+     */
+    public static void parseSessionFile(List<Family> families, String filePath, GenomesInfo genomesInfo,
+                                        GeneColors colors, boolean circular, int numOfThreads)
+            throws IOException, IllegalArgumentException, FileNotFoundException, NullPointerException {
 
         if (filePath == null) {
             throw new IllegalArgumentException();
         }
 
+        if (BinarySessionFile.isBinarySessionFile(filePath)) {
+            BinarySessionFile.read(families, filePath, genomesInfo, colors, circular);
+            return;
+        }
+
         int lineNumber = 0;
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+        try (BufferedReader br = InputFiles.newBufferedReader(filePath)) {
 
             String args = br.readLine();
 
@@ -254,7 +290,7 @@ public class Parsers {
 
                     lineNumber = readGenomes(br, genomesInfo, filePath, GENOMES_END, lineNumber, circular);
                 } else if (rawLine.startsWith(INSTANCES_START)) {
-                    readInstances(br, genomesInfo, filePath, INSTANCES_END, lineNumber, families);
+                    readInstances(br, genomesInfo, filePath, INSTANCES_END, lineNumber, families, numOfThreads);
                 } else if (rawLine.startsWith(COLORS_START)) {
                     readColors(br, COLORS_END, lineNumber, colors);
                 }
@@ -271,44 +307,153 @@ public class Parsers {
     }
 
 
+    /**
+     * Reads the families written by {@link ColumnarWriter}. The genome and replicon names of the instances are
+     * matched to the genomes in {@code genomesInfo}.
+     */
+    public static void parseColumnarFiles(List<Family> families, String catalogPath, String instancesPath,
+                                          GenomesInfo genomesInfo) throws IOException, IllegalArgumentException {
+
+        if (catalogPath == null || instancesPath == null) {
+            throw new IllegalArgumentException();
+        }
+
+        ColumnarFile.Reader catalog = new ColumnarFile.Reader(catalogPath);
+        ColumnarFile.Reader instances = new ColumnarFile.Reader(instancesPath);
+
+        Map<Integer, Strand> strands = new HashMap<>();
+        for (Strand strand : Strand.values()) {
+            strands.put(strand.numericValue, strand);
+        }
+
+        ColumnarFile.Column ids = catalog.getColumn("id");
+        ColumnarFile.Column scores = catalog.getColumn("score");
+        ColumnarFile.Column familyIds = catalog.getColumn("family");
+        ColumnarFile.Column genesStarts = catalog.getColumn("genes_start");
+        ColumnarFile.Column cogIds = catalog.getColumn("gene");
+        ColumnarFile.Column geneStrands = catalog.getColumn("strand");
+
+        List<Pattern> patterns = new ArrayList<>();
+        for (int row = 0; row < ids.size(); row++) {
+            int genesStart = genesStarts.getInt(row);
+            Gene[] genes = new Gene[genesStarts.getInt(row + 1) - genesStart];
+            for (int i = 0; i < genes.length; i++) {
+                String cogId = catalog.getString(cogIds.getInt(genesStart + i));
+                genes[i] = genomesInfo.getGeneTable().getGene(cogId,
+                        strands.get((int) geneStrands.getByte(genesStart + i)));
+            }
+
+            Pattern pattern = new Pattern(catalog.getString(ids.getInt(row)), genes);
+            pattern.setScore(scores.getDouble(row));
+            pattern.setFamilyId(familyIds.getInt(row));
+            patterns.add(pattern);
+        }
+
+        ColumnarFile.Column patternRows = instances.getColumn("pattern");
+        ColumnarFile.Column genomeNames = instances.getColumn("genome");
+        ColumnarFile.Column repliconNames = instances.getColumn("replicon");
+        ColumnarFile.Column startIndexes = instances.getColumn("start");
+        ColumnarFile.Column endIndexes = instances.getColumn("end");
+
+        for (int row = 0; row < patternRows.size(); row++) {
+            String genomeName = instances.getString(genomeNames.getInt(row));
+            Genome genome = genomesInfo.getGenome(genomeName);
+            if (genome == null) {
+                throw new IllegalArgumentException(errorMessage("genome name to match one of the input genomes",
+                        genomeName, row + 1, instancesPath));
+            }
+
+            String repliconName = instances.getString(repliconNames.getInt(row));
+            Replicon replicon = genome.getReplicon(repliconName);
+            if (replicon == null) {
+                throw new IllegalArgumentException(errorMessage("replicon name to match one of the input genomes",
+                        repliconName, row + 1, instancesPath));
+            }
+
+            int startIndex = startIndexes.getInt(row);
+            int endIndex = endIndexes.getInt(row);
+            int repliconId = replicon.getRepliconId();
+
+            patterns.get(patternRows.getInt(row)).addInstanceLocation(new InstanceLocation(repliconId,
+                    genome.getId(), startIndex, endIndex - startIndex, Strand.FORWARD, 0, 0, repliconId));
+        }
+
+        HashMap<Integer, Family> familiesMap = new HashMap<>();
+        addToFamilies(patterns, familiesMap, genomesInfo);
+        familiesMap.values().forEach(Family::sortPatternsAndSetScore);
+
+        families.addAll(familiesMap.values());
+    }
+
     /**
      * @param filePath path to input file with input sequences
      * @return all information obtained from the file, stored in GenomesInfo
      */
     public static GenomesInfo parseGenomesFile(String filePath, boolean circular)
             throws IOException, IllegalArgumentException {
+        return parseGenomesFile(filePath, circular, 1);
+    }
+
+    /**
+     * @param filePath path to input file with input sequences, or to the same file in the binary format of
+     *                 {@link BinaryGenomesFile}. The file may be compressed with gzip.
+     * @param numOfThreads number of threads that tokenize the file
+     * @return all information obtained from the file, stored in GenomesInfo
+     */
+    public static GenomesInfo parseGenomesFile(String filePath, boolean circular, int numOfThreads)
+            throws IOException, IllegalArgumentException {
 
         if (filePath == null) {
             throw new IllegalArgumentException();
         }
 
-        GenomesInfo genomesInfo = new GenomesInfo();
+        if (BinaryGenomesFile.isBinaryGenomesFile(filePath)) {
+            return BinaryGenomesFile.read(filePath, circular);
+        }
+        if (InputFiles.isCompressed(filePath)) {
+            //a compressed file cannot be memory-mapped, it is read line by line while it is decompressed
+            return parseGenomesFileLineByLine(filePath, circular);
+        }
+        return new GenomesFileParser(numOfThreads).parse(filePath, circular);
+    }
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+    /**
+     * Parses the genomes file sequentially, line by line. {@link GenomesFileParser} must return the same genomes,
+     * and throw the same exceptions for invalid lines.
+     *
+     * @param filePath path to input file with input sequences, may be compressed with gzip
+     * @return all information obtained from the file, stored in GenomesInfo
+     */
+    public static GenomesInfo parseGenomesFileLineByLine(String filePath, boolean circular)
+            throws IOException, IllegalArgumentException {
 
-            readGenomes(br, genomesInfo, filePath, null, circular);
+        if (filePath == null) {
+            throw new IllegalArgumentException();
+        }
+
+        GenomesInfo genomesInfo = new GenomesInfo();
+        try (BufferedReader br = InputFiles.newBufferedReader(filePath)) {
+
+            readGenomes(br, genomesInfo, filePath, null, 0, circular);
 
         } catch (FileNotFoundException e) {
             throw new FileNotFoundException("File " + filePath + " was not found.");
         } catch (IOException e) {
             throw new IOException("An exception occurred while reading " + filePath);
         }
-
         return genomesInfo;
-
     }
 
-
-    public static Map<String, Taxon> parseTaxaFile(String filePath)
+    public static TaxonomyIndex parseTaxaFile(String filePath)
             throws IOException, IllegalArgumentException {
 
         if (filePath == null) {
             throw new IllegalArgumentException();
         }
 
-        Map<String, Taxon> genomeToTaxon = new HashMap<>();
+        TaxonomyIndex taxonomy = new TaxonomyIndex();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+        try (BufferedReader br = InputFiles.newBufferedReader(filePath)) {
 
             String header = br.readLine();
 
@@ -336,7 +481,7 @@ public class Parsers {
                 Taxon taxon = new Taxon(kingdom.intern(), phylum.intern(), taxClass.intern(), genus.intern(),
                         species.intern());
 
-                genomeToTaxon.put(genomeName, taxon);
+                taxonomy.addGenome(genomeName, taxon);
 
                 line = br.readLine();
             }
@@ -347,7 +492,7 @@ public class Parsers {
             throw new IOException("An exception occurred while reading " + filePath);
         }
 
-        return genomeToTaxon;
+        return taxonomy;
     }
 
     public static String[] parseMetadataFileHeader(String filePath) throws IOException, IllegalArgumentException{
@@ -358,7 +503,7 @@ public class Parsers {
 
         String[] columnNames = new String[0];
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+        try (BufferedReader br = InputFiles.newBufferedReader(filePath)) {
 
             columnNames = br.readLine().trim().split(CSV_DELIMITER);
 
@@ -380,7 +525,7 @@ public class Parsers {
 
         Map<String, Object[]> genomeToMetadata = new HashMap<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+        try (BufferedReader br = InputFiles.newBufferedReader(filePath)) {
 
             String[] columnNames = br.readLine().trim().split(CSV_DELIMITER);
 
@@ -413,35 +558,111 @@ public class Parsers {
         return genomeToMetadata;
     }
 
+    /**
+     * Splits the instances section to chunks of whole patterns. If {@code numOfThreads} is greater than 1, the
+     * chunks are parsed concurrently while the next chunks are read. The patterns are added to their families in
+     * the order of the file.
+     */
     private static void readInstances(BufferedReader br, GenomesInfo genomesInfo, String filePath, String end,
-                                      int lineNumber, List<Family> families)
+                                      int lineNumber, List<Family> families, int numOfThreads)
             throws IOException {
 
         HashMap<Integer, Family> familiesMap = new HashMap<>();
 
+        ExecutorService executor = numOfThreads > 1 ? Executors.newFixedThreadPool(numOfThreads) : null;
+        Deque<Future<List<Pattern>>> chunks = new ArrayDeque<>();
+        try {
+            List<String> lines = new ArrayList<>();
+            String rawLine = br.readLine();
+            while (rawLine != null && !rawLine.equals(end)) {
+                lines.add(rawLine);
+                if (lines.size() > INSTANCES_CHUNK_LINES && rawLine.startsWith(">")) {
+                    //the last line begins the next chunk
+                    lines.remove(lines.size() - 1);
+                    chunks.add(parseInstancesChunk(executor, lines, lineNumber, genomesInfo, filePath));
+                    lineNumber += lines.size();
+                    lines = new ArrayList<>();
+                    lines.add(rawLine);
+
+                    //bound the number of chunks in memory
+                    if (chunks.size() > numOfThreads * 2) {
+                        addToFamilies(chunks.poll().get(), familiesMap, genomesInfo);
+                    }
+                }
+                rawLine = br.readLine();
+            }
+            chunks.add(parseInstancesChunk(executor, lines, lineNumber, genomesInfo, filePath));
+
+            while (!chunks.isEmpty()) {
+                addToFamilies(chunks.poll().get(), familiesMap, genomesInfo);
+            }
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException) {
+                throw (IllegalArgumentException) e.getCause();
+            }
+            if (e.getCause() instanceof NullPointerException) {
+                throw (NullPointerException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        familiesMap.values().forEach(Family::sortPatternsAndSetScore);
+
+        families.addAll(familiesMap.values());
+    }
+
+    /**
+     * Parses the chunk by {@code executor}, or by the calling thread if it is null
+     */
+    private static Future<List<Pattern>> parseInstancesChunk(ExecutorService executor, List<String> lines,
+                                                             int lineNumber, GenomesInfo genomesInfo,
+                                                             String filePath) {
+        if (executor == null) {
+            return CompletableFuture.completedFuture(parseInstancesChunk(lines, lineNumber, genomesInfo, filePath));
+        }
+        return executor.submit(() -> parseInstancesChunk(lines, lineNumber, genomesInfo, filePath));
+    }
+
+    /**
+     * @param lines lines of the instances section, the first line is a pattern header unless it is the beginning
+     *              of the section
+     * @param lineNumber the line number before the first line
+     * @return the patterns in the lines, with their instance locations
+     */
+    private static List<Pattern> parseInstancesChunk(List<String> lines, int lineNumber, GenomesInfo genomesInfo,
+                                                     String filePath) {
+        List<Pattern> patterns = new ArrayList<>();
+
         Pattern pattern = new Pattern();
 
-        String rawLine = br.readLine();
-        while (rawLine != null && !rawLine.equals(end)) {
+        for (String rawLine : lines) {
             lineNumber++;
 
             if (rawLine.startsWith(">")) {
 
-                pattern = parsePattern(rawLine, lineNumber, filePath);
-
-                Family family = parseFamily(familiesMap, pattern, genomesInfo);
-                familiesMap.put(family.getFamilyId(), family);
+                pattern = parsePattern(rawLine, lineNumber, filePath, genomesInfo.getGeneTable());
+                patterns.add(pattern);
 
             } else {
                 parseInstanceLocations(rawLine, genomesInfo, lineNumber, filePath, pattern);
             }
-
-            rawLine = br.readLine();
         }
+        return patterns;
+    }
 
-        familiesMap.values().forEach(Family::sortPatternsAndSetScore);
-
-        families.addAll(familiesMap.values());
+    private static void addToFamilies(List<Pattern> patterns, HashMap<Integer, Family> familiesMap,
+                                      GenomesInfo genomesInfo) {
+        for (Pattern pattern : patterns) {
+            Family family = parseFamily(familiesMap, pattern, genomesInfo);
+            familiesMap.put(family.getFamilyId(), family);
+        }
     }
 
     private static void readColors(BufferedReader br, String end, int lineNumber,
@@ -511,7 +732,7 @@ public class Parsers {
     }
 
 
-    private static Family parseFamily(HashMap<Integer, Family> familiesMap, Pattern pattern, GenomesInfo genomesInfo) {
+    static Family parseFamily(HashMap<Integer, Family> familiesMap, Pattern pattern, GenomesInfo genomesInfo) {
         Family family;
         if (familiesMap.containsKey(pattern.getFamilyId())) {
             family = familiesMap.get(pattern.getFamilyId());
@@ -522,7 +743,8 @@ public class Parsers {
         return family;
     }
 
-    private static Pattern parsePattern(String rawLine, int lineNumber, String filePath) throws IllegalArgumentException {
+    private static Pattern parsePattern(String rawLine, int lineNumber, String filePath, GeneTable geneTable)
+            throws IllegalArgumentException {
         String[] patternLine = rawLine.trim().substring(1).split(INSTANCE_HEADER_DELIMITER);
         if (patternLine.length < INSTANCE_HEADER.length) {
             throw new IllegalArgumentException(
@@ -539,7 +761,7 @@ public class Parsers {
         i++;
         int count = castToInteger(patternLine[i], INSTANCE_HEADER[i], lineNumber, filePath);
         i++;
-        Gene[] genes = parseGenes(patternLine[i], lineNumber, filePath);
+        Gene[] genes = parseGenes(patternLine[i], lineNumber, filePath, geneTable);
         i++;
         int familyId = castToInteger(patternLine[i], INSTANCE_HEADER[i], lineNumber, filePath);
 
@@ -578,12 +800,6 @@ public class Parsers {
         return result;
     }
 
-    private static void readGenomes(BufferedReader br, GenomesInfo genomesInfo, String filePath, String end,
-                                    boolean circular)
-            throws IOException {
-        readGenomes(br, genomesInfo, filePath, end, 0, circular);
-    }
-
 
     private static int readGenomes(BufferedReader br, GenomesInfo genomesInfo, String filePath, String end,
                                    int lineNumber, boolean circular)
@@ -593,7 +809,8 @@ public class Parsers {
         String currGenomeName = "";
 
         Genome genome = new Genome();
-        Replicon replicon = new Replicon(Strand.FORWARD);
+        GeneTable geneTable = genomesInfo.getGeneTable();
+        Replicon replicon = new Replicon(Strand.FORWARD, geneTable);
 
         String rawLine = br.readLine();
         lineNumber++;
@@ -617,10 +834,10 @@ public class Parsers {
 
                 genome = getNewOrExistingGenome(genomesInfo, currGenomeName);
                 replicon = new Replicon(repliconName, genomesInfo.getNumberOfReplicons(),
-                        genome.getId(), Strand.FORWARD, circular);
+                        genome.getId(), Strand.FORWARD, geneTable, circular);
 
             } else {
-                Gene gene = parseGeneLine(rawLine, lineNumber, filePath);
+                Gene gene = parseGeneLine(rawLine, lineNumber, filePath, geneTable);
                 replicon.addGene(gene);
             }
 
@@ -658,7 +875,7 @@ public class Parsers {
 
         Map<String, COG> cogInfo = new HashMap<>();
 
-        try (BufferedReader br = new BufferedReader(new FileReader(cogInfoFilePath))) {
+        try (BufferedReader br = InputFiles.newBufferedReader(cogInfoFilePath)) {
 
             String line = br.readLine();
             int lineNumber = 0;
@@ -3,13 +3,9 @@ package io;
 import mvc.view.graphics.GeneColors;
 import model.cogs.CogInfo;
 import model.genomes.*;
-import model.patterns.Pattern;
 import model.postprocess.Family;
 
 import java.awt.*;
-import java.io.PrintWriter;
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -19,7 +15,7 @@ import java.util.Map;
  */
 public class SessionWriter implements PatternsWriter {
 
-    private PrintWriter file;
+    private InstancesWriter file;
 
     private GenomesInfo genomesInfo;
 
@@ -27,34 +23,42 @@ public class SessionWriter implements PatternsWriter {
 
     private String path;
 
-    private static final DecimalFormat DF = new DecimalFormat("#.####");
-
     public SessionWriter(String path, GenomesInfo genomesInfo){
+        this(path, genomesInfo, 1);
+    }
 
-        DF.setRoundingMode(RoundingMode.HALF_UP);
+    /**
+     * @param numOfThreads number of threads that format the instances of different families
+     */
+    public SessionWriter(String path, GenomesInfo genomesInfo, int numOfThreads){
 
         countPrintedPatterns = 0;
 
         this.genomesInfo = genomesInfo;
 
         this.path = path;
-        file = Writer.createOutputPrintWriter(path);
+        file = Writer.createInstancesWriter(path, genomesInfo, numOfThreads);
     }
 
     public void writeGenomes(){
 
         Map<String, Genome> genomesMap = genomesInfo.getGenomesByName();
-        file.write("<genomes>\n");
+        file.print("<genomes>\n");
 
         for (Genome genome: genomesMap.values()){
             for (Replicon replicon: genome.getReplicons()){
-                file.write(String.format(">%s|%s%n", genome.getName(), replicon.getName()));
+                file.print('>');
+                file.print(genome.getName());
+                file.print('|');
+                file.println(replicon.getName());
 
                 //if circular replicon, the last n genes are identical to the first n genes
                 Iterator<Gene> repliconGenes = replicon.getGenes().iterator();
                 for (int i = 0; i < replicon.size() && repliconGenes.hasNext(); i++) {
                     Gene gene = repliconGenes.next();
-                    file.write(String.format("%s\t%s%n", gene.getCogId(), gene.getStrand()));
+                    file.print(gene.getCogId());
+                    file.print('\t');
+                    file.println(gene.getStrand().toString());
                 }
             }
         }
@@ -70,7 +74,7 @@ public class SessionWriter implements PatternsWriter {
         }
 
         Iterator<Map.Entry<String, Color>> it = colors.getGeneToColor();
-        file.write("<colors>\n");
+        file.print("<colors>\n");
 
         it.forEachRemaining( entry -> {
             String line = String.format("%s=%s", entry.getKey(), entry.getValue().getRGB());
@@ -83,12 +87,8 @@ public class SessionWriter implements PatternsWriter {
     @Override
     public void write(List<Family> families, CogInfo cogInfo) {
         file.println("<instances>");
-        for (Family family: families) {
-            for (Pattern pattern : family.getPatterns()) {
-                countPrintedPatterns++;
-                Writer.printInstances(pattern, family.getFamilyId(), genomesInfo, file);
-            }
-        }
+        file.printInstances(families);
+        families.forEach(family -> countPrintedPatterns += family.getPatterns().size());
     }
 
     @Override
@@ -43,6 +43,9 @@ public class TextWriter implements PatternsWriter{
     @Override
     public void write(List<Family> families, CogInfo cogInfo) {
         families.forEach(family -> printFamily(family, cogInfo));
+        if (catalogFile != null) {
+            catalogFile.flush();
+        }
     }
 
     public void writeHeader(String header){
@@ -9,6 +9,7 @@ import model.postprocess.Family;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -20,7 +21,7 @@ public class WriteUtils {
                                          Parameters params, String arguments, GeneColors geneColors,
                                          File currSession){
 
-        SessionWriter sessionWriter = new SessionWriter(currSession.getPath(), genomesInfo);
+        SessionWriter sessionWriter = new SessionWriter(currSession.getPath(), genomesInfo, params.getProcCount());
         sessionWriter.writeHeader(arguments);
         sessionWriter.writeGenomes();
         sessionWriter.writeColors(geneColors);
@@ -33,6 +34,24 @@ public class WriteUtils {
         return writer;
     }
 
+    /**
+     * Saves the session in the binary format of {@link BinarySessionFile}
+     */
+    public static Writer saveBinarySessionFile(List<Family> families, GenomesInfo genomesInfo, CogInfo cogInfo,
+                                               Parameters params, String arguments, GeneColors geneColors,
+                                               File currSession){
+
+        BinarySessionWriter sessionWriter = new BinarySessionWriter(currSession.getPath(), genomesInfo, geneColors);
+        sessionWriter.writeHeader(arguments);
+
+        Writer writer = new Writer(params.debug, sessionWriter);
+
+        writer.printFamilies(families, cogInfo);
+        writer.closeFiles();
+
+        return writer;
+    }
+
     public static Writer writeExportFiles(List<Family> families, GenomesInfo genomesInfo,
                                           CogInfo cogInfo, Parameters params, String arguments){
 
@@ -48,6 +67,19 @@ public class WriteUtils {
             return saveSessionFile(families, genomesInfo, cogInfo, params, arguments, new GeneColors(),
                     new File(sessionFilePath));
         }
+        if (params.outputFileType == OutputType.BINARY_SESSION){
+            String sessionFilePath = catalogPath + "." + OutputType.BINARY_SESSION.extension;
+            return saveBinarySessionFile(families, genomesInfo, cogInfo, params, arguments, new GeneColors(),
+                    new File(sessionFilePath));
+        }
+
+        if (params.outputFileType == OutputType.COLUMNAR){
+            Writer writer = new Writer(params.debug,
+                    new ColumnarWriter(catalogPath, outputPath + instancesFileName, genomesInfo));
+            writer.printFamilies(families, cogInfo);
+            writer.closeFiles();
+            return writer;
+        }
 
         //TODO: add as input parameter
         boolean includeFamilies = true;
@@ -59,11 +91,13 @@ public class WriteUtils {
                 patternsWriter = new TextWriter(cogInfo.cogInfoExists(), includeFamilies, catalogPath);
                 break;
             case XLSX:
-                patternsWriter = new ExcelWriter(cogInfo.cogInfoExists(), includeFamilies, catalogPath);
+                patternsWriter = new ExcelWriter(cogInfo.cogInfoExists(), includeFamilies, catalogPath,
+                        params.getProcCount());
                 break;
         }
 
         Writer writer = new Writer(params.debug, instancesFileName, outputPath, patternsWriter);
+        writer.setNumOfThreads(params.getProcCount());
 
 
         writer.printInstances(families, genomesInfo);
@@ -76,6 +110,34 @@ public class WriteUtils {
         return writer;
     }
 
+    /**
+     * Creates a writer of the TXT catalog and the instances file, to which families are written with
+     * {@link Writer#printStreamedFamily} while the patterns are found
+     */
+    public static Writer createStreamingExportWriter(GenomesInfo genomesInfo, CogInfo cogInfo, Parameters params){
+
+        String outputPath = createOutputPath(params.outputDir);
+
+        String catalogFileName = params.exportFileName;
+        String instancesFileName = catalogFileName + "_instances";
+
+        String catalogPath = outputPath + catalogFileName;
+
+        //TODO: add as input parameter
+        boolean includeFamilies = true;
+
+        PatternsWriter patternsWriter = new TextWriter(cogInfo.cogInfoExists(), includeFamilies, catalogPath);
+
+        Writer writer = new Writer(params.debug, instancesFileName, outputPath, patternsWriter);
+        writer.setNumOfThreads(params.getProcCount());
+
+        //creates the instances file
+        writer.printInstances(Collections.emptyList(), genomesInfo);
+        writer.writeHeader(createHeader(cogInfo));
+
+        return writer;
+    }
+
     private static String createHeader(CogInfo cogInfo){
 
         String header = "CSB_ID\tLength\tScore\tInstance_Count\tCSB";
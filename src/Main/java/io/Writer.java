@@ -4,11 +4,8 @@ import model.cogs.CogInfo;
 import model.genomes.*;
 
 import java.io.*;
-import java.text.DecimalFormat;
 import java.util.*;
 
-import model.patterns.InstanceLocation;
-import model.patterns.Pattern;
 import model.postprocess.Family;
 
 /**
@@ -20,7 +17,7 @@ public class Writer {
 
     private PatternsWriter patternsWriter;
 
-    private PrintWriter instancesFile;
+    private InstancesWriter instancesFile;
 
     private String catalogInstancesPath;
 
@@ -28,7 +25,7 @@ public class Writer {
 
     private boolean debug;
 
-    private static final DecimalFormat DF = new DecimalFormat("#.####");
+    private int numOfThreads;
 
 
     public Writer(boolean debug, String instancesFileName, String outputPath,
@@ -47,6 +44,8 @@ public class Writer {
 
         this.debug = debug;
 
+        numOfThreads = 1;
+
         instancesFile = null;
 
         catalogInstancesPath = null;
@@ -58,10 +57,27 @@ public class Writer {
 
     }
 
-    private void createInstancesFile(){
+    /**
+     * @param numOfThreads number of threads that format the instances of different families
+     */
+    public void setNumOfThreads(int numOfThreads){
+        this.numOfThreads = numOfThreads;
+    }
+
+    private void createInstancesFile(GenomesInfo gi){
         if (instancesFile == null) {
-            instancesFile = createOutputPrintWriter(catalogInstancesPath);
+            instancesFile = createInstancesWriter(catalogInstancesPath, gi, numOfThreads);
+        }
+    }
+
+    public static InstancesWriter createInstancesWriter(String path, GenomesInfo gi, int numOfThreads){
+        try {
+            return new InstancesWriter(path, gi, numOfThreads);
+        } catch (Exception e) {
+            System.out.println("Cannot create file " + path);
+            System.exit(1);
         }
+        return null;
     }
 
     public static PrintWriter createOutputPrintWriter(String path){
@@ -112,63 +128,6 @@ public class Writer {
         }
     }
 
-    public static void printInstances(Pattern pattern, int familyId, GenomesInfo gi, PrintWriter instancesFile){
-
-        if (instancesFile == null) {
-            return;
-        }
-        String catalogLine = pattern.getPatternId() + "\t" + pattern.getLength() + "\t";
-
-        catalogLine += DF.format(pattern.getScore()) + "\t"
-                + pattern.getInstancesPerGenomeCount() + "\t"
-                + pattern.toString() + "\t";
-
-        catalogLine += familyId;
-
-        instancesFile.println(">" + catalogLine);
-
-        List<String> replicons = new ArrayList<>();
-        int genomeId = -1;
-        String genomeName = "";
-        Genome genome = null;
-
-        for (InstanceLocation instanceLocation : pattern.getPatternLocations().getSortedLocations()) {
-
-            if (instanceLocation.getGenomeId() != genomeId) {
-
-                if (genomeId != -1) {
-                    printGenomeInstancesLine(genomeName, replicons, instancesFile);
-                    replicons.clear();
-                }
-
-                genome = gi.getGenome(instanceLocation.getGenomeId());
-                genomeId = genome.getId();
-                genomeName = genome.getName();
-
-            }
-
-            if (genome == null){
-                continue;
-            }
-
-            String repliconName = genome.getReplicon(instanceLocation.getRepliconId()).getName();
-            replicons.add(String.format("\t%s|[%d,%d]", repliconName,
-                    instanceLocation.getActualStartIndex(), instanceLocation.getActualEndIndex()));
-
-        }
-
-        printGenomeInstancesLine(genomeName, replicons, instancesFile);
-    }
-
-    private static void printGenomeInstancesLine(String genomeName, List<String> replicons, PrintWriter instancesFile){
-        instancesFile.print(genomeName);
-
-        for (String replicon : replicons) {
-            instancesFile.print(replicon);
-        }
-        instancesFile.println();
-    }
-
     public void printFamilies(List<Family> families, CogInfo cogInfo){
         if (families == null | cogInfo == null){
             return;
@@ -181,14 +140,20 @@ public class Writer {
         patternsWriter.write(families, cogInfo);
     }
 
-    private void printInstances(Family family, GenomesInfo gi){
-        createInstancesFile();
-        family.getPatterns().forEach(pattern -> printInstances(pattern, family.getFamilyId(), gi, instancesFile));
+    public void printInstances(List<Family> families, GenomesInfo gi){
+        createInstancesFile(gi);
+        instancesFile.printInstances(families);
     }
 
-    public void printInstances(List<Family> families, GenomesInfo gi){
-        createInstancesFile();
-        families.forEach(family -> printInstances(family, gi));
+    /**
+     * Writes the instances and the catalog lines of the patterns of a family, and flushes the files, so that the
+     * written patterns are available while the next families are found
+     */
+    public void printStreamedFamily(Family family, GenomesInfo gi, CogInfo cogInfo){
+        List<Family> families = Collections.singletonList(family);
+        printInstances(families, gi);
+        printFamilies(families, cogInfo);
+        instancesFile.flush();
     }
 
 }
@@ -2,8 +2,10 @@ package model;
 
 import model.genomes.GenomesInfo;
 import model.patterns.Pattern;
+import model.patterns.TopScoringPatterns;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  */
@@ -19,6 +21,16 @@ public interface Algorithm {
 
     void findPatterns();
 
+    /**
+     * Finds the patterns, and passes each pattern to patternConsumer once it is final. The patterns are not kept by
+     * the algorithm after the search, but may be kept until it ends, e.g. to extend a pattern that is found again.
+     *
+     * With {@link Parameters#keepAllPatterns} and without top scoring patterns, a pattern is final once it is found,
+     * and it is passed during the search. Otherwise the redundant patterns are removed after the search, and the
+     * patterns are passed when it ends.
+     */
+    void findPatterns(Consumer<Pattern> patternConsumer);
+
     List<Pattern> getPatterns();
 
     int getPatternsCount();
@@ -26,4 +38,11 @@ public interface Algorithm {
     Parameters getParameters();
 
     void setNumOfThreads(int numOfThreads);
+
+    /**
+     * Enables top-k mode, in which only the highest scoring patterns are kept and extensions that cannot enter the
+     * top scoring patterns are pruned
+     * @param topScoringPatterns null disables top-k mode
+     */
+    void setTopScoringPatterns(TopScoringPatterns topScoringPatterns);
 }
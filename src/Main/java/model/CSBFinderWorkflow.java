@@ -1,22 +1,33 @@
 package model;
 
 import model.genomes.Gene;
+import model.postprocess.ClusteringCache;
 import model.postprocess.Family;
 import model.postprocess.FamilyClustering;
+import model.postprocess.LshFamilyClustering;
 
 import model.genomes.GenomesInfo;
 import model.patterns.Pattern;
 import model.patterns.PatternScore;
+import model.patterns.ScoreCache;
+import model.patterns.TopScoringPatterns;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  */
 public class CSBFinderWorkflow {
 
+    /**
+     * Number of patterns that are scored and passed together to the consumer of {@link #run(Parameters, Consumer)}
+     */
+    private static final int STREAM_BATCH_SIZE = 1024;
+
     private Algorithm algorithm;
 
     private List<Pattern> patternsFromFile;
@@ -29,6 +40,15 @@ public class CSBFinderWorkflow {
     private List<Pattern> patterns;
     private List<Family> families;
 
+    /**
+     * Scores computed so far, reused when the scores of the same patterns are recomputed
+     */
+    private ScoreCache scoreCache;
+    /**
+     * Gene sets of the current patterns, the genes they share, and their clusterings with the most recent settings
+     */
+    private ClusteringCache clusteringCache;
+
     public CSBFinderWorkflow(GenomesInfo gi){
         Objects.requireNonNull(gi);
 
@@ -42,11 +62,15 @@ public class CSBFinderWorkflow {
         patternsFromFile = new ArrayList<>();
         refGenomesAsPatterns = new ArrayList<>();
         patterns = new ArrayList<>();
+
+        scoreCache = new ScoreCache();
+        clusteringCache = new ClusteringCache();
     }
 
     public void clear(){
         patternsFromFile.clear();
         patterns.clear();
+        clusteringCache.clear();
     }
 
     public void setPatternsFromFile(List<Pattern> patternsFromFile){
@@ -68,6 +92,72 @@ public class CSBFinderWorkflow {
     }
 
     public void run(Parameters params){
+        prepareAlgorithm(params);
+
+        algorithm.findPatterns();
+
+        patterns = algorithm.getPatterns();
+
+        processPatterns();
+
+    }
+
+    /**
+     * Runs without the clustering to families and without keeping the patterns: the patterns are scored in batches
+     * as the algorithm releases them, during the search if they are final once found (see
+     * {@link Algorithm#findPatterns(Consumer)}), and each batch is passed to patternsConsumer as one family.
+     * Afterwards, the workflow contains no families.
+     */
+    public void run(Parameters params, Consumer<Family> patternsConsumer){
+        prepareAlgorithm(params);
+
+        patterns = new ArrayList<>();
+        families = new ArrayList<>();
+        patternsCount = 0;
+        clusteringCache.clear();
+
+        //patterns from a file and top scoring patterns are not scored by the workflow
+        PatternScore patternScore = null;
+        if (patternsFromFile.size() == 0 && !isTopKMode()){
+            if (this.params.delta != 1) {
+                gi.computeDistancesBetweenGenomesAllVsAll();
+            }
+            patternScore = new PatternScore(gi, this.params.delta);
+        }
+
+        PatternScore batchPatternScore = patternScore;
+        List<Pattern> batch = new ArrayList<>();
+        algorithm.findPatterns(pattern -> {
+            batch.add(pattern);
+            if (batch.size() == STREAM_BATCH_SIZE) {
+                releaseBatch(batch, batchPatternScore, patternsConsumer);
+            }
+        });
+        releaseBatch(batch, batchPatternScore, patternsConsumer);
+
+        if (this.params.debug){
+            System.out.println(scoreCache);
+        }
+    }
+
+    /**
+     * Scores the patterns of the batch if needed, passes them to patternsConsumer and clears the batch
+     */
+    private void releaseBatch(List<Pattern> batch, PatternScore patternScore, Consumer<Family> patternsConsumer){
+        if (batch.size() == 0){
+            return;
+        }
+
+        if (patternScore != null) {
+            computeScores(batch, patternScore, params.delta);
+        }
+        patternsCount += batch.size();
+
+        patternsConsumer.accept(new Family(0, gi, batch));
+        batch.clear();
+    }
+
+    private void prepareAlgorithm(Parameters params){
         if (algorithm == null || params == null){
             families = new ArrayList<>();
             params = new Parameters();
@@ -75,30 +165,58 @@ public class CSBFinderWorkflow {
         }
 
         this.params = params;
+        if (params.scoreCacheSize != scoreCache.getMaxSize()){
+            scoreCache = new ScoreCache(params.scoreCacheSize);
+        }
+
         algorithm.setParameters(params);
         algorithm.setPatternsFromFile(patternsFromFile);
         //algorithm.setRefGenomesAsPatterns(refGenomesAsPatterns);
 
-        int procCount = params.procCount == 0 ? Runtime.getRuntime().availableProcessors() : params.procCount;
-        algorithm.setNumOfThreads(procCount);
+        algorithm.setNumOfThreads(getProcCount());
 
-        algorithm.findPatterns();
+        algorithm.setTopScoringPatterns(createTopScoringPatterns());
+    }
 
-        patterns = algorithm.getPatterns();
+    private int getProcCount(){
+        if (params == null){
+            return 1;
+        }
+        return params.getProcCount();
+    }
 
-        processPatterns();
+    private boolean isTopKMode(){
+        return params.topK > 0 && patternsFromFile.size() == 0;
+    }
 
+    /**
+     * In top-k mode the patterns are scored during their extraction
+     * @return null if not in top-k mode
+     */
+    private TopScoringPatterns createTopScoringPatterns(){
+        if (!isTopKMode()){
+            return null;
+        }
+
+        if (params.delta != 1) {
+            gi.computeDistancesBetweenGenomesAllVsAll();
+        }
+        PatternScore patternScore = new PatternScore(gi, params.delta);
+
+        return new TopScoringPatterns(params.topK, patternScore, gi, params.maxInsertion, params.maxPatternLength,
+                params.crossStrand);
     }
 
     private void processPatterns(){
 
         patternsCount = patterns.size();
+        clusteringCache.clear();
 
         if (patterns.size() == 0){
             return;
         }
 
-        if (patternsFromFile.size() == 0){
+        if (patternsFromFile.size() == 0 && !isTopKMode()){
             computeScores(patterns, params.delta);
         }
 
@@ -113,6 +231,8 @@ public class CSBFinderWorkflow {
     public void computeScores(double threshold){
         computeScores(patterns, threshold);
         families.forEach(Family::sortPatternsAndSetScore);
+        //the order of the patterns by score may have changed
+        clusteringCache.clearClusterings();
     }
 
     private void computeScores(List<Pattern> patterns, double threshold){
@@ -122,6 +242,15 @@ public class CSBFinderWorkflow {
         }
         PatternScore patternScore = new PatternScore(gi, threshold);
 
+        computeScores(patterns, patternScore, threshold);
+
+        if (params.debug){
+            System.out.println(scoreCache);
+        }
+    }
+
+    private void computeScores(List<Pattern> patterns, PatternScore patternScore, double threshold){
+
         for (Pattern pattern : patterns) {
             List<Integer> patternLetters = new ArrayList<>();
 
@@ -129,20 +258,34 @@ public class CSBFinderWorkflow {
                 patternLetters.add(gi.getLetter(gene));
             }
 
-            double score = patternScore.computePatternScore(patternLetters, params.maxInsertion,
-                    pattern.getInstanceGenomeIds());
+            Collection<Integer> instanceGenomeIds = pattern.getInstanceGenomeIds();
+            ScoreCache.ScoreKey key = new ScoreCache.ScoreKey(patternLetters, instanceGenomeIds,
+                    params.maxInsertion, threshold);
+
+            double score = scoreCache.getScore(key, () -> patternScore.computePatternScore(patternLetters,
+                    params.maxInsertion, instanceGenomeIds));
             pattern.setScore(score);
         }
     }
 
+    public ScoreCache getScoreCache() {
+        return scoreCache;
+    }
+
     public void setFamilies(List<Family> families){
         this.families = families;
         patterns = families.stream().map(Family::getPatterns).flatMap(List::stream)
                 .collect(Collectors.toList());
+        clusteringCache.clear();
     }
 
     public void clusterToFamilies(double threshold, ClusterBy clusterBy, ClusterDenominator clusterDenominator){
-        families = FamilyClustering.Cluster(patterns, threshold, clusterBy, clusterDenominator, gi);
+        if (params != null && params.clusterMethod == ClusterMethod.LSH) {
+            families = LshFamilyClustering.Cluster(patterns, threshold, clusterBy, clusterDenominator, gi);
+        } else {
+            families = FamilyClustering.Cluster(patterns, threshold, clusterBy, clusterDenominator, gi,
+                    getProcCount(), clusteringCache);
+        }
     }
 
     public int getPatternsCount() {
@@ -0,0 +1,13 @@
+package model;
+
+/**
+ * Defines the method used to cluster patterns to families
+ *
+ * GREEDY: each pattern joins the first family that passes the threshold
+ * LSH: like GREEDY, but a pattern is compared only to families that share a MinHash-LSH bucket with it.
+ * Faster for very large pattern sets, the families approximate the GREEDY families.
+ */
+public enum ClusterMethod {
+    GREEDY,
+    LSH
+}
@@ -3,6 +3,7 @@ package model;
 import model.cogs.COG;
 import model.cogs.CogInfo;
 import model.patterns.Pattern;
+import model.postprocess.LshFamilyClustering;
 import io.*;
 import model.genomes.*;
 
@@ -115,7 +116,7 @@ public class Controller {
 
         try {
             printToScreen("Parsing input genomes file");
-            gi = Parsers.parseGenomesFile(genomesFilePath, params.circular);
+            gi = Parsers.parseGenomesFile(genomesFilePath, params.circular, params.getProcCount());
 
         }catch (Exception e){
             printToScreen("Input genome file is not valid. " + e.getMessage());
@@ -163,16 +164,55 @@ public class Controller {
             workflow.setPatternsFromFile(patternsFromFile);
             workflow.setRefGenomesAsPatterns(refGenomesAsPatterns);
 
-            printToScreen(String.format("Extracting CSBs from %d input sequences.", gi.getNumberOfGenomes()));
-
-            workflow.run(params);
-
-            printToScreen(String.format("%d CSBs found.", workflow.getPatternsCount()));
+            boolean streamOutput = params.streamOutput && params.skipClusterStep &&
+                    params.outputFileType == OutputType.TXT;
+            if (params.streamOutput && !streamOutput) {
+                printToScreen("-stream-output requires -skip-cluster-step and -out TXT, the output files are " +
+                        "written after all CSBs are found");
+            }
 
-            printToScreen("Writing to files");
+            printToScreen(String.format("Extracting CSBs from %d input sequences.", gi.getNumberOfGenomes()));
 
-            //writer = writeExportFiles(families, cogInfoExists, gi, cogInfo);
-            writer = WriteUtils.writeExportFiles(workflow.getFamilies(), gi, cogInfo, params, arguments);
+            if (streamOutput) {
+                writer = WriteUtils.createStreamingExportWriter(gi, cogInfo, params);
+
+                workflow.run(params, family -> writer.printStreamedFamily(family, gi, cogInfo));
+                writer.closeFiles();
+
+                printToScreen(String.format("%d CSBs found.", workflow.getPatternsCount()));
+            } else {
+                workflow.run(params);
+
+                printToScreen(String.format("%d CSBs found.", workflow.getPatternsCount()));
+
+                if (params.clusterMethod == ClusterMethod.LSH && !params.skipClusterStep) {
+                    printToScreen(String.format("Approximate clustering to families: a CSB is compared only to " +
+                            "families with a member in its LSH buckets (%d bands of %d MinHash rows, at most %d " +
+                            "families per bucket), so it may join a different family than in greedy clustering",
+                            LshFamilyClustering.BANDS, LshFamilyClustering.ROWS,
+                            LshFamilyClustering.MAX_BUCKET_SIZE));
+                    double minJaccardSimilarity = LshFamilyClustering.getMinJaccardSimilarity(params.threshold,
+                            params.clusterDenominator);
+                    if (minJaccardSimilarity > 0) {
+                        printToScreen(String.format("Two CSBs that pass the threshold %s with the %s denominator " +
+                                "have a Jaccard similarity s >= %.3f, and share no LSH bucket with probability " +
+                                "(1-s^%d)^%d <= %.3g",
+                                params.threshold, params.clusterDenominator, minJaccardSimilarity,
+                                LshFamilyClustering.ROWS, LshFamilyClustering.BANDS,
+                                LshFamilyClustering.getPairMissProbability(params.threshold,
+                                        params.clusterDenominator)));
+                    } else {
+                        printToScreen(String.format("Two CSBs that pass the threshold %s with the %s denominator " +
+                                "may have any Jaccard similarity, so there is no bound on the probability that " +
+                                "they share no LSH bucket", params.threshold, params.clusterDenominator));
+                    }
+                }
+
+                printToScreen("Writing to files");
+
+                //writer = writeExportFiles(families, cogInfoExists, gi, cogInfo);
+                writer = WriteUtils.writeExportFiles(workflow.getFamilies(), gi, cogInfo, params, arguments);
+            }
 
             MemoryUtils.measure();
 
@@ -6,7 +6,9 @@ package model;
 public enum OutputType {
     TXT("txt"),
     XLSX("xlsx"),
-    SESSION("csb");
+    SESSION("csb"),
+    BINARY_SESSION("csbs"),
+    COLUMNAR("csbt");
 
     public final String extension;
 
@@ -2,6 +2,7 @@ package model;
 import com.beust.jcommander.IParameterValidator;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
+import model.patterns.ScoreCache;
 
 public class Parameters {
 
@@ -96,6 +97,11 @@ public class Parameters {
     @Parameter(names={"-clust-by"}, description = "Cluster CSBs to families by: 'score' or 'length'", order = 16)
     public ClusterBy clusterBy = ClusterBy.SCORE;
 
+    @Parameter(names={"-clust-method"}, description = "Cluster CSBs to families using: 'greedy', or 'lsh' for a " +
+            "faster approximation of the greedy clustering, in which a CSB is compared only to families with " +
+            "similar gene content", order = 16)
+    public ClusterMethod clusterMethod = ClusterMethod.GREEDY;
+
     @Parameter(names={"-clust-denominator"}, description = "In the greedy CSB clustering to families, " +
             "a CSB is added to an existing cluster if the (intersection between the CSB and the Cluster genes/X) is " +
             "above a threshold. Choose X.", order = 17)
@@ -104,6 +110,12 @@ public class Parameters {
     @Parameter(names={"-skip-cluster-step"}, description = "Skip the clustering to families step", order = 17)
     public boolean skipClusterStep = false;
 
+    @Parameter(names={"-stream-output"}, description = "With -skip-cluster-step and -out TXT, write the CSBs to the " +
+            "output files in batches while they are scored, instead of after all of them are scored. With " +
+            "-keep-all-patterns the batches are written during the extraction. The CSBs are not sorted by score",
+            order = 17)
+    public boolean streamOutput = false;
+
     @Parameter(names={"-delta"}, description = "A parameter for score computation. Two genomes with distance above " +
             "delta are considered similar", order = 18)
     public double delta = 1;
@@ -112,6 +124,15 @@ public class Parameters {
             "available processes", order = 19)
     public int procCount = 1;
 
+    @Parameter(names={"-score-cache-size"}, description = "Maximal number of memoized CSB scores, reused when " +
+            "scores are recomputed", validateWith = PositiveInteger.class, order = 21, hidden = true)
+    public int scoreCacheSize = ScoreCache.DEFAULT_MAX_SIZE;
+
+    @Parameter(names={"-top-k"}, description = "Keep only the K highest scoring CSBs. CSBs are scored during their " +
+            "extraction, and extensions that cannot be among the top K are not explored. 0 keeps all CSBs",
+            validateWith = PositiveInteger.class, order = 22)
+    public int topK = 0;
+
     @Parameter(names={"--circular", "-c"}, description = "Input genomes are circular", order = 20)
     public boolean circular = false;
 
@@ -125,5 +146,12 @@ public class Parameters {
 
     @Parameter(names = {"-h","--help"}, description = "Show usage", help = true)
     public boolean help;
+
+    /**
+     * @return the number of threads to use, the number of available processors if {@link #procCount} is 0
+     */
+    public int getProcCount(){
+        return procCount == 0 ? Runtime.getRuntime().availableProcessors() : procCount;
+    }
 }
 
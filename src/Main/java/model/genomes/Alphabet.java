@@ -3,66 +3,159 @@ package model.genomes;
 import java.util.*;
 
 /**
+ * The letters of a dataset.
+ *
+ * Each orthology group of the dataset has an index in the alphabet, and the letter of a gene is the index of its
+ * orthology group shifted left by 2, or'ed with the bits of its strand (as in {@link GeneTable}). The indexes 0 and 1
+ * are reserved for the gap and the unknown orthology group, whose letters are {@link #GAP_CHAR_INDEX} and
+ * {@link #UNK_CHAR_INDEX} on any strand.
+ *
+ * Tables of orthology groups are indexed by {@link #getCogIndex(int)} and have {@link #alphabetSize()} entries, data
+ * of a strand is kept apart from the tables of the other strands.
+ *
+ * Letters of genes are looked up by the code of the gene in the {@link GeneTable} of the dataset, without hashing
+ * the gene.
  */
 public class Alphabet {
 
-    private List<Gene> indexToLetter;
-    private Map<Gene, Integer> letterToIndex;
-
     public static final int GAP_CHAR_INDEX = 0;
     public static final String GAP_CHAR = "_";
-    public static final int UNK_CHAR_INDEX = 1;
+    public static final int UNK_CHAR_INDEX = 1 << GeneTable.STRAND_BITS;
     public static final String UNK_CHAR = "X";
 
-    public Alphabet(){
-        indexToLetter = new ArrayList<>();
-        letterToIndex = new HashMap<>();
+    private static final Strand[] STRANDS = {Strand.FORWARD, Strand.REVERSE, Strand.INVALID};
 
-        //gap
-        Gene gene = new Gene(GAP_CHAR, Strand.FORWARD);
-        letterToIndex.put(gene, GAP_CHAR_INDEX);
-        indexToLetter.add(gene);
+    /**
+     * The letter of each gene code, plus 1. 0 if the gene is not in the alphabet
+     */
+    private int[] letterByGeneCode;
+    /**
+     * The table in which the genes of the dataset are encoded
+     */
+    private final GeneTable geneTable;
+    /**
+     * The code of the forward gene of each orthology group, by index in the alphabet
+     */
+    private int[] cogCodes;
+    private int cogsCount;
 
-        //unkown orthology group
-        gene = new Gene(UNK_CHAR, Strand.FORWARD);
-        letterToIndex.put(gene, UNK_CHAR_INDEX);
-        indexToLetter.add(gene);
+    private final int gapCode;
+    private final int unkCode;
 
-        gene = new Gene(UNK_CHAR, Strand.REVERSE);
-        letterToIndex.put(gene, UNK_CHAR_INDEX);
+    /**
+     * @param geneTable the table in which the genes of the dataset are encoded
+     */
+    public Alphabet(GeneTable geneTable){
+        letterByGeneCode = new int[0];
+        cogCodes = new int[16];
+        this.geneTable = geneTable;
 
-        gene = new Gene(UNK_CHAR, Strand.INVALID);
-        letterToIndex.put(gene, UNK_CHAR_INDEX);
+        gapCode = geneTable.encode(GAP_CHAR, Strand.FORWARD);
+        unkCode = geneTable.encode(UNK_CHAR, Strand.FORWARD);
+
+        cogCodes[GAP_CHAR_INDEX] = gapCode;
+        cogCodes[getCogIndex(UNK_CHAR_INDEX)] = unkCode;
+        cogsCount = 2;
+
+        setLetter(gapCode, GAP_CHAR_INDEX);
+        //unkown orthology group
+        for (Strand strand : STRANDS) {
+            setLetter(GeneTable.withStrand(unkCode, strand), UNK_CHAR_INDEX);
+        }
+    }
+
+    private void setLetter(int geneCode, int letter){
+        if (geneCode >= letterByGeneCode.length) {
+            letterByGeneCode = Arrays.copyOf(letterByGeneCode,
+                    Math.max(geneCode + GeneTable.STRAND_MASK + 1, letterByGeneCode.length * 2));
+        }
+        letterByGeneCode[geneCode] = letter + 1;
     }
 
     public Gene getLetter(int index){
-        return indexToLetter.get(index);
+        return geneTable.getGene(cogCodes[getCogIndex(index)] | (index & GeneTable.STRAND_MASK));
+    }
+
+    /**
+     * @return the index of the orthology group of the letter, in [0, {@link #alphabetSize()})
+     */
+    public static int getCogIndex(int letter){
+        return letter >>> GeneTable.STRAND_BITS;
     }
 
     public int getLetter(Gene gene){
-        if (!letterToIndex.containsKey(gene)){
+        return getLetterOfCode(geneTable.encode(gene));
+    }
+
+    /**
+     * @return the letter of the gene with code {@code geneCode} in {@link #getGeneTable()}, -1 if it is not in the
+     * alphabet
+     */
+    public int getLetterOfCode(int geneCode){
+        if (geneCode >= letterByGeneCode.length) {
             return -1;
         }
-        return letterToIndex.get(gene);
+        return letterByGeneCode[geneCode] - 1;
     }
 
+    /**
+     * @return the number of orthology groups, including the gap and the unknown orthology group
+     */
     public int alphabetSize(){
-        return indexToLetter.size();
+        return cogsCount;
     }
 
+    /**
+     * Adds the orthology group of the gene, on all strands
+     *
+     * @return the letter of the gene
+     */
     public int addLetter(Gene gene){
+        return addLetterOfCode(geneTable.encode(gene));
+    }
 
-        int letterIndex = getLetter(gene);
+    /**
+     * Adds the orthology group of the gene with code {@code geneCode} in {@link #getGeneTable()}, on all strands
+     *
+     * @return the letter of the gene
+     */
+    public int addLetterOfCode(int geneCode){
+
+        int letterIndex = getLetterOfCode(geneCode);
         if (letterIndex == -1) {
-            letterIndex = alphabetSize();
-            indexToLetter.add(gene);
-            letterToIndex.put(gene, letterIndex);
+            int forwardCode = GeneTable.withStrand(geneCode, Strand.FORWARD);
+            int cogIndex = cogsCount++;
+            if (cogIndex == cogCodes.length) {
+                cogCodes = Arrays.copyOf(cogCodes, cogCodes.length * 2);
+            }
+            cogCodes[cogIndex] = forwardCode;
+
+            for (Strand strand : STRANDS) {
+                int code = GeneTable.withStrand(forwardCode, strand);
+                setLetter(code, cogIndex << GeneTable.STRAND_BITS | (code & GeneTable.STRAND_MASK));
+            }
+            letterIndex = getLetterOfCode(geneCode);
         }
         return letterIndex;
     }
 
+    /**
+     * @return the letters, in the order of their indexes
+     */
     public Iterator<Gene> getAlphabetLetters(){
-        return indexToLetter.iterator();
+        List<Gene> letters = new ArrayList<>(cogsCount * STRANDS.length);
+        letters.add(geneTable.getGene(gapCode));
+        letters.add(geneTable.getGene(unkCode));
+        for (int cogIndex = getCogIndex(UNK_CHAR_INDEX) + 1; cogIndex < cogsCount; cogIndex++) {
+            for (Strand strand : STRANDS) {
+                letters.add(geneTable.getGene(GeneTable.withStrand(cogCodes[cogIndex], strand)));
+            }
+        }
+        return letters.iterator();
+    }
+
+    public GeneTable getGeneTable() {
+        return geneTable;
     }
 
     /**
@@ -1,7 +1,8 @@
 package model.genomes;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
  */
@@ -11,7 +12,25 @@ public class Directon implements GenomicSegment {
     private Replicon replicon;
     private int genomeId;
 
-    protected List<Gene> genes;
+    /**
+     * The table in which the genes are encoded, the table of the replicon
+     */
+    private final GeneTable geneTable;
+    /**
+     * The genes of a directon that is built gene by gene, encoded by geneTable. Null if the directon is a view of
+     * the genes of its replicon
+     */
+    private int[] geneCodes;
+    /**
+     * Index of the first gene in geneCodes, or in the genes of the replicon (see {@link Replicon#getGenes()})
+     */
+    private int offset;
+    private int length;
+    /**
+     * True if the genes of the replicon are read from the last to the first
+     */
+    private boolean backwards;
+
     private Strand strand;
     private int startIndexInReplicon;
 
@@ -20,34 +39,83 @@ public class Directon implements GenomicSegment {
         this.replicon = replicon;
         this.genomeId = genomeId;
 
-        genes = new ArrayList<>();
+        geneTable = replicon.getGeneTable();
+        geneCodes = new int[8];
+        offset = 0;
+        length = 0;
+        backwards = false;
+
         strand = Strand.INVALID;
         startIndexInReplicon = 0;
     }
 
+    /**
+     * A view of the genes of the replicon in [startIndex, startIndex + length), without their strands. The genes of
+     * a directon on the reverse strand are in reverse order.
+     */
+    Directon(int id, Replicon replicon, int genomeId, int startIndex, int length, Strand strand){
+        this(id, replicon, genomeId, startIndex, startIndex, length, strand);
+    }
+
+    /**
+     * A view of the genes of the replicon in [offset, offset + length), of a directon that starts at startIndex
+     * before its unknown genes were removed
+     */
+    Directon(int id, Replicon replicon, int genomeId, int startIndex, int offset, int length, Strand strand){
+        this.id = id;
+        this.replicon = replicon;
+        this.genomeId = genomeId;
+
+        geneTable = replicon.getGeneTable();
+        geneCodes = null;
+        this.offset = offset;
+        this.length = length;
+        backwards = strand == Strand.REVERSE;
+
+        this.strand = strand;
+        startIndexInReplicon = startIndex;
+    }
+
+    /**
+     * @return the code of the gene at index, encoded by geneTable
+     */
+    private int getGeneCode(int index){
+        if (geneCodes != null) {
+            return geneCodes[offset + index];
+        }
+        int indexFromStart = backwards ? offset + length - 1 - index : offset + index;
+        return GeneTable.withStrand(replicon.getGeneCodeFromStart(indexFromStart), Strand.INVALID);
+    }
+
+    private boolean isUnkChar(int index, String UNK_CHAR){
+        return geneTable.getGene(getGeneCode(index)).getCogId().equals(UNK_CHAR);
+    }
+
     public void removeUnkChars(String UNK_CHAR){
         removeXFromEnd(UNK_CHAR);
         removeXFromStart(UNK_CHAR);
     }
 
     private void removeXFromEnd(String UNK_CHAR){
-        int i = size()-1;
-        while (i>=0 && genes.get(i).getCogId().equals(UNK_CHAR)){
-            i--;
+        int count = 0;
+        while (count < length && isUnkChar(length - 1 - count, UNK_CHAR)){
+            count++;
         }
-        if (i != size()-1) {
-            genes = new ArrayList<Gene>(genes.subList(0, i + 1));
+        if (backwards) {
+            offset += count;
         }
+        length -= count;
     }
 
     private void removeXFromStart(String UNK_CHAR){
-        int i = 0;
-        while (i<size() && genes.get(i).getCogId().equals(UNK_CHAR)){
-            i++;
+        int count = 0;
+        while (count < length && isUnkChar(count, UNK_CHAR)){
+            count++;
         }
-        if (i != 0) {
-            genes = new ArrayList<Gene>(genes.subList(i, genes.size()));
+        if (!backwards) {
+            offset += count;
         }
+        length -= count;
     }
 
     public void setStrand(Strand strand) {
@@ -64,9 +132,30 @@ public class Directon implements GenomicSegment {
         this.startIndexInReplicon = startIndex;
     }
 
+    /**
+     * @return a view of the genes, decoded when they are accessed
+     */
     @Override
     public List<Gene> getGenes() {
-        return genes;
+        return new GenesView();
+    }
+
+    private class GenesView extends AbstractList<Gene> implements RandomAccess {
+
+        private final int size = length;
+
+        @Override
+        public Gene get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return geneTable.getGene(getGeneCode(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
     }
 
     @Override
@@ -86,20 +175,46 @@ public class Directon implements GenomicSegment {
 
     @Override
     public int size() {
-        return Math.min(genes.size(), replicon.size() - startIndexInReplicon);
+        return Math.min(length, replicon.size() - startIndexInReplicon);
+    }
+
+    /**
+     * Copies the genes of a view, so that genes can be added
+     */
+    private void ensureCapacity(int capacity){
+        if (geneCodes == null) {
+            int[] codes = new int[Math.max(capacity, 8)];
+            for (int i = 0; i < length; i++) {
+                codes[i] = getGeneCode(i);
+            }
+            geneCodes = codes;
+            offset = 0;
+            backwards = false;
+        } else if (offset + capacity > geneCodes.length) {
+            int[] codes = new int[Math.max(capacity, geneCodes.length * 2)];
+            System.arraycopy(geneCodes, offset, codes, 0, length);
+            geneCodes = codes;
+            offset = 0;
+        }
     }
 
     public void addGene(Gene gene){
+        ensureCapacity(length + 1);
         if(getStrand() == Strand.REVERSE) {
-            genes.add(0, gene);
+            System.arraycopy(geneCodes, offset, geneCodes, offset + 1, length);
+            geneCodes[offset] = geneTable.encode(gene);
         }else{
-            genes.add(gene);
+            geneCodes[offset + length] = geneTable.encode(gene);
         }
+        length++;
     }
 
     @Override
     public void addAllGenes(List<Gene> genes) {
-        this.genes.addAll(genes);
+        ensureCapacity(length + genes.size());
+        for (Gene gene : genes) {
+            geneCodes[offset + length++] = geneTable.encode(gene);
+        }
     }
 
     @Override
@@ -3,21 +3,50 @@ package model.genomes;
 import java.util.Objects;
 
 /**
- * Represents a gene
+ * Represents a gene. The genes of the genomes are shared objects of {@link GeneTable}
  */
 public class Gene {
 
     private final String cogId;
     private final Strand strand; //+ or -
 
+    private final int hash;
+    /**
+     * The table of which the gene is a shared gene, null if the gene is not in a table
+     */
+    private final GeneTable table;
+    /**
+     * The code of the gene in table
+     */
+    private final int code;
+
     public Gene(String cogId, Strand strand){
+        this(cogId, strand, null, -1);
+    }
+
+    Gene(String cogId, Strand strand, GeneTable table, int code){
         this.cogId = cogId;
         this.strand = strand;
+        this.table = table;
+        this.code = code;
+
+        hash = Objects.hash(cogId, strand);
     }
 
     public Gene(Gene other){
         this.cogId = other.cogId;
         this.strand = other.strand;
+        this.table = other.table;
+        this.code = other.code;
+
+        hash = other.hash;
+    }
+
+    /**
+     * @return the code of the gene in the table, without a lookup if it is a shared gene of the table
+     */
+    int getCode(GeneTable table) {
+        return this.table == table ? code : table.encode(cogId, strand);
     }
 
     public String getCogId() {
@@ -28,6 +57,17 @@ public class Gene {
         return strand;
     }
 
+    /**
+     * @return the gene of the same orthology group on the opposite strand, a shared gene of the same table if this
+     * gene is a shared gene
+     */
+    public Gene getReverseStrandGene(){
+        if (table == null) {
+            return new Gene(cogId, reverseStrand(strand));
+        }
+        return table.getGene(GeneTable.reverseStrand(code));
+    }
+
     public static Strand reverseStrand(Strand strand){
         return strand == Strand.FORWARD ? Strand.REVERSE : Strand.FORWARD;
     }
@@ -38,7 +78,7 @@ public class Gene {
 
     @Override
     public int hashCode() {
-        return Objects.hash(cogId, strand);
+        return hash;
     }
 
     @Override
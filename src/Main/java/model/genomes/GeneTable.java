@@ -0,0 +1,131 @@
+package model.genomes;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A table of the genes of the orthology groups of a dataset.
+ *
+ * A gene is encoded as an int: the index of its orthology group in the table, shifted left by 2, or'ed with the
+ * bits of its strand. Each code has a single {@link Gene} object (a flyweight), so that genomes can be stored as
+ * arrays of codes and genes are not allocated when the genomes are read.
+ *
+ * Each dataset has its own table (see {@link GenomesInfo#getGeneTable()}), so that the codes of a dataset are assigned
+ * in the order in which its orthology groups first appear, and the table does not grow with the datasets that were
+ * loaded before. Replicons, directons and alphabets keep the table in which their genes were encoded.
+ */
+public final class GeneTable {
+
+    static final int STRAND_BITS = 2;
+    static final int STRAND_MASK = (1 << STRAND_BITS) - 1;
+
+    private static final Strand[] STRANDS = {Strand.FORWARD, Strand.REVERSE, Strand.INVALID};
+
+    private final Map<String, Integer> cogIndexes;
+    /**
+     * Genes indexed by code. The array is replaced when it grows, a code is published in cogIndexes only after its
+     * genes are in the array
+     */
+    private volatile Gene[] genes;
+    private int cogsCount;
+
+    public GeneTable(){
+        cogIndexes = new ConcurrentHashMap<>();
+        genes = new Gene[1024];
+        cogsCount = 0;
+    }
+
+    private static int strandBits(Strand strand){
+        switch (strand) {
+            case FORWARD:
+                return 0;
+            case REVERSE:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * @return the index of the orthology group, added to the table if needed
+     */
+    private int getCogIndex(String cogId){
+        Integer cogIndex = cogIndexes.get(cogId);
+        if (cogIndex != null) {
+            return cogIndex;
+        }
+        return addCog(cogId);
+    }
+
+    private synchronized int addCog(String cogId){
+        Integer cogIndex = cogIndexes.get(cogId);
+        if (cogIndex != null) {
+            return cogIndex;
+        }
+
+        int index = cogsCount++;
+        int firstCode = index << STRAND_BITS;
+
+        Gene[] table = genes;
+        if (firstCode + STRAND_MASK >= table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        String internedCogId = cogId.intern();
+        for (Strand strand : STRANDS) {
+            int code = firstCode | strandBits(strand);
+            table[code] = new Gene(internedCogId, strand, this, code);
+        }
+        genes = table;
+
+        cogIndexes.put(internedCogId, index);
+        return index;
+    }
+
+    public int encode(String cogId, Strand strand){
+        return getCogIndex(cogId) << STRAND_BITS | strandBits(strand);
+    }
+
+    public int encode(Gene gene){
+        return gene.getCode(this);
+    }
+
+    /**
+     * @return the shared gene of the code
+     */
+    public Gene getGene(int code){
+        return genes[code];
+    }
+
+    /**
+     * @return the shared gene of the orthology group on the strand
+     */
+    public Gene getGene(String cogId, Strand strand){
+        return getGene(encode(cogId, strand));
+    }
+
+    /**
+     * @return the number of orthology groups in the table
+     */
+    public int size(){
+        return cogIndexes.size();
+    }
+
+    public static Strand getStrand(int code){
+        return STRANDS[code & STRAND_MASK];
+    }
+
+    /**
+     * @return the code of the same orthology group on the given strand
+     */
+    public static int withStrand(int code, Strand strand){
+        return (code & ~STRAND_MASK) | strandBits(strand);
+    }
+
+    /**
+     * @return the code of the gene on the opposite strand, as in {@link Gene#reverseStrand(Strand)}
+     */
+    public static int reverseStrand(int code){
+        return withStrand(code, Gene.reverseStrand(getStrand(code)));
+    }
+}
@@ -20,14 +20,17 @@ public class GenomesInfo {
     private int datasetLengthSum;
 
     /**
-     * for each cog, a set of genomes (indexes) in which the cog appears
+     * for each cog, the genomes (indexes) in which the cog appears, and its paralog count in each genome
      */
-    public Map<Integer, Set<Integer>> cogToContainingGenomes;
-
-    public Map<Integer, Map<Integer, Integer>> genomeToCogParalogCount;
+    private ParalogCounts paralogCounts;
 
     private int maxGenomeSize;
 
+    /**
+     * The table in which the genes of the dataset are encoded
+     */
+    private final GeneTable geneTable;
+
     private Alphabet alphabet;
 
     public GenomesInfo(){
@@ -41,11 +44,10 @@ public class GenomesInfo {
 
         datasetLengthSum = 0;
 
-        cogToContainingGenomes = new HashMap<>();
-
-        genomeToCogParalogCount = new HashMap<>();
+        paralogCounts = new ParalogCounts();
 
-        alphabet = new Alphabet();
+        geneTable = new GeneTable();
+        alphabet = new Alphabet(geneTable);
     }
 
     public WordArray createWordArray(List<Gene> genes){
@@ -68,6 +70,13 @@ public class GenomesInfo {
         return alphabet.getAlphabetLetters();
     }
 
+    /**
+     * @return the table in which the genes of the dataset are encoded
+     */
+    public GeneTable getGeneTable(){
+        return geneTable;
+    }
+
     public int getNumberOfGenomes(){
         return genomesByName.size();
     }
@@ -122,12 +131,19 @@ public class GenomesInfo {
 
         datasetLengthSum += replicon.size();
 
-        replicon.getGenes()
-                .forEach(gene -> {
-                    alphabet.addLetter(new Gene(gene.getCogId().intern(), Strand.FORWARD));
-                    alphabet.addLetter(new Gene(gene.getCogId().intern(), Strand.REVERSE));
-                    alphabet.addLetter(new Gene(gene.getCogId().intern(), Strand.INVALID));
-                });
+        if (replicon.getGeneTable() == geneTable) {
+            for (int i = 0; i < replicon.size(); i++) {
+                alphabet.addLetterOfCode(replicon.getGeneCode(i));
+            }
+        } else {
+            for (int i = 0; i < replicon.size(); i++) {
+                alphabet.addLetter(replicon.getGene(i));
+            }
+        }
+
+        //segment the replicon to directons once, the engines reuse the boundaries in every run without a maximal
+        //pattern length
+        replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR);
 
     }
 
@@ -137,20 +153,11 @@ public class GenomesInfo {
     }
 
     public void countParalogsInSeqs(WordArray word, int currGenomeId){
-        for (int ch : word.getWordArray()) {
-
-            Map<Integer, Integer> currGenomeParalogsCount = genomeToCogParalogCount
-                    .computeIfAbsent(currGenomeId, k -> new HashMap<>());
-
-            int currCogParalogCount = 1;
-            if (currGenomeParalogsCount.containsKey(ch)) {
-                currCogParalogCount += currGenomeParalogsCount.get(ch);
-            }
-            currGenomeParalogsCount.put(ch, currCogParalogCount);
+        paralogCounts.count(word, currGenomeId);
+    }
 
-            Set<Integer> genomes = cogToContainingGenomes.computeIfAbsent(ch, k -> new HashSet<>());
-            genomes.add(currGenomeId);
-        }
+    public ParalogCounts getParalogCounts() {
+        return paralogCounts;
     }
 
     public int getDatasetLengthSum() {
@@ -206,7 +213,7 @@ public class GenomesInfo {
 
         for (Replicon replicon: genome.getReplicons()){
             genes.addAll(replicon.getGenes().stream().filter(gene -> !gene.getCogId().equals(Alphabet.UNK_CHAR))
-                    .map(gene -> new Gene(gene.getCogId(), Strand.INVALID)).collect(Collectors.toList()));
+                    .map(gene -> geneTable.getGene(gene.getCogId(), Strand.INVALID)).collect(Collectors.toList()));
         }
 
         return genes;
@@ -0,0 +1,228 @@
+package model.genomes;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The number of occurrences of each letter in each genome (paralog count), and the genomes that contain each letter.
+ *
+ * Letters are counted by {@link #count(WordArray, int)}, which may be called concurrently. On the first query after
+ * letters were counted, the counts are compressed to a sparse matrix in CSR form (for each genome, its letters sorted
+ * and their counts), and a bitset of the containing genomes is created for each letter. The bitsets of each strand are
+ * in a table indexed by {@link Alphabet#getCogIndex(int)}, which is created only for the strands of the counted
+ * letters. Queries do not box and may be called concurrently.
+ */
+public class ParalogCounts {
+
+    private static final BitSet NO_GENOMES = new BitSet();
+
+    /**
+     * Letters counted since the last query, by genome id
+     */
+    private int[][] pendingLetters;
+    private int[] pendingSizes;
+
+    /**
+     * The letters counted until the last query
+     */
+    private Matrix counted;
+    /**
+     * The matrix for queries, null if there are pending letters
+     */
+    private volatile Matrix matrix;
+
+    public ParalogCounts(){
+        pendingLetters = new int[0][];
+        pendingSizes = new int[0];
+        counted = new Matrix(new int[1], new int[0], new int[0], new BitSet[GeneTable.STRAND_MASK + 1][0]);
+        matrix = counted;
+    }
+
+    /**
+     * Counts the letters of a genomic segment of the genome with id {@code genomeId}
+     */
+    public synchronized void count(WordArray word, int genomeId){
+        if (genomeId >= pendingLetters.length) {
+            int length = Math.max(genomeId + 1, pendingLetters.length * 2);
+            pendingLetters = Arrays.copyOf(pendingLetters, length);
+            pendingSizes = Arrays.copyOf(pendingSizes, length);
+        }
+
+        int[] letters = pendingLetters[genomeId];
+        int size = pendingSizes[genomeId];
+        int wordLength = word.getLength();
+        if (letters == null || size + wordLength > letters.length) {
+            letters = Arrays.copyOf(letters == null ? new int[0] : letters,
+                    Math.max(size + wordLength, letters == null ? 16 : letters.length * 2));
+            pendingLetters[genomeId] = letters;
+        }
+        for (int i = 0; i < wordLength; i++) {
+            letters[size++] = word.getLetter(i);
+        }
+        pendingSizes[genomeId] = size;
+
+        matrix = null;
+    }
+
+    private Matrix getMatrix(){
+        Matrix current = matrix;
+        if (current == null) {
+            current = merge();
+        }
+        return current;
+    }
+
+    /**
+     * Adds the pending letters to the matrix
+     */
+    private synchronized Matrix merge(){
+        if (matrix != null) {
+            return matrix;
+        }
+
+        Matrix old = counted;
+        int genomesCount = Math.max(old.rowOffsets.length - 1, pendingLetters.length);
+
+        int[] rowOffsets = new int[genomesCount + 1];
+        int[] letters = new int[old.letters.length];
+        int[] counts = new int[old.counts.length];
+        int size = 0;
+
+        for (int genomeId = 0; genomeId < genomesCount; genomeId++) {
+            int[] newLetters = genomeId < pendingLetters.length ? pendingLetters[genomeId] : null;
+            int newSize = 0;
+            if (newLetters != null) {
+                newSize = pendingSizes[genomeId];
+                Arrays.sort(newLetters, 0, newSize);
+            }
+
+            int oldIndex = genomeId < old.rowOffsets.length - 1 ? old.rowOffsets[genomeId] : 0;
+            int oldEnd = genomeId < old.rowOffsets.length - 1 ? old.rowOffsets[genomeId + 1] : 0;
+            int newIndex = 0;
+
+            while (oldIndex < oldEnd || newIndex < newSize) {
+                int letter;
+                int count = 0;
+                if (newIndex == newSize || (oldIndex < oldEnd && old.letters[oldIndex] <= newLetters[newIndex])) {
+                    letter = old.letters[oldIndex];
+                    count += old.counts[oldIndex++];
+                } else {
+                    letter = newLetters[newIndex];
+                }
+                while (newIndex < newSize && newLetters[newIndex] == letter) {
+                    count++;
+                    newIndex++;
+                }
+
+                if (size == letters.length) {
+                    letters = Arrays.copyOf(letters, Math.max(16, size * 2));
+                    counts = Arrays.copyOf(counts, letters.length);
+                }
+                letters[size] = letter;
+                counts[size] = count;
+                size++;
+            }
+            rowOffsets[genomeId + 1] = size;
+        }
+
+        letters = Arrays.copyOf(letters, size);
+        counts = Arrays.copyOf(counts, size);
+
+        BitSet[][] containingGenomes = new BitSet[GeneTable.STRAND_MASK + 1][0];
+        for (int genomeId = 0; genomeId < genomesCount; genomeId++) {
+            for (int i = rowOffsets[genomeId]; i < rowOffsets[genomeId + 1]; i++) {
+                int letter = letters[i];
+                int cogIndex = Alphabet.getCogIndex(letter);
+                BitSet[] strandGenomes = containingGenomes[letter & GeneTable.STRAND_MASK];
+                if (cogIndex >= strandGenomes.length) {
+                    strandGenomes = Arrays.copyOf(strandGenomes, Math.max(cogIndex + 1, strandGenomes.length * 2));
+                    containingGenomes[letter & GeneTable.STRAND_MASK] = strandGenomes;
+                }
+                if (strandGenomes[cogIndex] == null) {
+                    strandGenomes[cogIndex] = new BitSet(genomesCount);
+                }
+                strandGenomes[cogIndex].set(genomeId);
+            }
+        }
+
+        pendingLetters = new int[0][];
+        pendingSizes = new int[0];
+
+        counted = new Matrix(rowOffsets, letters, counts, containingGenomes);
+        matrix = counted;
+        return counted;
+    }
+
+    /**
+     * @return the number of occurrences of the letter in the genome
+     */
+    public int getParalogCount(int genomeId, int letter){
+        return getMatrix().getCount(genomeId, letter);
+    }
+
+    /**
+     * @return the genomes that contain the letter. The bitset is shared and must not be modified.
+     */
+    public BitSet getContainingGenomes(int letter){
+        return getMatrix().getContainingGenomes(letter);
+    }
+
+    /**
+     * @return the genomes that contain all the letters
+     */
+    public BitSet getGenomesContainingAll(int[] letters){
+        Matrix current = getMatrix();
+        if (letters.length == 0) {
+            return new BitSet();
+        }
+        BitSet genomes = (BitSet) current.getContainingGenomes(letters[0]).clone();
+        for (int i = 1; i < letters.length && !genomes.isEmpty(); i++) {
+            genomes.and(current.getContainingGenomes(letters[i]));
+        }
+        return genomes;
+    }
+
+    private static class Matrix {
+        /**
+         * The entries of genome i are in [rowOffsets[i], rowOffsets[i+1])
+         */
+        final int[] rowOffsets;
+        /**
+         * Sorted in each row
+         */
+        final int[] letters;
+        final int[] counts;
+
+        /**
+         * The genomes that contain each letter, by strand bits and orthology group index
+         */
+        final BitSet[][] containingGenomes;
+
+        Matrix(int[] rowOffsets, int[] letters, int[] counts, BitSet[][] containingGenomes){
+            this.rowOffsets = rowOffsets;
+            this.letters = letters;
+            this.counts = counts;
+            this.containingGenomes = containingGenomes;
+        }
+
+        int getCount(int genomeId, int letter){
+            if (genomeId < 0 || genomeId >= rowOffsets.length - 1) {
+                return 0;
+            }
+            int index = Arrays.binarySearch(letters, rowOffsets[genomeId], rowOffsets[genomeId + 1], letter);
+            return index < 0 ? 0 : counts[index];
+        }
+
+        BitSet getContainingGenomes(int letter){
+            if (letter < 0) {
+                return NO_GENOMES;
+            }
+            BitSet[] strandGenomes = containingGenomes[letter & GeneTable.STRAND_MASK];
+            int cogIndex = Alphabet.getCogIndex(letter);
+            if (cogIndex >= strandGenomes.length || strandGenomes[cogIndex] == null) {
+                return NO_GENOMES;
+            }
+            return strandGenomes[cogIndex];
+        }
+    }
+}
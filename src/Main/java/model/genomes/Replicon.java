@@ -1,8 +1,6 @@
 package model.genomes;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  */
@@ -13,42 +11,101 @@ public class Replicon implements GenomicSegment {
     private int repliconId;
     private int genomeId;
 
-    private List<Gene> genes;
-    private List<Gene> cachedCircularGenes;
+    /**
+     * The table in which the genes are encoded
+     */
+    private final GeneTable geneTable;
+    /**
+     * The genes, encoded by geneTable. The reverse complement of a replicon shares this array
+     */
+    private int[] geneCodes;
+    private int length;
+    /**
+     * True if this replicon is the reverse complement of the genes in geneCodes
+     */
+    private boolean reverseComplement;
+
     private Strand strand;
     private int startIndex;
 
+    /**
+     * If true, the genes from the start of the replicon follow its last gene, see {@link #getGenes()}
+     */
     private boolean circular;
-    private static final int GENES_FROM_START = 50;
 
+    /**
+     * The directons of the replicon, null until they are computed or after genes were added
+     */
+    private volatile DirectonBoundaries directonBoundaries;
+
+    /**
+     * A replicon that is not in a dataset, its genes are encoded in a table of its own
+     */
     public Replicon(){
-        this("", -1, -1, Strand.INVALID, false);
+        this(new GeneTable());
     }
 
+    /**
+     * @param geneTable the table in which the genes are encoded, the table of the dataset of the replicon
+     */
+    public Replicon(GeneTable geneTable){
+        this("", -1, -1, Strand.INVALID, geneTable, false);
+    }
+
+    /**
+     * A replicon that is not in a dataset, its genes are encoded in a table of its own
+     */
     public Replicon(String name, int repliconId, int genomeId, Strand strand, boolean circular){
-        this(name, repliconId, genomeId, strand, new ArrayList<>(), circular);
+        this(name, repliconId, genomeId, strand, new GeneTable(), circular);
+    }
+
+    /**
+     * @param geneTable the table in which the genes are encoded, the table of the dataset of the replicon
+     */
+    public Replicon(String name, int repliconId, int genomeId, Strand strand, GeneTable geneTable,
+                    boolean circular){
+        this(name, repliconId, genomeId, strand, geneTable, new int[16], 0, false, circular);
     }
 
     public Replicon(String name, int repliconId, int genomeId, Strand strand, List<Gene> genes, boolean circular){
+        this(name, repliconId, genomeId, strand, circular);
+
+        addAllGenes(genes);
+    }
+
+    /**
+     * @param geneCodes the genes encoded by geneTable, the array is not copied
+     */
+    public Replicon(String name, int repliconId, int genomeId, Strand strand, GeneTable geneTable,
+                    int[] geneCodes, boolean circular){
+        this(name, repliconId, genomeId, strand, geneTable, geneCodes, geneCodes.length, false, circular);
+    }
+
+    private Replicon(String name, int repliconId, int genomeId, Strand strand, GeneTable geneTable,
+                     int[] geneCodes, int length, boolean reverseComplement, boolean circular){
         this.name = name;
         this.repliconId = repliconId;
         this.genomeId = genomeId;
         this.strand = strand;
-        this.genes = genes;
+        this.geneTable = geneTable;
+        this.geneCodes = geneCodes;
+        this.length = length;
+        this.reverseComplement = reverseComplement;
         this.circular = circular;
         startIndex = 0;
-
-        cachedCircularGenes = null;
     }
 
     public Replicon(Replicon other){
-        this(other.name, other.repliconId, other.genomeId, other.strand, other.circular);
+        this(other.name, other.repliconId, other.genomeId, other.strand, other.geneTable,
+                new int[Math.max(other.length, 1)], other.length, false, other.circular);
 
-        genes.addAll(other.genes);
+        for (int i = 0; i < other.length; i++) {
+            geneCodes[i] = other.getGeneCode(i);
+        }
     }
 
-    public Replicon(Strand strand){
-        this();
+    public Replicon(Strand strand, GeneTable geneTable){
+        this(geneTable);
         this.strand = strand;
     }
 
@@ -57,71 +114,206 @@ public class Replicon implements GenomicSegment {
         return strand == Strand.REVERSE ? Strand.FORWARD : Strand.REVERSE;
     }
 
+    /**
+     * @return a view of the reverse complement of this replicon, which shares the genes of this replicon and cannot
+     * be modified
+     */
     public Replicon reverseComplement(){
 
         Strand reversedStrand = reverseStrand(strand);
-        List<Gene> reverseComplementGenes = reverseComplementGenes(genes);
 
-        return new Replicon(name, repliconId, genomeId, reversedStrand, reverseComplementGenes, circular);
+        return new Replicon(name, repliconId, genomeId, reversedStrand, geneTable, geneCodes, length,
+                !reverseComplement, circular);
     }
 
-    public static List<Gene> reverseComplementGenes(List<Gene> genes){
-        List<Gene> reversedGenes = new ArrayList<>(genes);
-        Collections.reverse(reversedGenes);
-
-        List<Gene> reverseComplementGenes = reversedGenes.stream()
-                .map(gene -> new Gene(gene.getCogId().intern(), Gene.reverseStrand(gene.getStrand())))
-                .collect(Collectors.toList());
-
+    /**
+     * @param geneTable the table of the returned genes
+     */
+    public static List<Gene> reverseComplementGenes(List<Gene> genes, GeneTable geneTable){
+        List<Gene> reverseComplementGenes = new ArrayList<>(genes.size());
+        for (int i = genes.size() - 1; i >= 0; i--) {
+            Gene gene = genes.get(i);
+            reverseComplementGenes.add(geneTable.getGene(gene.getCogId(), Gene.reverseStrand(gene.getStrand())));
+        }
         return reverseComplementGenes;
     }
 
+    /**
+     * @return the code of the gene at index, encoded by {@link #getGeneTable()}
+     */
+    public int getGeneCode(int index){
+        if (reverseComplement) {
+            return GeneTable.reverseStrand(geneCodes[length - 1 - index]);
+        }
+        return geneCodes[index];
+    }
 
-    public List<Directon> splitRepliconToDirectons(String UNK_CHAR) {
+    public Gene getGene(int index){
+        return geneTable.getGene(getGeneCode(index));
+    }
 
-        List<Directon> directons = new ArrayList<>();
+    /**
+     * @param index an index in {@link #getGenes()}, which may exceed the replicon size if it is circular
+     * @return the code of the gene at index modulo the replicon size
+     */
+    int getGeneCodeFromStart(int index){
+        return getGeneCode(index < length ? index : index % length);
+    }
 
-        int directonId = 1;
-        Directon directon = new Directon(directonId++, this, getGenomeId());
+    /**
+     * @return the size of {@link #getGenes()}
+     */
+    private int getGenesFromStartCount(){
+        return getGenesFromStartCount(Integer.MAX_VALUE);
+    }
 
-        int geneIndex = 0;
-        List<Gene> genes = getGenes();
-        for (Gene gene : genes) {
-            //end directon if it is the last gene in the replicon, or if next gene is on different strand
-            boolean endDirecton = (geneIndex == genes.size()-1) ||
-                    !(gene.getStrand().equals(genes.get(geneIndex+1).getStrand()));
-            if (directon.getGenes().size() == 0) {
-                //returned to start of replicon in circular replicon, don't create new directon
-                if (geneIndex >= this.size()){
-                    break;
-                }
-                if (!gene.getCogId().equals(UNK_CHAR) && !endDirecton) {
-                    directon.setStrand(gene.getStrand());
-                    directon.addGene(new Gene(gene.getCogId(), Strand.INVALID));
-                }
-            } else {
-                directon.addGene(new Gene(gene.getCogId(), Strand.INVALID));
+    /**
+     * @return the size of {@link #getGenes(int)}
+     */
+    private int getGenesFromStartCount(int maxInstanceLength){
+        if (!circular || length == 0) {
+            return length;
+        }
+        return length + Math.max(0, Math.min(length, maxInstanceLength) - 1);
+    }
+
+    public boolean isCircular() {
+        return circular;
+    }
 
-                if (endDirecton){//directon.size()>0
+    /**
+     * @return the directons of the replicon, without unknown genes at their ends and with at least 2 genes. The
+     * boundaries of the directons are computed on the first call and kept, the directons are views of the genes of
+     * the replicon that are created when they are accessed.
+     */
+    public List<Directon> splitRepliconToDirectons(String UNK_CHAR) {
+        return splitRepliconToDirectons(UNK_CHAR, Integer.MAX_VALUE);
+    }
 
-                    if (directon.size() > 1) {
+    /**
+     * @param maxInstanceLength the maximal length of an instance in the directons, see {@link #getGenes(int)}
+     * @return the directons of the replicon as in {@link #splitRepliconToDirectons(String)}, where a directon that
+     * spans the origin of a circular replicon ends within the genes of {@link #getGenes(int)}, so that the directon of
+     * a replicon whose genes are all on the same strand repeats only the first maxInstanceLength-1 genes
+     */
+    public List<Directon> splitRepliconToDirectons(String UNK_CHAR, int maxInstanceLength) {
+        DirectonBoundaries boundaries = directonBoundaries;
+        if (boundaries == null || !boundaries.unkChar.equals(UNK_CHAR)
+                || boundaries.maxInstanceLength != maxInstanceLength) {
+            boundaries = new DirectonBoundaries(UNK_CHAR, maxInstanceLength);
+            directonBoundaries = boundaries;
+        }
+        return boundaries.new DirectonsView();
+    }
 
-                        directon.setStartIndex(geneIndex-directon.getGenes().size()+1);
+    /**
+     * The directons of the replicon, as offsets in {@link #getGenes()}
+     */
+    private class DirectonBoundaries {
+
+        final String unkChar;
+        final int maxInstanceLength;
+
+        int count;
+        int[] ids;
+        /**
+         * The start index of each directon before its unknown genes were removed
+         */
+        int[] startIndexes;
+        int[] offsets;
+        int[] lengths;
+        Strand[] strands;
+
+        DirectonBoundaries(String unkChar, int maxInstanceLength){
+            this.unkChar = unkChar;
+            this.maxInstanceLength = maxInstanceLength;
+
+            count = 0;
+            ids = new int[8];
+            startIndexes = new int[8];
+            offsets = new int[8];
+            lengths = new int[8];
+            strands = new Strand[8];
+
+            int directonId = 1;
+
+            int genesCount = getGenesFromStartCount(maxInstanceLength);
+            //the start index and the strand of the current directon, or -1 if there is no current directon
+            int directonStart = -1;
+            Strand directonStrand = Strand.INVALID;
+            for (int geneIndex = 0; geneIndex < genesCount; geneIndex++) {
+                int geneCode = getGeneCodeFromStart(geneIndex);
+
+                //end directon if it is the last gene in the replicon, or if next gene is on different strand
+                boolean endDirecton = (geneIndex == genesCount-1) ||
+                        GeneTable.getStrand(geneCode) != GeneTable.getStrand(getGeneCodeFromStart(geneIndex+1));
+                if (directonStart == -1) {
+                    //returned to start of replicon in circular replicon, don't create new directon
+                    if (geneIndex >= size()){
+                        break;
+                    }
+                    if (!isUnkChar(geneCode) && !endDirecton) {
+                        directonStart = geneIndex;
+                        directonStrand = GeneTable.getStrand(geneCode);
+                    }
+                } else if (endDirecton) {
 
-                        directon.removeUnkChars(UNK_CHAR);
-                        if (directon.getGenes().size() > 1) {
+                    //remove unknown genes from both ends
+                    int first = directonStart;
+                    int last = geneIndex;
+                    while (last >= first && isUnkChar(getGeneCodeFromStart(last))) {
+                        last--;
+                    }
+                    while (first <= last && isUnkChar(getGeneCodeFromStart(first))) {
+                        first++;
+                    }
 
-                            directons.add(directon);
-                        }
+                    int id = directonId++;
+                    if (last - first + 1 > 1) {
+                        add(id, directonStart, first, last - first + 1, directonStrand);
                     }
 
-                    directon = new Directon(directonId++, this, getGenomeId());
+                    directonStart = -1;
                 }
             }
-            geneIndex ++;
         }
 
-        return directons;
+        private boolean isUnkChar(int geneCode){
+            return geneTable.getGene(geneCode).getCogId().equals(unkChar);
+        }
+
+        private void add(int id, int startIndex, int offset, int length, Strand strand){
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                startIndexes = Arrays.copyOf(startIndexes, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+                lengths = Arrays.copyOf(lengths, count * 2);
+                strands = Arrays.copyOf(strands, count * 2);
+            }
+            ids[count] = id;
+            startIndexes[count] = startIndex;
+            offsets[count] = offset;
+            lengths[count] = length;
+            strands[count] = strand;
+            count++;
+        }
+
+        private class DirectonsView extends AbstractList<Directon> implements RandomAccess {
+
+            @Override
+            public Directon get(int index) {
+                if (index < 0 || index >= count) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+                }
+                return new Directon(ids[index], Replicon.this, getGenomeId(), startIndexes[index], offsets[index],
+                        lengths[index], strands[index]);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        }
     }
 
     public String getName() {
@@ -142,22 +334,48 @@ public class Replicon implements GenomicSegment {
         this.startIndex = startIndex;
     }
 
+    /**
+     * @return a view of the genes, decoded when they are accessed. If the replicon is circular, the view is followed
+     * by all the genes of the replicon except the last, so that instances that span the origin (of any length up to
+     * the size of the replicon) are contiguous in the view. The genes are not copied, index i of the view is the gene
+     * at index i modulo the replicon size.
+     */
     @Override
     public List<Gene> getGenes() {
-        if (circular) {
-            return getCircularGenes();
-        }
-        return genes;
+        return new GenesView(getGenesFromStartCount());
     }
 
-    private List<Gene> getCircularGenes(){
-        if (cachedCircularGenes != null){
-            return cachedCircularGenes;
+    /**
+     * @param maxInstanceLength the maximal length of an instance in the genes, e.g. the maximal pattern length plus
+     *                          the maximal number of insertions
+     * @return a view of the genes as in {@link #getGenes()}, in which a circular replicon is followed only by the
+     * genes that an instance that spans the origin may contain, so that the genes are indexed by at most
+     * size + maxInstanceLength - 1 letters
+     */
+    public List<Gene> getGenes(int maxInstanceLength) {
+        return new GenesView(getGenesFromStartCount(maxInstanceLength));
+    }
+
+    private class GenesView extends AbstractList<Gene> implements RandomAccess {
+
+        private final int size;
+
+        GenesView(int size){
+            this.size = size;
+        }
+
+        @Override
+        public Gene get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return geneTable.getGene(getGeneCodeFromStart(index));
+        }
+
+        @Override
+        public int size() {
+            return size;
         }
-        List<Gene> firstGenes = genes.subList(0, Math.min(GENES_FROM_START, genes.size()-1));
-        return Stream.of(genes, firstGenes)
-                .flatMap(Collection::stream)
-                .collect(Collectors.toList());
     }
 
     @Override
@@ -170,26 +388,50 @@ public class Replicon implements GenomicSegment {
         return genomeId;
     }
 
+    /**
+     * @return an id that is different for the replicon and its reverse complement, also for replicon 0
+     */
     @Override
     public int getId() {
-        return strand.numericValue * repliconId;
+        return strand.numericValue * (repliconId + 1);
     }
 
     @Override
     public int size() {
-        return genes.size();
+        return length;
+    }
+
+    /**
+     * @return the table in which the genes are encoded
+     */
+    public GeneTable getGeneTable() {
+        return geneTable;
     }
 
     @Override
     public void addGene(Gene gene) {
-        genes.add(gene);
-        cachedCircularGenes = null;
+        addGeneCode(geneTable.encode(gene));
+    }
+
+    /**
+     * @param geneCode the gene encoded by {@link #getGeneTable()}
+     */
+    public void addGeneCode(int geneCode) {
+        if (reverseComplement) {
+            throw new UnsupportedOperationException("The reverse complement of a replicon cannot be modified");
+        }
+        if (length == geneCodes.length) {
+            geneCodes = Arrays.copyOf(geneCodes, Math.max(16, length * 2));
+        }
+        geneCodes[length++] = geneCode;
+        directonBoundaries = null;
     }
 
     @Override
     public void addAllGenes(List<Gene> genes) {
-        this.genes.addAll(genes);
-        cachedCircularGenes = null;
+        for (Gene gene : genes) {
+            addGene(gene);
+        }
     }
 
     @Override
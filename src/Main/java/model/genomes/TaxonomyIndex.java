@@ -0,0 +1,165 @@
+package model.genomes;
+
+import java.util.*;
+
+/**
+ * The taxonomy of the genomes of a dataset, loaded from a taxa file.
+ *
+ * The taxa of each level are the nodes of a tree: a taxon is identified by its name and its parent taxon in the
+ * previous level, and has an id that is an index in the arrays of its level. The taxa of each genome and the number
+ * of genomes in each taxon are computed when the genomes are added, so that the taxa of a set of genomes are counted
+ * in arrays, see {@link #countGenomes(Collection)}.
+ *
+ * Genomes that are not in the taxonomy belong to the taxa with id {@link #NO_TAXON}, named {@link Taxon#NO_TAXA}.
+ */
+public class TaxonomyIndex {
+
+    public static final int LEVELS_COUNT = 5;
+
+    public static final int NO_TAXON = 0;
+
+    private final Map<String, Integer> genomeIndexes;
+    /**
+     * The id of the taxon of each genome, by level and genome index
+     */
+    private int[][] genomeTaxa;
+
+    private final Level[] levels;
+
+    public TaxonomyIndex(){
+        genomeIndexes = new HashMap<>();
+        genomeTaxa = new int[LEVELS_COUNT][16];
+
+        levels = new Level[LEVELS_COUNT];
+        for (int level = 0; level < LEVELS_COUNT; level++) {
+            levels[level] = new Level();
+        }
+        addTaxa(new Taxon());
+    }
+
+    /**
+     * Adds a genome, or replaces the taxon of a genome that was already added
+     */
+    public void addGenome(String genomeName, Taxon taxon){
+        Integer genomeIndex = genomeIndexes.get(genomeName);
+        if (genomeIndex == null) {
+            genomeIndex = genomeIndexes.size();
+            genomeIndexes.put(genomeName, genomeIndex);
+            if (genomeIndex == genomeTaxa[0].length) {
+                for (int level = 0; level < LEVELS_COUNT; level++) {
+                    genomeTaxa[level] = Arrays.copyOf(genomeTaxa[level], genomeIndex * 2);
+                }
+            }
+        } else {
+            for (int level = 0; level < LEVELS_COUNT; level++) {
+                levels[level].genomesCounts[genomeTaxa[level][genomeIndex]]--;
+            }
+        }
+
+        int[] taxa = addTaxa(taxon);
+        for (int level = 0; level < LEVELS_COUNT; level++) {
+            genomeTaxa[level][genomeIndex] = taxa[level];
+            levels[level].genomesCounts[taxa[level]]++;
+        }
+    }
+
+    /**
+     * @return the ids of the taxa of the path of taxon, added if needed
+     */
+    private int[] addTaxa(Taxon taxon){
+        int[] taxa = new int[LEVELS_COUNT];
+        int parent = 0;
+        for (int level = 0; level < LEVELS_COUNT; level++) {
+            parent = levels[level].getOrAdd(parent, taxon.getTaxaAtLevel(level));
+            taxa[level] = parent;
+        }
+        return taxa;
+    }
+
+    /**
+     * @return the number of genomes in the taxonomy
+     */
+    public int size(){
+        return genomeIndexes.size();
+    }
+
+    /**
+     * @return the number of taxa in the level
+     */
+    public int getTaxaCount(int level){
+        return levels[level].size;
+    }
+
+    /**
+     * @return the id of the taxon of the genome in the level, or {@link #NO_TAXON} if the genome is not in the
+     * taxonomy
+     */
+    public int getTaxonId(int level, String genomeName){
+        Integer genomeIndex = genomeIndexes.get(genomeName);
+        return genomeIndex == null ? NO_TAXON : genomeTaxa[level][genomeIndex];
+    }
+
+    public String getTaxonName(int level, int taxonId){
+        return levels[level].names.get(taxonId);
+    }
+
+    /**
+     * @return the id of the parent of the taxon in the previous level, 0 for the first level
+     */
+    public int getParentId(int level, int taxonId){
+        return levels[level].parents[taxonId];
+    }
+
+    /**
+     * @return the number of genomes of the taxonomy in the taxon
+     */
+    public int getGenomesCount(int level, int taxonId){
+        return levels[level].genomesCounts[taxonId];
+    }
+
+    /**
+     * @return the number of the genomes in each taxon, by level and taxon id. Genomes that are not in the taxonomy
+     * are counted in {@link #NO_TAXON}.
+     */
+    public int[][] countGenomes(Collection<String> genomeNames){
+        int[][] counts = new int[LEVELS_COUNT][];
+        for (int level = 0; level < LEVELS_COUNT; level++) {
+            counts[level] = new int[levels[level].size];
+        }
+
+        for (String genomeName : genomeNames) {
+            Integer genomeIndex = genomeIndexes.get(genomeName);
+            for (int level = 0; level < LEVELS_COUNT; level++) {
+                counts[level][genomeIndex == null ? NO_TAXON : genomeTaxa[level][genomeIndex]]++;
+            }
+        }
+        return counts;
+    }
+
+    private static class Level {
+        /**
+         * The ids of the taxa by their parent id and name
+         */
+        final Map<Integer, Map<String, Integer>> childIds = new HashMap<>();
+        final List<String> names = new ArrayList<>();
+        int[] parents = new int[16];
+        int[] genomesCounts = new int[16];
+        int size = 0;
+
+        int getOrAdd(int parent, String name){
+            Map<String, Integer> children = childIds.computeIfAbsent(parent, k -> new HashMap<>());
+            Integer id = children.get(name);
+            if (id == null) {
+                id = size++;
+                if (id == parents.length) {
+                    parents = Arrays.copyOf(parents, id * 2);
+                    genomesCounts = Arrays.copyOf(genomesCounts, id * 2);
+                }
+                parents[id] = parent;
+                names.add(name);
+                children.put(name, id);
+            }
+            return id;
+        }
+    }
+}
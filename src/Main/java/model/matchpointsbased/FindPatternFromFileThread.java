@@ -2,6 +2,7 @@ package model.matchpointsbased;
 
 import model.genomes.*;
 import model.patterns.Pattern;
+import model.patterns.PatternKey;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentMap;
@@ -13,7 +14,7 @@ public class FindPatternFromFileThread extends FindPatternsThread {
     private Pattern pattern;
 
     public FindPatternFromFileThread(Pattern pattern, GenomesInfo genomesInfo, int quorum, int maxInsertion,
-                                     ConcurrentMap<String, Pattern> patterns,
+                                     ConcurrentMap<PatternKey, Pattern> patterns,
                                      Map<Integer, Map<Integer, List<MatchPoint>>> matchLists) {
 
         super(genomesInfo, quorum, pattern.getLength(), pattern.getLength(), maxInsertion, patterns, matchLists);
@@ -33,10 +34,10 @@ public class FindPatternFromFileThread extends FindPatternsThread {
 
     protected void addPattern(Pattern pattern){
         if (pattern.getInstancesPerGenomeCount() >= quorum
-                && pattern.getLength() >= minPatternLength && pattern.toString().equals(this.pattern.toString())) {
+                && pattern.getLength() >= minPatternLength && pattern.getKey().equals(this.pattern.getKey())) {
 
             pattern.setPatternId(this.pattern.getPatternId());
-            patterns.put(pattern.toString(), pattern);
+            patterns.put(pattern.getKey(), pattern);
 
         }
     }
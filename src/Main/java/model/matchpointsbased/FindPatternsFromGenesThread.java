@@ -2,6 +2,7 @@ package model.matchpointsbased;
 
 import model.genomes.*;
 import model.patterns.Pattern;
+import model.patterns.PatternKey;
 
 import java.util.List;
 import java.util.Map;
@@ -14,7 +15,7 @@ public class FindPatternsFromGenesThread extends FindPatternsThread {
     private List<Gene> genes;
 
     public FindPatternsFromGenesThread(List<Gene> genes, GenomesInfo genomesInfo, int quorum, int maxPatternLength,
-                                       int minPatternLength, int maxInsertion, ConcurrentMap<String, Pattern> patterns, Map<Integer,
+                                       int minPatternLength, int maxInsertion, ConcurrentMap<PatternKey, Pattern> patterns, Map<Integer,
             Map<Integer, List<MatchPoint>>> matchLists) {
 
         super(genomesInfo, quorum, maxPatternLength, minPatternLength, maxInsertion, patterns, matchLists);
@@ -37,7 +38,17 @@ public class FindPatternsFromGenesThread extends FindPatternsThread {
         if (pattern.getInstancesPerGenomeCount() >= quorum
                 && pattern.getLength() >= minPatternLength) {
 
-            patterns.put(pattern.toString(), pattern);
+            if (topScoringPatterns != null) {
+                pattern.setScore(topScoringPatterns.computeScore(pattern.getPatternGenes(),
+                        pattern.getInstanceGenomeIds()));
+                topScoringPatterns.offer(pattern);
+            }
+
+            if (patternConsumer != null) {
+                patternConsumer.accept(pattern);
+            } else {
+                patterns.put(pattern.getKey(), pattern);
+            }
 
         }
     }
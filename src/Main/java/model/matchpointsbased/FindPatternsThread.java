@@ -3,6 +3,8 @@ package model.matchpointsbased;
 import model.genomes.*;
 import model.patterns.InstanceLocation;
 import model.patterns.Pattern;
+import model.patterns.PatternKey;
+import model.patterns.TopScoringPatterns;
 
 import java.util.Iterator;
 import java.util.List;
@@ -10,6 +12,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 
 public abstract class FindPatternsThread implements Callable<Object> {
 
@@ -27,10 +30,20 @@ public abstract class FindPatternsThread implements Callable<Object> {
     /**
      * Shared by all threads, the patterns are added dynamically
      */
-    protected ConcurrentMap<String, Pattern> patterns;
+    protected ConcurrentMap<PatternKey, Pattern> patterns;
+
+    /**
+     * If not null, extensions that cannot be one of the top scoring patterns are pruned
+     */
+    protected TopScoringPatterns topScoringPatterns;
+
+    /**
+     * If not null, receives the patterns as they are found, and adds them to patterns
+     */
+    protected Consumer<Pattern> patternConsumer;
 
     public FindPatternsThread(GenomesInfo genomesInfo, int quorum, int maxPatternLength,
-                              int minPatternLength, int maxInsertion, ConcurrentMap<String, Pattern> patterns, Map<Integer,
+                              int minPatternLength, int maxInsertion, ConcurrentMap<PatternKey, Pattern> patterns, Map<Integer,
             Map<Integer, List<MatchPoint>>> matchLists) {
 
         this.genomesInfo = genomesInfo;
@@ -41,6 +54,15 @@ public abstract class FindPatternsThread implements Callable<Object> {
         this.patterns = patterns;
         this.matchLists = matchLists;
 
+        topScoringPatterns = null;
+    }
+
+    public void setTopScoringPatterns(TopScoringPatterns topScoringPatterns) {
+        this.topScoringPatterns = topScoringPatterns;
+    }
+
+    public void setPatternConsumer(Consumer<Pattern> patternConsumer) {
+        this.patternConsumer = patternConsumer;
     }
 
     abstract void extractPatterns();
@@ -74,14 +96,16 @@ public abstract class FindPatternsThread implements Callable<Object> {
                 break;
             }
 
-            List<Gene> extendedPatternGenes = genes.subList(patternStart, patternEnd + 1);
-            Pattern extendedPattern = new Pattern("-1", extendedPatternGenes);
+            Gene[] extendedPatternGenes = genes.subList(patternStart, patternEnd + 1).toArray(new Gene[0]);
 
-            if (patterns.containsKey(extendedPattern.toString())) {
-                pattern = patterns.get(extendedPattern.toString());
+            Pattern existingPattern = patterns.get(PatternKey.of(extendedPatternGenes));
+            if (existingPattern != null) {
+                pattern = existingPattern;
                 continue;
             }
 
+            Pattern extendedPattern = new Pattern("-1", extendedPatternGenes);
+
             extendPattern(letter, pattern, extendedPattern);
             addPattern(extendedPattern);
 
@@ -90,6 +114,10 @@ public abstract class FindPatternsThread implements Callable<Object> {
             if (pattern.getInstancesPerGenomeCount() < quorum) {
                 return;
             }
+            if (topScoringPatterns != null &&
+                    !topScoringPatterns.canExtend(pattern.getLength(), pattern.getInstancesPerGenomeCount())) {
+                return;
+            }
         }
 
     }
@@ -4,10 +4,14 @@ import model.Algorithm;
 import model.genomes.*;
 import model.Parameters;
 import model.patterns.Pattern;
+import model.patterns.PatternKey;
 import model.patterns.PatternsUtils;
+import model.patterns.TopScoringPatterns;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  */
@@ -21,11 +25,23 @@ public class MatchPointAlgorithm implements Algorithm {
     private GenomesInfo genomesInfo;
     private Parameters parameters;
 
-    private ConcurrentMap<String, Pattern> patterns;
+    private ConcurrentMap<PatternKey, Pattern> patterns;
 
     private List<Pattern> patternsFromFile;
     private List<Pattern> refGenomesAsPatterns;
 
+    /**
+     * If not null, extensions that cannot be one of the top scoring patterns are pruned, and only the top scoring
+     * patterns are kept after the search
+     */
+    private TopScoringPatterns topScoringPatterns;
+
+    /**
+     * If not null, receives the patterns as they are found, keeps them in patterns and releases the new ones, see
+     * {@link #releaseOnce(Consumer)}
+     */
+    private Consumer<Pattern> patternConsumer;
+
     private ExecutorService executor;
 
     private SegmentationType segmentationType;
@@ -42,12 +58,18 @@ public class MatchPointAlgorithm implements Algorithm {
         executor = Executors.newFixedThreadPool(1);
 
         extractPatternsFrom = ExtractPatternsFrom.ALL_GENOMES;
+        topScoringPatterns = null;
     }
 
     public void setNumOfThreads(int numOfThreads){
         executor = Executors.newFixedThreadPool(numOfThreads);
     }
 
+    @Override
+    public void setTopScoringPatterns(TopScoringPatterns topScoringPatterns) {
+        this.topScoringPatterns = topScoringPatterns;
+    }
+
     private void createMatchLists(boolean crossStrand) {
 
         if (genomesInfo == null) {
@@ -71,25 +93,30 @@ public class MatchPointAlgorithm implements Algorithm {
     }
 
     private void createMatchListsDirectons(Genome genome, Replicon replicon) {
-        List<Directon> directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR);
+        List<Directon> directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR, getMaxInstanceLength());
 
         for (Directon directon : directons) {
+            genomicSegments.add(directon);
             createMatchLists(directon, genome.getId());
         }
     }
 
+    /**
+     * The instances are found in the replicon and its reverse complement, but the patterns are extracted only from
+     * the replicon: the reverse compliment of each of its patterns is found in the reverse complement
+     */
     private void createMatchListsCrossStrand(Genome genome, Replicon replicon) {
         Replicon reversedReplicon = replicon.reverseComplement();
 
         createMatchLists(reversedReplicon, genome.getId());
+
+        genomicSegments.add(replicon);
         createMatchLists(replicon, genome.getId());
     }
 
     private void createMatchLists(GenomicSegment genomicSegment, int currGenomeId) {
 
-        genomicSegments.add(genomicSegment);
-
-        List<Gene> genes = genomicSegment.getGenes();
+        List<Gene> genes = getGenes(genomicSegment);
         WordArray cogWord = genomesInfo.createWordArray(genes);
         genomesInfo.countParalogsInSeqs(cogWord, currGenomeId);
 
@@ -154,6 +181,56 @@ public class MatchPointAlgorithm implements Algorithm {
 
     }
 
+    @Override
+    public void findPatterns(Consumer<Pattern> patternConsumer) {
+        if (parameters != null && parameters.keepAllPatterns && topScoringPatterns == null
+                && extractPatternsFrom == ExtractPatternsFrom.ALL_GENOMES) {
+            //no pattern is removed after the search, so each pattern is final once it is found
+            this.patternConsumer = releaseOnce(patternConsumer);
+            try {
+                findPatterns();
+            } finally {
+                this.patternConsumer = null;
+                //all patterns were released
+                patterns.clear();
+            }
+        } else {
+            findPatterns();
+        }
+
+        //the redundant patterns are removed only after all patterns are found
+        PatternsUtils.releasePatterns(patterns, patternConsumer);
+    }
+
+    /**
+     * @return a consumer of the patterns that the threads find, that keeps each pattern in patterns, so that it is
+     * extended only once, and passes it to patternConsumer if it was not found before, one at a time, as
+     * {@link #findPatterns()} keeps it: in its canonical orientation in cross-strand runs, with the next pattern id
+     */
+    private Consumer<Pattern> releaseOnce(Consumer<Pattern> patternConsumer) {
+        AtomicInteger lastPatternId = new AtomicInteger(0);
+        return pattern -> {
+            //patterns are added only here, so a pattern in patterns was released with its other orientation
+            synchronized (patternConsumer) {
+                if (patterns.putIfAbsent(pattern.getKey(), pattern) != null) {
+                    return;
+                }
+                if (parameters.crossStrand) {
+                    PatternKey reverseComplimentKey = pattern.getReverseComplimentKey();
+                    if (!reverseComplimentKey.equals(pattern.getKey())
+                            && patterns.containsKey(reverseComplimentKey)) {
+                        return;
+                    }
+                }
+                //the consumer may sort the locations, while the threads extend the pattern in patterns
+                Pattern releasedPattern = parameters.crossStrand && !pattern.isCanonical()
+                        ? pattern.reverseCompliment() : pattern.copy();
+                releasedPattern.setPatternId(String.valueOf(lastPatternId.incrementAndGet()));
+                patternConsumer.accept(releasedPattern);
+            }
+        };
+    }
+
     @Override
     public void findPatterns() {
         if (genomesInfo == null || parameters == null) {
@@ -177,18 +254,47 @@ public class MatchPointAlgorithm implements Algorithm {
             e.printStackTrace();
         }
 
-        if (extractPatternsFrom != ExtractPatternsFrom.FILE) {
+        if (extractPatternsFrom != ExtractPatternsFrom.FILE && patternConsumer == null) {
+            if (parameters.crossStrand) {
+                PatternsUtils.keepCanonicalOrientations(patterns);
+            }
             setPatternIds();
             removeRedundantPatterns();
+
+            if (topScoringPatterns != null) {
+                PatternsUtils.retainTopScoringPatterns(patterns, topScoringPatterns.getK());
+            }
         }
     }
 
+    /**
+     * @return the genes of the genomic segment, where the genes from the start of a circular replicon are limited to
+     * those that an instance that spans its origin may contain
+     */
+    private List<Gene> getGenes(GenomicSegment genomicSegment) {
+        if (genomicSegment instanceof Replicon) {
+            return ((Replicon) genomicSegment).getGenes(getMaxInstanceLength());
+        }
+        return genomicSegment.getGenes();
+    }
+
+    /**
+     * @return the maximal length of an instance, a pattern of the maximal length with the maximal insertions
+     */
+    private int getMaxInstanceLength() {
+        return (int) Math.min((long) parameters.maxPatternLength + parameters.maxInsertion, Integer.MAX_VALUE);
+    }
+
     private void extractPatternsFromAllGenomes(List<Callable<Object>> tasks) {
         for (GenomicSegment genomicSegment : genomicSegments) {
 
-            List<Gene> genes = genomicSegment.getGenes();
-            tasks.add(new FindPatternsFromGenesThread(genes, genomesInfo, parameters.quorum2, parameters.maxPatternLength,
-                    parameters.minPatternLength, parameters.maxInsertion, patterns, matchLists));
+            List<Gene> genes = getGenes(genomicSegment);
+            FindPatternsThread task = new FindPatternsFromGenesThread(genes, genomesInfo, parameters.quorum2,
+                    parameters.maxPatternLength, parameters.minPatternLength, parameters.maxInsertion, patterns,
+                    matchLists);
+            task.setTopScoringPatterns(topScoringPatterns);
+            task.setPatternConsumer(patternConsumer);
+            tasks.add(task);
         }
     }
 
@@ -197,7 +303,7 @@ public class MatchPointAlgorithm implements Algorithm {
 
             List<Gene> genes = Arrays.asList(pattern.getPatternGenes());
 
-            Replicon replicon = new Replicon();
+            Replicon replicon = new Replicon(genomesInfo.getGeneTable());
             replicon.addAllGenes(genes);
 
             int maxPatternLength = Math.min(replicon.size(), parameters.maxPatternLength);
@@ -243,41 +349,52 @@ public class MatchPointAlgorithm implements Algorithm {
     }
     private void removeRedundantPatterns() {
 
-        HashSet<String> patternsToRemove = new HashSet<>();
-        for (Map.Entry<String, Pattern> entry : patterns.entrySet()) {
-
-            Pattern pattern = entry.getValue();
-
-            if (!parameters.keepAllPatterns) {
-                String suffixStr = getSuffix(pattern);
-                PatternsUtils.addSubPatternToRemoveList(patterns, suffixStr, pattern, patternsToRemove);
+        if (parameters.keepAllPatterns) {
+            return;
+        }
 
-                String prefixStr = getPrefix(pattern);
-                PatternsUtils.addSubPatternToRemoveList(patterns, prefixStr, pattern, patternsToRemove);
+        HashSet<PatternKey> patternsToRemove = new HashSet<>();
+        for (Map.Entry<PatternKey, Pattern> entry : patterns.entrySet()) {
 
-            }
+            Pattern pattern = entry.getValue();
+            Gene[] genes = pattern.getPatternGenes();
 
             if (parameters.crossStrand) {
-                PatternsUtils.removeReverseCompliments(patterns, pattern, patternsToRemove);
+                //the sub-patterns of both orientations, the reverse compliment of a suffix is a prefix of the other
+                // orientation
+                Gene[] reverseComplimentGenes = pattern.getReverseComplimentPattern();
+                PatternsUtils.addSubPatternToRemoveList(patterns, getSuffix(genes),
+                        getPrefix(reverseComplimentGenes), pattern, patternsToRemove);
+                PatternsUtils.addSubPatternToRemoveList(patterns, getPrefix(genes),
+                        getSuffix(reverseComplimentGenes), pattern, patternsToRemove);
+                PatternsUtils.addSubPatternToRemoveList(patterns, getSuffix(reverseComplimentGenes),
+                        getPrefix(genes), pattern, patternsToRemove);
+                PatternsUtils.addSubPatternToRemoveList(patterns, getPrefix(reverseComplimentGenes),
+                        getSuffix(genes), pattern, patternsToRemove);
+            } else {
+                PatternKey suffixKey = getSuffix(genes);
+                PatternsUtils.addSubPatternToRemoveList(patterns, suffixKey, pattern, patternsToRemove);
+
+                PatternKey prefixKey = getPrefix(genes);
+                PatternsUtils.addSubPatternToRemoveList(patterns, prefixKey, pattern, patternsToRemove);
             }
         }
 
-
-        patterns.keySet().removeAll(patternsToRemove);
+        if (parameters.crossStrand) {
+            PatternsUtils.removeRedundantOrientations(patterns, patternsToRemove);
+        } else {
+            patterns.keySet().removeAll(patternsToRemove);
+        }
     }
 
-    private String getSuffix(Pattern pattern){
-
-        Gene[] suffix = Arrays.copyOfRange( pattern.getPatternGenes(), 1, pattern.getLength());
+    private PatternKey getSuffix(Gene[] genes){
 
-        return Pattern.toString(suffix);
+        return PatternKey.of(genes, 1, genes.length);
     }
 
-    private String getPrefix(Pattern pattern){
-
-        Gene[] prefix = Arrays.copyOfRange( pattern.getPatternGenes(), 0, pattern.getLength()-1);
+    private PatternKey getPrefix(Gene[] genes){
 
-        return Pattern.toString(prefix);
+        return PatternKey.of(genes, 0, genes.length-1);
     }
 
     @Override
@@ -0,0 +1,111 @@
+package model.patterns;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of genome ids, stored as a sorted array.
+ *
+ * Contains, size and access by index do not allocate, so the set can be shared by scoring, exporters and the
+ * tables of the GUI.
+ */
+public final class GenomeSet extends AbstractSet<Integer> {
+
+    public static final GenomeSet EMPTY = new GenomeSet(new int[0]);
+
+    /**
+     * Sorted and distinct
+     */
+    final int[] ids;
+
+    private GenomeSet(int[] ids){
+        this.ids = ids;
+    }
+
+    /**
+     * @param genomeIds genome ids, in any order and with duplicates. The array is sorted in place and may be
+     *                  kept by the set, it must not be modified afterwards.
+     */
+    public static GenomeSet of(int[] genomeIds, int length){
+        if (length == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(genomeIds, 0, length);
+
+        int distinct = 1;
+        for (int i = 1; i < length; i++) {
+            if (genomeIds[i] != genomeIds[distinct - 1]) {
+                genomeIds[distinct++] = genomeIds[i];
+            }
+        }
+        return new GenomeSet(distinct == genomeIds.length ? genomeIds : Arrays.copyOf(genomeIds, distinct));
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return the genome id with index {@code index} in ascending order
+     */
+    public int get(int index){
+        return ids[index];
+    }
+
+    public boolean contains(int genomeId){
+        return Arrays.binarySearch(ids, genomeId) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains((int) (Integer) o);
+    }
+
+    /**
+     * @return a copy of the genome ids, sorted
+     */
+    public int[] toIntArray(){
+        return ids.clone();
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public Integer next() {
+                if (next == ids.length) {
+                    throw new NoSuchElementException();
+                }
+                return ids[next++];
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        //as in Set.hashCode, so that the set equals other sets of the same ids
+        int hash = 0;
+        for (int id : ids) {
+            hash += id;
+        }
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof GenomeSet) {
+            return Arrays.equals(ids, ((GenomeSet) o).ids);
+        }
+        return super.equals(o);
+    }
+}
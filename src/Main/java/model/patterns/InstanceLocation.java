@@ -82,6 +82,19 @@ public class InstanceLocation{
         return getActualStartIndex() + instanceLength;
     }
 
+    /**
+     * @return the location of the same genes in the reverse complement of the replicon, for cross-strand runs in
+     * which the genomic segments are the replicons and their reverse complements
+     */
+    public InstanceLocation reverseCompliment(){
+        int startIndex = genomicSegmentLength - (relativeStartIndex + instanceLength);
+        if (startIndex < 0){
+            startIndex = genomicSegmentLength + startIndex;
+        }
+        return new InstanceLocation(repliconId, genomeId, startIndex, instanceLength, strand.reverseStrand(),
+                genomicSegmentStartIndex, genomicSegmentLength, -genomicSegmentId);
+    }
+
     public void setInstanceLength(int length){
         this.instanceLength = length;
     }
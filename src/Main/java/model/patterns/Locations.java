@@ -1,40 +1,146 @@
 package model.patterns;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Supplier;
 
 import static java.util.Comparator.*;
 
+/**
+ * The instance locations of a pattern.
+ *
+ * Locations are sorted by genome, replicon and start index. Whether they were added in this order is tracked as
+ * they are added, so locations that the algorithms produce in order are not sorted again. Otherwise they are
+ * sorted by a packed long key of each location, precomputed once, instead of a comparator of boxed keys.
+ */
 public class Locations {
 
+    private static final Comparator<InstanceLocation> COMPARATOR = comparing(InstanceLocation::getGenomeId)
+            .thenComparing(InstanceLocation::getRepliconId)
+            .thenComparing(InstanceLocation::getActualStartIndex);
+
     private boolean isSorted;
     private List<InstanceLocation> instanceLocations;
-    private Comparator<InstanceLocation> comparator;
+
+    /**
+     * Loads the locations on first access, null if they are already loaded
+     */
+    private volatile Supplier<List<InstanceLocation>> loader;
 
     public Locations(){
         instanceLocations = new ArrayList<>();
-        isSorted = false;
+        isSorted = true;
+    }
 
-        comparator = comparing(InstanceLocation::getGenomeId)
-                    .thenComparing(InstanceLocation::getRepliconId)
-                    .thenComparing(InstanceLocation::getActualStartIndex);
+    /**
+     * Locations that are loaded when they are first accessed, e.g. from a session file
+     *
+     * @param loader returns the locations, sorted by genome, replicon and start index
+     */
+    public Locations(Supplier<List<InstanceLocation>> loader){
+        this();
+        this.loader = loader;
+    }
+
+    private void load(){
+        if (loader != null) {
+            synchronized (this) {
+                if (loader != null) {
+                    instanceLocations = new ArrayList<>(loader.get());
+                    isSorted = true;
+                    loader = null;
+                }
+            }
+        }
     }
 
     public void addLocation(InstanceLocation instanceLocation){
+        load();
+        if (isSorted && !instanceLocations.isEmpty()) {
+            isSorted = compare(instanceLocations.get(instanceLocations.size() - 1), instanceLocation) <= 0;
+        }
         instanceLocations.add(instanceLocation);
-        isSorted = false;
     }
 
     public List<InstanceLocation> getInstanceLocations(){
+        load();
         return instanceLocations;
     }
 
     public List<InstanceLocation> getSortedLocations(){
+        load();
         if (!isSorted) {
-            instanceLocations.sort(comparator);
+            sort(instanceLocations);
             isSorted = true;
         }
         return instanceLocations;
     }
+
+    private static int compare(InstanceLocation location1, InstanceLocation location2){
+        int compare = Integer.compare(location1.getGenomeId(), location2.getGenomeId());
+        if (compare == 0) {
+            compare = Integer.compare(location1.getRepliconId(), location2.getRepliconId());
+        }
+        if (compare == 0) {
+            compare = Integer.compare(location1.getActualStartIndex(), location2.getActualStartIndex());
+        }
+        return compare;
+    }
+
+    private static int bitsCount(long maxValue){
+        return 64 - Long.numberOfLeadingZeros(maxValue);
+    }
+
+    /**
+     * Sorts the locations by a key that packs the genome id, replicon id, start index and the index of the location
+     * in the list, so that the sort is a stable sort of primitive longs. If the fields do not fit in a long, the
+     * locations are sorted by a comparator.
+     */
+    static void sort(List<InstanceLocation> locations){
+        int size = locations.size();
+        int[] genomeIds = new int[size];
+        int[] repliconIds = new int[size];
+        int[] startIndexes = new int[size];
+
+        int min = 0;
+        int maxGenomeId = 0;
+        int maxRepliconId = 0;
+        int maxStartIndex = 0;
+        for (int i = 0; i < size; i++) {
+            InstanceLocation location = locations.get(i);
+            genomeIds[i] = location.getGenomeId();
+            repliconIds[i] = location.getRepliconId();
+            startIndexes[i] = location.getActualStartIndex();
+
+            min = Math.min(min, Math.min(genomeIds[i], Math.min(repliconIds[i], startIndexes[i])));
+            maxGenomeId = Math.max(maxGenomeId, genomeIds[i]);
+            maxRepliconId = Math.max(maxRepliconId, repliconIds[i]);
+            maxStartIndex = Math.max(maxStartIndex, startIndexes[i]);
+        }
+
+        int indexBits = bitsCount(size);
+        int startIndexBits = bitsCount(maxStartIndex);
+        int repliconIdBits = bitsCount(maxRepliconId);
+        if (min < 0 || bitsCount(maxGenomeId) + repliconIdBits + startIndexBits + indexBits > 63) {
+            locations.sort(COMPARATOR);
+            return;
+        }
+
+        long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            long key = genomeIds[i];
+            key = key << repliconIdBits | repliconIds[i];
+            key = key << startIndexBits | startIndexes[i];
+            keys[i] = key << indexBits | i;
+        }
+        Arrays.sort(keys);
+
+        long indexMask = (1L << indexBits) - 1;
+        InstanceLocation[] unsorted = locations.toArray(new InstanceLocation[0]);
+        for (int i = 0; i < size; i++) {
+            locations.set(i, unsorted[(int) (keys[i] & indexMask)]);
+        }
+    }
 }
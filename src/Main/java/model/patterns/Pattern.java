@@ -15,7 +15,12 @@ public class Pattern {
     private static final String GENES_DELIMITER = ",";
 
     private Gene[] patternGenes;
+    /**
+     * Computed when they are first used
+     */
     private Gene[] reverseComplimentPatternArr;
+    private PatternKey key;
+    private PatternKey reverseComplimentKey;
 
     private String patternId;
 
@@ -30,6 +35,10 @@ public class Pattern {
     private Locations locations;
 
     private int instancesPerGenomeCount;
+    /**
+     * The genomes of the instance locations, computed when they are first used after the locations change
+     */
+    private GenomeSet instanceGenomeIds;
 
     public Pattern(){
         this(null, new Gene[0]);
@@ -48,11 +57,14 @@ public class Pattern {
 
         score = 0;
         mainFunctionalCategory = "";
-        reverseComplimentPatternArr = reverseComplimentPattern(patternGenes);
+        reverseComplimentPatternArr = null;
+        key = null;
+        reverseComplimentKey = null;
 
         locations = new Locations();
 
         instancesPerGenomeCount = -1;
+        instanceGenomeIds = null;
     }
 
 
@@ -83,12 +95,14 @@ public class Pattern {
         }
 
         instancesPerGenomeCount = -1;
+        instanceGenomeIds = null;
     }
 
 
     public void addInstanceLocation(InstanceLocation patternLocation){
         locations.addLocation(patternLocation);
         instancesPerGenomeCount = -1;
+        instanceGenomeIds = null;
     }
 
 
@@ -96,6 +110,18 @@ public class Pattern {
         return locations;
     }
 
+    /**
+     * Replaces the locations of the pattern, e.g. with locations that are loaded on demand
+     *
+     * @param instancesPerGenomeCount number of genomes that contain an instance of the pattern, or -1 to count them
+     *                                from the locations
+     */
+    public void setPatternLocations(Locations locations, int instancesPerGenomeCount){
+        this.locations = locations;
+        this.instancesPerGenomeCount = instancesPerGenomeCount;
+        instanceGenomeIds = null;
+    }
+
     public int getLength(){
         return length;
     }
@@ -171,10 +197,7 @@ public class Pattern {
      */
     private static Gene[] reverseComplimentPattern(Gene[] pattern){
 
-        Gene[] reversedPattern = Arrays.stream(pattern).map(gene -> {
-                Gene copy = new Gene(gene.getCogId().intern(), Gene.reverseStrand(gene.getStrand()));
-                return copy;
-            }).toArray(Gene[]::new);
+        Gene[] reversedPattern = Arrays.stream(pattern).map(Gene::getReverseStrandGene).toArray(Gene[]::new);
 
         reverseArray(reversedPattern);
 
@@ -190,9 +213,90 @@ public class Pattern {
     }
 
     public Gene[] getReverseComplimentPattern() {
+        if (reverseComplimentPatternArr == null) {
+            reverseComplimentPatternArr = reverseComplimentPattern(patternGenes);
+        }
         return reverseComplimentPatternArr;
     }
 
+    /**
+     * @return the key of the pattern in maps of patterns
+     */
+    public PatternKey getKey() {
+        if (key == null) {
+            key = PatternKey.of(patternGenes);
+        }
+        return key;
+    }
+
+    /**
+     * @return the key of the reverse compliment of the pattern
+     */
+    public PatternKey getReverseComplimentKey() {
+        if (reverseComplimentKey == null) {
+            reverseComplimentKey = PatternKey.of(getReverseComplimentPattern());
+        }
+        return reverseComplimentKey;
+    }
+
+    /**
+     * @return the key of the canonical orientation of the pattern, see {@link #isCanonical(Gene[])}
+     */
+    public PatternKey getCanonicalKey() {
+        return isCanonical() ? getKey() : getReverseComplimentKey();
+    }
+
+    public boolean isCanonical() {
+        return isCanonical(patternGenes);
+    }
+
+    /**
+     * In cross-strand runs a pattern and its reverse compliment are the same pattern, which is reported in its
+     * canonical orientation: the genes are compared to the genes of the reverse compliment in order, by orthology
+     * group id and then by strand, and the orientation with the smaller genes is canonical.
+     *
+     * @return true if the genes are in canonical orientation, also if they equal their reverse compliment
+     */
+    public static boolean isCanonical(Gene[] genes){
+        for (int i = 0, j = genes.length - 1; i <= j; i++, j--) {
+            //genes[j] on the opposite strand is the gene at index i of the reverse compliment
+            int compare = genes[i].getCogId().compareTo(genes[j].getCogId());
+            if (compare == 0) {
+                compare = genes[i].getStrand().compareTo(genes[j].getStrand().reverseStrand());
+            }
+            if (compare != 0) {
+                return compare < 0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the reverse compliment of a pattern that was found in the replicons and their reverse complements, with
+     * the same id and score. Its instances are the instances of this pattern, on the opposite strand.
+     */
+    public Pattern reverseCompliment(){
+        Pattern reverseCompliment = new Pattern(patternId, getReverseComplimentPattern());
+        reverseCompliment.score = score;
+        for (InstanceLocation location : locations.getInstanceLocations()) {
+            reverseCompliment.addInstanceLocation(location.reverseCompliment());
+        }
+        return reverseCompliment;
+    }
+
+    /**
+     * @return a pattern with the same genes, id and score, whose locations are the instances of this pattern in a
+     * list of its own, so that sorting the locations of one pattern does not reorder the locations of the other
+     */
+    public Pattern copy(){
+        Pattern copy = new Pattern(patternId, patternGenes);
+        copy.score = score;
+        for (InstanceLocation location : locations.getInstanceLocations()) {
+            copy.addInstanceLocation(location);
+        }
+        return copy;
+    }
+
     public int getFamilyId() {
         return familyId;
     }
@@ -201,9 +305,22 @@ public class Pattern {
         this.familyId = familyId;
     }
 
-    public Collection<Integer> getInstanceGenomeIds(){
-        return locations.getInstanceLocations().stream()
-                .collect(Collectors.groupingBy(InstanceLocation::getGenomeId)).keySet();
+    /**
+     * @return the genomes that contain an instance of the pattern. The set is computed once after the locations
+     * change, and is shared by all callers.
+     */
+    public GenomeSet getInstanceGenomeIds(){
+        GenomeSet genomeIds = instanceGenomeIds;
+        if (genomeIds == null) {
+            List<InstanceLocation> instanceLocations = locations.getInstanceLocations();
+            int[] ids = new int[instanceLocations.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = instanceLocations.get(i).getGenomeId();
+            }
+            genomeIds = GenomeSet.of(ids, ids.length);
+            instanceGenomeIds = genomeIds;
+        }
+        return genomeIds;
     }
 
     public int getInstancesPerGenomeCount(){
@@ -220,10 +337,14 @@ public class Pattern {
     }
 
     public static String toString(Gene[] genes){
-        String str = Arrays.stream(genes)
-                .map(gene -> gene.getCogId() + gene.getStrand())
-                .collect(Collectors.joining(GENES_DELIMITER));
-        return str;
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < genes.length; i++) {
+            if (i > 0) {
+                str.append(GENES_DELIMITER);
+            }
+            str.append(genes[i].getCogId()).append(genes[i].getStrand());
+        }
+        return str.toString();
     }
 
     public static class LengthComparator implements Comparator<Pattern> {
@@ -251,8 +372,7 @@ public class Pattern {
             return true;
 
         Pattern other = (Pattern) obj;
-        return (Arrays.equals(other.patternGenes, this.patternGenes) ||
-                Arrays.equals(other.patternGenes, this.reverseComplimentPatternArr));
+        return (other.getKey().equals(getKey()) || other.getKey().equals(getReverseComplimentKey()));
     }
 
 }
@@ -0,0 +1,138 @@
+package model.patterns;
+
+import model.genomes.Gene;
+
+import java.util.List;
+
+/**
+ * The key of a sequence of genes in maps of patterns, instead of the string of the genes.
+ *
+ * The key contains a 64-bit fingerprint of the orthology groups and strands of the genes, which is compared first,
+ * and the genes, which are compared only if the fingerprints are equal, so that different sequences with the same
+ * fingerprint are different keys. The fingerprint and the order of keys do not depend on the codes of the genes in
+ * {@link model.genomes.GeneTable}, so they are the same in every run. The genes are not copied, a key may refer to
+ * a range of the genes of a pattern.
+ */
+public final class PatternKey implements Comparable<PatternKey> {
+
+    private final Gene[] genes;
+    private final int from;
+    private final int to;
+
+    private final long fingerprint;
+
+    private PatternKey(Gene[] genes, int from, int to){
+        this.genes = genes;
+        this.from = from;
+        this.to = to;
+
+        fingerprint = fingerprint(genes, from, to);
+    }
+
+    public static PatternKey of(Gene[] genes){
+        return new PatternKey(genes, 0, genes.length);
+    }
+
+    /**
+     * @return the key of genes[from, to), which refers to the array
+     */
+    public static PatternKey of(Gene[] genes, int from, int to){
+        return new PatternKey(genes, from, to);
+    }
+
+    public static PatternKey of(List<Gene> genes){
+        return of(genes.toArray(new Gene[0]));
+    }
+
+    private static long fingerprint(Gene[] genes, int from, int to){
+        long hash = 0xcbf29ce484222325L;
+        for (int i = from; i < to; i++) {
+            hash = (hash ^ geneHash(genes[i])) * 0x100000001b3L;
+        }
+        //mix the bits, so that the low bits depend on all genes
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int geneHash(Gene gene){
+        return gene.getCogId().hashCode() * 31 + gene.getStrand().ordinal();
+    }
+
+    /**
+     * @return the key of the genes without the first gene, which refers to the same genes
+     */
+    public PatternKey suffix(){
+        return new PatternKey(genes, from + 1, to);
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getLength() {
+        return to - from;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (fingerprint ^ (fingerprint >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this)
+            return true;
+        if (!(obj instanceof PatternKey))
+            return false;
+
+        PatternKey other = (PatternKey) obj;
+        if (fingerprint != other.fingerprint || getLength() != other.getLength()) {
+            return false;
+        }
+        for (int i = 0; i < getLength(); i++) {
+            Gene gene = genes[from + i];
+            Gene otherGene = other.genes[other.from + i];
+            if (gene != otherGene && !gene.equals(otherGene)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Orders keys by fingerprint, and keys with the same fingerprint by the orthology groups and strands of their
+     * genes
+     */
+    @Override
+    public int compareTo(PatternKey other) {
+        int compare = Long.compare(fingerprint, other.fingerprint);
+        for (int i = 0; compare == 0 && i < Math.min(getLength(), other.getLength()); i++) {
+            Gene gene = genes[from + i];
+            Gene otherGene = other.genes[other.from + i];
+            compare = gene.getCogId().compareTo(otherGene.getCogId());
+            if (compare == 0) {
+                compare = gene.getStrand().compareTo(otherGene.getStrand());
+            }
+        }
+        if (compare == 0) {
+            compare = Integer.compare(getLength(), other.getLength());
+        }
+        return compare;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                str.append(',');
+            }
+            str.append(genes[i].getCogId()).append(genes[i].getStrand());
+        }
+        return str.toString();
+    }
+}
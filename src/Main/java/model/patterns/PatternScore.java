@@ -1,6 +1,7 @@
 package model.patterns;
 
 import model.genomes.GenomesInfo;
+import model.genomes.ParalogCounts;
 import org.apache.commons.math3.exception.MathArithmeticException;
 import org.apache.commons.math3.special.Beta;
 import org.apache.commons.math3.analysis.function.Expm1;
@@ -30,24 +31,31 @@ public class PatternScore {
 
     private Expm1 expm1 = new Expm1();
 
+    private static final int MIN_PATTERN_LENGTH = 2;
+
+    /**
+     * Used for memoization of the score upper bound, see {@link #maxPatternScore(int, int, int, int)}
+     */
+    private double[] minLogPvalFromLength;
+    private int minLogPvalMaxLength;
+    private int minLogPvalMaxInsertions;
+
     /**
     Two genomes that have distance more than delta are considered close to each other
      */
     private double delta;
 
     /**
-     * for each cog, a set of genomes (bac_index) in which the cog appears
+     * for each cog, the genomes (bac_index) in which the cog appears, and its paralog count in each genome
      */
-    private Map<Integer, Set<Integer>> cogToContainingGenomes;
-
-    private Map<Integer, Map<Integer, Integer>> genomeToCogParalogCount;
+    private ParalogCounts paralogCounts;
 
     private GenomesInfo genomesInfo;
 
     public PatternScore(GenomesInfo genomesInfo, double delta){
 
         this(genomesInfo.getMaxGenomeSize(), genomesInfo.getNumberOfGenomes(), genomesInfo.getDatasetLengthSum(),
-                genomesInfo.cogToContainingGenomes, genomesInfo.genomeToCogParalogCount);
+                genomesInfo.getParalogCounts());
 
         this.genomesInfo = genomesInfo;
         this.delta = delta;
@@ -63,13 +71,11 @@ public class PatternScore {
     }
 
     public PatternScore(int maxGenomeSize, int numberOfGenomes, int datasetLengthSum,
-                        Map<Integer, Set<Integer>> cogToContainingGenomes,
-                        Map<Integer, Map<Integer, Integer>> genomeToCogParalogCount){
+                        ParalogCounts paralogCounts){
 
         pValues = new double[maxGenomeSize+1];
         this.numberOfGenomes = numberOfGenomes;
-        this.cogToContainingGenomes = cogToContainingGenomes;
-        this.genomeToCogParalogCount = genomeToCogParalogCount;
+        this.paralogCounts = paralogCounts;
 
         avgGenomeSize = 1;
         if (numberOfGenomes > 0) {
@@ -95,33 +101,21 @@ public class PatternScore {
         return (int)correctedNumOfGenomes;
     }
 
-    private Set<Integer> genomesWithPatternChars(List<Integer> patternLetters){
-        int firstLetter = patternLetters.size() > 0 ? patternLetters.get(0) : 0;
-        Set<Integer> genomeIds = cogToContainingGenomes.get(firstLetter);
-
-        if (genomeIds == null){
-            return new HashSet<>();
-        }
-
-        Set<Integer> intersectionOfGenomesWithPatternChars = new HashSet<>(genomeIds);
-
-        for (int ch: patternLetters) {
-            intersectionOfGenomesWithPatternChars.retainAll(cogToContainingGenomes.get(ch));
-        }
-        return intersectionOfGenomesWithPatternChars;
+    private BitSet genomesWithPatternChars(int[] patternLetters){
+        return paralogCounts.getGenomesContainingAll(patternLetters);
     }
 
-    private double computeLogMaxParalogCount(Set<Integer> intersectionOfGenomesWithPatternChars,
-                                             List<Integer> patternLetters){
+    private double computeLogMaxParalogCount(BitSet intersectionOfGenomesWithPatternChars, int[] patternLetters){
 
         double maxLogParalogCount = 0;
 
-        for (int genomeId: intersectionOfGenomesWithPatternChars) {
+        for (int genomeId = intersectionOfGenomesWithPatternChars.nextSetBit(0); genomeId >= 0;
+             genomeId = intersectionOfGenomesWithPatternChars.nextSetBit(genomeId + 1)) {
 
-            Map<Integer, Integer> currGenomeParalogCount = genomeToCogParalogCount.get(genomeId);
-            double paralogCountLogSum = patternLetters.stream()
-                    .map(currGenomeParalogCount::get)
-                    .mapToDouble(Math::log).sum();
+            double paralogCountLogSum = 0;
+            for (int letter : patternLetters) {
+                paralogCountLogSum += Math.log(paralogCounts.getParalogCount(genomeId, letter));
+            }
 
             if (paralogCountLogSum > paralogCountLogSum) {
                 maxLogParalogCount = paralogCountLogSum;
@@ -146,9 +140,10 @@ public class PatternScore {
     public double computePatternScore(List<Integer> patternLetters, int maxInsertions,
                                       int genomesWithInstance){
 
-        Set<Integer> intersectionOfGenomesWithPatternChars = genomesWithPatternChars(patternLetters);
+        int[] letters = patternLetters.stream().mapToInt(Integer::intValue).toArray();
+        BitSet intersectionOfGenomesWithPatternChars = genomesWithPatternChars(letters);
 
-        double averageParalogCount = computeLogMaxParalogCount(intersectionOfGenomesWithPatternChars, patternLetters);
+        double averageParalogCount = computeLogMaxParalogCount(intersectionOfGenomesWithPatternChars, letters);
 
         return pvalCrossGenome(patternLetters.size(), maxInsertions, averageParalogCount, genomesWithInstance);
 
@@ -165,12 +160,63 @@ public class PatternScore {
     public double pvalCrossGenome(int patternLength, int maxInsertions, double maxLogParalogFrequency,
                                   int genomesWithInstance){
 
-        int G = numberOfGenomes;
         int n = avgGenomeSize;
-        double result = 0;
 
         double logPval = Math.min(logPvalInsertions(n, patternLength, maxInsertions) + maxLogParalogFrequency, 0);
 
+        return scoreFromLogPval(logPval, genomesWithInstance);
+    }
+
+    /**
+     * Computes an upper bound on the score of any pattern with length in [minLength, maxLength] that has instances
+     * in at most {@code genomesWithInstance} genomes.
+     * The score does not decrease when the number of genomes with an instance grows, and does not increase when the
+     * log p-value of the pattern grows. Hence the bound is the score of the smallest log p-value in the length range,
+     * with no paralogs, and with {@code genomesWithInstance} genomes.
+     *
+     * @param minLength minimal length of the pattern
+     * @param maxLength maximal length of the pattern
+     * @param maxInsertions maximal number of allowed insertions
+     * @param genomesWithInstance maximal number of genomes containing an instance of the pattern
+     * @return an upper bound on the ranking score
+     */
+    public double maxPatternScore(int minLength, int maxLength, int maxInsertions, int genomesWithInstance){
+
+        maxLength = Math.min(maxLength, pValues.length - 1);
+        minLength = Math.max(minLength, MIN_PATTERN_LENGTH);
+        if (minLength > maxLength){
+            return 0;
+        }
+
+        if (minLogPvalFromLength == null || minLogPvalMaxLength != maxLength
+                || minLogPvalMaxInsertions != maxInsertions){
+            computeMinLogPvalFromLength(maxLength, maxInsertions);
+        }
+
+        return scoreFromLogPval(minLogPvalFromLength[minLength], Math.min(genomesWithInstance, numberOfGenomes));
+    }
+
+    /**
+     * minLogPvalFromLength[l] is the minimal log p-value of a pattern with length in [l, maxLength]
+     */
+    private void computeMinLogPvalFromLength(int maxLength, int maxInsertions){
+        minLogPvalFromLength = new double[maxLength + 1];
+        minLogPvalMaxLength = maxLength;
+        minLogPvalMaxInsertions = maxInsertions;
+
+        double minLogPval = 0;
+        for (int length = maxLength; length >= MIN_PATTERN_LENGTH; length--) {
+            double logPval = Math.min(logPvalInsertions(avgGenomeSize, length, maxInsertions), 0);
+            minLogPval = Math.min(minLogPval, logPval);
+            minLogPvalFromLength[length] = minLogPval;
+        }
+    }
+
+    private double scoreFromLogPval(double logPval, int genomesWithInstance){
+
+        int G = numberOfGenomes;
+        double result = 0;
+
         double a = (double)genomesWithInstance/G;
         if ( a == 1){
             result = -G*logPval;
@@ -1,32 +1,102 @@
 package model.patterns;
 
-import model.genomes.Gene;
 import model.genomes.GenomesInfo;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 public class PatternsUtils {
-    public static void addSubPatternToRemoveList(Map<String, Pattern> patterns, String subPatternStr, Pattern pattern, HashSet<String> patternsToRemove) {
-        Pattern subPattern = patterns.get(subPatternStr);
+
+    /**
+     * Removes the patterns from the map one by one and passes each of them to patternConsumer, so that a consumed
+     * pattern is no longer referenced by the map
+     */
+    public static void releasePatterns(Map<PatternKey, Pattern> patterns, Consumer<Pattern> patternConsumer) {
+        Iterator<Pattern> iterator = patterns.values().iterator();
+        while (iterator.hasNext()) {
+            Pattern pattern = iterator.next();
+            iterator.remove();
+            patternConsumer.accept(pattern);
+        }
+    }
+
+    public static void addSubPatternToRemoveList(Map<PatternKey, Pattern> patterns, PatternKey subPatternKey,
+                                                 Pattern pattern, HashSet<PatternKey> patternsToRemove) {
+        Pattern subPattern = patterns.get(subPatternKey);
 
         if (subPattern != null) {
             int patternCount = pattern.getInstancesPerGenomeCount();
             int suffixCount = subPattern.getInstancesPerGenomeCount();
             if (suffixCount == patternCount) {
-                patternsToRemove.add(subPatternStr);
+                patternsToRemove.add(subPatternKey);
             }
         }
     }
 
-    public static void removeReverseCompliments(Map<String, Pattern> patterns, Pattern pattern, HashSet<String> patternsToRemove) {
+    /**
+     * Adds a sub-pattern to the remove list if it has the same number of instances as the pattern, in a map of
+     * cross-strand patterns in their canonical orientation (see {@link Pattern#isCanonical(model.genomes.Gene[])}).
+     * The sub-pattern is added in the given orientation, see {@link #removeRedundantOrientations}.
+     *
+     * @param reverseComplimentSubPatternKey the key of the reverse compliment of the sub-pattern
+     */
+    public static void addSubPatternToRemoveList(Map<PatternKey, Pattern> patterns, PatternKey subPatternKey,
+                                                 PatternKey reverseComplimentSubPatternKey, Pattern pattern,
+                                                 HashSet<PatternKey> patternsToRemove) {
+        Pattern subPattern = patterns.get(subPatternKey);
+        if (subPattern == null) {
+            subPattern = patterns.get(reverseComplimentSubPatternKey);
+        }
+
+        if (subPattern != null && subPattern.getInstancesPerGenomeCount() == pattern.getInstancesPerGenomeCount()) {
+            patternsToRemove.add(subPatternKey);
+        }
+    }
+
+    /**
+     * Removes the cross-strand patterns that are redundant in both orientations: a pattern is kept if it, or its
+     * reverse compliment, is not in patternsToRemove
+     */
+    public static void removeRedundantOrientations(Map<PatternKey, Pattern> patterns,
+                                                   HashSet<PatternKey> patternsToRemove) {
+        patterns.values().removeIf(pattern -> patternsToRemove.contains(pattern.getKey())
+                || patternsToRemove.contains(pattern.getReverseComplimentKey()));
+    }
+
+    /**
+     * Keeps each cross-strand pattern once, in its canonical orientation: a pattern that is not canonical is removed
+     * if its reverse compliment is in the map, and replaced by its reverse compliment otherwise
+     */
+    public static void keepCanonicalOrientations(Map<PatternKey, Pattern> patterns) {
+        List<Pattern> reverseCompliments = new ArrayList<>();
+        Iterator<Pattern> iterator = patterns.values().iterator();
+        while (iterator.hasNext()) {
+            Pattern pattern = iterator.next();
+            if (!pattern.isCanonical()) {
+                iterator.remove();
+                if (!patterns.containsKey(pattern.getReverseComplimentKey())) {
+                    reverseCompliments.add(pattern.reverseCompliment());
+                }
+            }
+        }
+        for (Pattern pattern : reverseCompliments) {
+            patterns.putIfAbsent(pattern.getKey(), pattern);
+        }
+    }
+
+    /**
+     * Keeps only the k highest scoring patterns, which were scored during the search
+     */
+    public static void retainTopScoringPatterns(Map<PatternKey, Pattern> patterns, int k){
+        if (patterns.size() <= k) {
+            return;
+        }
 
-        Gene[] reversePatternGenes = pattern.getReverseComplimentPattern();
-        String reversedPatternStr = Pattern.toString(reversePatternGenes);
-        Pattern reversedPattern = patterns.get(reversedPatternStr);
+        List<Pattern> sortedPatterns = new ArrayList<>(patterns.values());
+        sortedPatterns.sort(new Pattern.ScoreComparator());
 
-        String patternStr = pattern.toString();
-        if (reversedPattern != null && !patternsToRemove.contains(patternStr)) {
-            patternsToRemove.add(reversedPatternStr);
+        for (Pattern pattern : sortedPatterns.subList(k, sortedPatterns.size())) {
+            patterns.remove(pattern.getKey());
         }
     }
 
@@ -0,0 +1,145 @@
+package model.patterns;
+
+import java.util.*;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Memoizes pattern scores across repeated score computations of the same patterns.
+ *
+ * The score of a pattern depends only on its length, the multiset of its letters, the set of genomes that contain an
+ * instance, the maximal number of insertions and delta. Patterns that share all of these receive the same score, so
+ * re-ranking the same result with a previously used delta is answered from the cache.
+ *
+ * The cache is bounded, the least recently used entry is evicted when it is full.
+ */
+public class ScoreCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+    private final int maxSize;
+    private final Map<ScoreKey, Double> scores;
+
+    private long hits;
+    private long misses;
+
+    public ScoreCache(){
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public ScoreCache(int maxSize){
+        this.maxSize = maxSize;
+
+        scores = new LinkedHashMap<ScoreKey, Double>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ScoreKey, Double> eldest) {
+                return size() > ScoreCache.this.maxSize;
+            }
+        };
+
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Returns the cached score of {@code key}, or computes it using {@code scoreSupplier} and caches the result
+     */
+    public synchronized double getScore(ScoreKey key, DoubleSupplier scoreSupplier){
+
+        Double score = scores.get(key);
+        if (score != null){
+            hits++;
+            return score;
+        }
+
+        misses++;
+        double newScore = scoreSupplier.getAsDouble();
+        if (maxSize > 0) {
+            scores.put(key, newScore);
+        }
+        return newScore;
+    }
+
+    public synchronized void clear(){
+        scores.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size(){
+        return scores.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate(){
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : hits / (double) lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Score cache: %d entries, %d hits, %d misses, hit rate %.2f",
+                scores.size(), hits, misses, getHitRate());
+    }
+
+    /**
+     * The inputs that determine the score of a pattern
+     */
+    public static class ScoreKey {
+
+        private final int[] sortedLetters;
+        private final int[] sortedGenomeIds;
+        private final int maxInsertions;
+        private final double delta;
+        private final int hash;
+
+        public ScoreKey(List<Integer> patternLetters, Collection<Integer> instanceGenomeIds, int maxInsertions,
+                        double delta){
+
+            sortedLetters = patternLetters.stream().mapToInt(Integer::intValue).sorted().toArray();
+            if (instanceGenomeIds instanceof GenomeSet) {
+                //immutable and sorted, shared with the pattern
+                sortedGenomeIds = ((GenomeSet) instanceGenomeIds).ids;
+            } else {
+                sortedGenomeIds = instanceGenomeIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+            }
+            this.maxInsertions = maxInsertions;
+            this.delta = delta;
+
+            int result = Arrays.hashCode(sortedLetters);
+            result = 31 * result + Arrays.hashCode(sortedGenomeIds);
+            result = 31 * result + maxInsertions;
+            result = 31 * result + Double.hashCode(delta);
+            hash = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ScoreKey))
+                return false;
+            if (obj == this)
+                return true;
+
+            ScoreKey other = (ScoreKey) obj;
+            return hash == other.hash && maxInsertions == other.maxInsertions
+                    && Double.compare(delta, other.delta) == 0
+                    && Arrays.equals(sortedLetters, other.sortedLetters)
+                    && Arrays.equals(sortedGenomeIds, other.sortedGenomeIds);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package model.patterns;
+
+import model.genomes.Gene;
+import model.genomes.GenomesInfo;
+
+import java.util.*;
+
+/**
+ * Keeps the K highest scoring patterns found so far in a min-heap, and decides whether the extensions of a
+ * pattern can still enter the heap.
+ *
+ * Used by the algorithms in top-k mode, where patterns are scored during the search instead of after it. The heap
+ * bounds the extensions that are explored, the algorithms select the top K patterns after removing the redundant
+ * patterns.
+ */
+public class TopScoringPatterns {
+
+    private final int k;
+    private final PatternScore patternScore;
+    private final GenomesInfo genomesInfo;
+    private final int maxInsertion;
+    private final int maxPatternLength;
+    private final boolean crossStrand;
+
+    /**
+     * The lowest scoring pattern is at the head
+     */
+    private final PriorityQueue<Entry> minHeap;
+    /**
+     * Heap patterns by key. In cross-strand mode a pattern and its reverse compliment have the same key
+     */
+    private final Map<PatternKey, Entry> patternsByKey;
+
+    public TopScoringPatterns(int k, PatternScore patternScore, GenomesInfo genomesInfo, int maxInsertion,
+                              int maxPatternLength, boolean crossStrand){
+        this.k = k;
+        this.patternScore = patternScore;
+        this.genomesInfo = genomesInfo;
+        this.maxInsertion = maxInsertion;
+        this.maxPatternLength = Math.min(maxPatternLength, genomesInfo.getMaxGenomeSize());
+        this.crossStrand = crossStrand;
+
+        minHeap = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry.pattern.getScore()));
+        patternsByKey = new HashMap<>();
+    }
+
+    /**
+     * @param patternGenes genes of the pattern
+     * @param instanceGenomeIds ids of the genomes that contain an instance of the pattern
+     * @return the ranking score of the pattern
+     */
+    public double computeScore(Gene[] patternGenes, Collection<Integer> instanceGenomeIds){
+        List<Integer> patternLetters = new ArrayList<>(patternGenes.length);
+        for (Gene gene : patternGenes) {
+            patternLetters.add(genomesInfo.getLetter(gene));
+        }
+        synchronized (patternScore) {
+            return patternScore.computePatternScore(patternLetters, maxInsertion, instanceGenomeIds);
+        }
+    }
+
+    /**
+     * @return true if a pattern with this score would currently enter the heap
+     */
+    public synchronized boolean canEnter(double score){
+        return minHeap.size() < k || score > minHeap.peek().pattern.getScore();
+    }
+
+    /**
+     * Checks whether any extension of a pattern can enter the heap.
+     * An extension is longer than the pattern, and its instances are in a subset of the pattern's genomes.
+     *
+     * @param patternLength length of the pattern
+     * @param genomesWithInstance number of genomes containing an instance of the pattern
+     * @return false if no extension of the pattern can enter the heap, hence the extensions can be pruned
+     */
+    public boolean canExtend(int patternLength, int genomesWithInstance){
+        double scoreBound;
+        synchronized (patternScore) {
+            scoreBound = patternScore.maxPatternScore(patternLength + 1, maxPatternLength, maxInsertion,
+                    genomesWithInstance);
+        }
+        return canEnter(scoreBound);
+    }
+
+    /**
+     * Adds a scored pattern to the heap if its score is among the K highest scores, evicting the lowest scoring
+     * pattern if the heap is full
+     *
+     * @return true if the pattern was added
+     */
+    public synchronized boolean offer(Pattern pattern){
+        PatternKey key = getKey(pattern);
+
+        if (patternsByKey.containsKey(key) || !canEnter(pattern.getScore())) {
+            return false;
+        }
+
+        Entry entry = new Entry(key, pattern);
+        minHeap.add(entry);
+        patternsByKey.put(key, entry);
+
+        if (minHeap.size() > k) {
+            Entry evicted = minHeap.poll();
+            patternsByKey.remove(evicted.key);
+        }
+        return true;
+    }
+
+    private PatternKey getKey(Pattern pattern){
+        return crossStrand ? pattern.getCanonicalKey() : pattern.getKey();
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public synchronized int size(){
+        return minHeap.size();
+    }
+
+    private static class Entry {
+        private final PatternKey key;
+        private final Pattern pattern;
+
+        Entry(PatternKey key, Pattern pattern){
+            this.key = key;
+            this.pattern = pattern;
+        }
+    }
+}
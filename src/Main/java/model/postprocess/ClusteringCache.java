@@ -0,0 +1,246 @@
+package model.postprocess;
+
+import model.ClusterBy;
+import model.ClusterDenominator;
+import model.genomes.GenomesInfo;
+import model.patterns.Pattern;
+
+import java.util.*;
+
+/**
+ * The work of clustering a set of patterns to families that does not depend on the threshold and denominator, and a
+ * memo of the recent clusterings.
+ *
+ * The gene set of each pattern is computed once and reused by every clustering, whatever its parameters. When the
+ * patterns are clustered again in the same order, e.g. with the next threshold of a sweep, the genes that each
+ * pattern shares with the preceding patterns are computed once (see {@link PatternIntersections}), and the
+ * clusterings with other thresholds and denominators only compare the shared genes to the threshold. The assignment
+ * of the sorted patterns to families is also kept for the most recent (threshold, cluster by, denominator) settings,
+ * so that going back to a setting that was already used is answered without comparing patterns to families.
+ *
+ * The cache must be cleared when the patterns change, and {@link #clearClusterings()} must be called when
+ * their scores change.
+ */
+public class ClusteringCache {
+
+    public static final int DEFAULT_MAX_CLUSTERINGS = 8;
+
+    private final int maxClusterings;
+
+    /**
+     * pattern -> the letters of its genes, regardless of strand
+     */
+    private final Map<Pattern, Set<Integer>> geneSets;
+    /**
+     * the most recent settings -> their clustering, in access order
+     */
+    private final Map<ClusteringKey, Clustering> clusterings;
+    /**
+     * The patterns of the last clustering, in their order
+     */
+    private List<Pattern> lastSortedPatterns;
+    /**
+     * The shared genes of the patterns in the order of the last clustering, or null if not computed
+     */
+    private PatternIntersections intersections;
+
+    private long hits;
+    private long misses;
+    private long intersectionsComputations;
+    private long intersectionsClusterings;
+
+    public ClusteringCache(){
+        this(DEFAULT_MAX_CLUSTERINGS);
+    }
+
+    public ClusteringCache(int maxClusterings){
+        this.maxClusterings = maxClusterings;
+
+        geneSets = new IdentityHashMap<>();
+        clusterings = new LinkedHashMap<ClusteringKey, Clustering>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ClusteringKey, Clustering> eldest) {
+                return size() > ClusteringCache.this.maxClusterings;
+            }
+        };
+
+        lastSortedPatterns = Collections.emptyList();
+        intersections = null;
+
+        hits = 0;
+        misses = 0;
+        intersectionsComputations = 0;
+        intersectionsClusterings = 0;
+    }
+
+    /**
+     * Computes the gene sets of patterns that are not cached yet. Must be called before
+     * {@link #getGeneSet(Pattern)}, which may then be called concurrently.
+     */
+    public void computeGeneSets(List<Pattern> patterns, GenomesInfo gi){
+        for (Pattern pattern : patterns) {
+            geneSets.computeIfAbsent(pattern, p -> FamilyClustering.getGenesSet(p.getPatternGenes(), gi));
+        }
+    }
+
+    public Set<Integer> getGeneSet(Pattern pattern){
+        return geneSets.get(pattern);
+    }
+
+    /**
+     * @param sortedPatterns the patterns, sorted by the comparator of {@code clusterBy}
+     * @return the family index of each pattern in {@code sortedPatterns}, or null if these patterns were not
+     * clustered in this order with these parameters
+     */
+    public int[] getFamilyIndexes(List<Pattern> sortedPatterns, double threshold, ClusterBy clusterBy,
+                                  ClusterDenominator clusterDenominator){
+
+        Clustering clustering = clusterings.get(new ClusteringKey(threshold, clusterBy, clusterDenominator));
+        if (clustering == null || !isSameOrder(clustering.sortedPatterns, sortedPatterns)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return clustering.familyIndexes;
+    }
+
+    /**
+     * Clusters the patterns from the genes they share, if they were already clustered in the same order. The shared
+     * genes are computed on the second clustering, so that a single clustering does not compute them.
+     *
+     * @param sortedPatterns the patterns, sorted by the comparator of the cluster by
+     * @return the family index of each pattern in {@code sortedPatterns}, or null if the patterns were not clustered
+     * in this order, or have too many genes
+     */
+    public int[] clusterFromIntersections(List<Pattern> sortedPatterns, double threshold,
+                                          ClusterDenominator clusterDenominator){
+        if (intersections == null || !isSameOrder(intersections.getSortedPatterns(), sortedPatterns)) {
+            intersections = null;
+            if (!isSameOrder(lastSortedPatterns, sortedPatterns)) {
+                lastSortedPatterns = new ArrayList<>(sortedPatterns);
+                return null;
+            }
+            intersections = PatternIntersections.compute(sortedPatterns, this);
+            if (intersections == null) {
+                return null;
+            }
+            intersectionsComputations++;
+        }
+        intersectionsClusterings++;
+        return intersections.cluster(threshold, clusterDenominator);
+    }
+
+    /**
+     * Caches the result of clustering {@code sortedPatterns} to {@code families}
+     */
+    public void putFamilies(List<Pattern> sortedPatterns, List<Family> families, double threshold,
+                            ClusterBy clusterBy, ClusterDenominator clusterDenominator){
+        if (maxClusterings <= 0) {
+            return;
+        }
+
+        Map<Pattern, Integer> patternToFamily = new IdentityHashMap<>();
+        for (Family family : families) {
+            for (Pattern pattern : family.getPatterns()) {
+                patternToFamily.put(pattern, family.getFamilyId());
+            }
+        }
+
+        int[] familyIndexes = new int[sortedPatterns.size()];
+        for (int i = 0; i < familyIndexes.length; i++) {
+            familyIndexes[i] = patternToFamily.get(sortedPatterns.get(i));
+        }
+
+        clusterings.put(new ClusteringKey(threshold, clusterBy, clusterDenominator),
+                new Clustering(new ArrayList<>(sortedPatterns), familyIndexes));
+    }
+
+    private static boolean isSameOrder(List<Pattern> patterns1, List<Pattern> patterns2){
+        if (patterns1.size() != patterns2.size()) {
+            return false;
+        }
+        for (int i = 0; i < patterns1.size(); i++) {
+            if (patterns1.get(i) != patterns2.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the cached clusterings, keeping the gene sets
+     */
+    public void clearClusterings(){
+        clusterings.clear();
+    }
+
+    public void clear(){
+        geneSets.clear();
+        clusterings.clear();
+        lastSortedPatterns = Collections.emptyList();
+        intersections = null;
+        hits = 0;
+        misses = 0;
+        intersectionsComputations = 0;
+        intersectionsClusterings = 0;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of times that the shared genes of the patterns were computed
+     */
+    public long getIntersectionsComputations() {
+        return intersectionsComputations;
+    }
+
+    /**
+     * @return the number of clusterings computed from the shared genes of the patterns
+     */
+    public long getIntersectionsClusterings() {
+        return intersectionsClusterings;
+    }
+
+    private static class Clustering {
+        private final List<Pattern> sortedPatterns;
+        private final int[] familyIndexes;
+
+        Clustering(List<Pattern> sortedPatterns, int[] familyIndexes){
+            this.sortedPatterns = sortedPatterns;
+            this.familyIndexes = familyIndexes;
+        }
+    }
+
+    private static class ClusteringKey {
+        private final double threshold;
+        private final ClusterBy clusterBy;
+        private final ClusterDenominator clusterDenominator;
+
+        ClusteringKey(double threshold, ClusterBy clusterBy, ClusterDenominator clusterDenominator){
+            this.threshold = threshold;
+            this.clusterBy = clusterBy;
+            this.clusterDenominator = clusterDenominator;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(threshold, clusterBy, clusterDenominator);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ClusteringKey))
+                return false;
+
+            ClusteringKey other = (ClusteringKey) obj;
+            return Double.compare(threshold, other.threshold) == 0 && clusterBy == other.clusterBy
+                    && clusterDenominator == other.clusterDenominator;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package model.postprocess;
+
+import java.util.*;
+
+/**
+ * Inverted index from a gene (a COG letter) to the families that contain it.
+ *
+ * Used by the greedy clustering to examine only families that share at least one gene with a pattern, and to count
+ * the size of the intersection between the pattern genes and each of these families without creating sets.
+ */
+public class FamiliesGeneIndex {
+
+    /**
+     * gene letter -> indexes of the families that contain it
+     */
+    private Map<Integer, List<Integer>> geneToFamilies;
+
+    public FamiliesGeneIndex(){
+        geneToFamilies = new HashMap<>();
+    }
+
+    /**
+     * Adds genes to the family with index {@code familyIndex}. The genes must not be in the family yet.
+     */
+    public void addGenes(int familyIndex, Collection<Integer> genes){
+        for (int gene : genes) {
+            geneToFamilies.computeIfAbsent(gene, k -> new ArrayList<>()).add(familyIndex);
+        }
+    }
+
+    /**
+     * Finds all families that share at least one gene with {@code genes}, and the size of the intersection of each
+     * of them with {@code genes}
+     *
+     * @param genes a set of gene letters
+     * @return the families that share at least one gene with {@code genes}, in ascending order of their index
+     */
+    public Candidates findFamiliesSharingGenes(Collection<Integer> genes){
+
+        int postingsCount = 0;
+        for (int gene : genes) {
+            List<Integer> families = geneToFamilies.get(gene);
+            if (families != null) {
+                postingsCount += families.size();
+            }
+        }
+
+        int[] postings = new int[postingsCount];
+        int i = 0;
+        for (int gene : genes) {
+            List<Integer> families = geneToFamilies.get(gene);
+            if (families != null) {
+                for (int familyIndex : families) {
+                    postings[i++] = familyIndex;
+                }
+            }
+        }
+        Arrays.sort(postings);
+
+        //each family appears once per shared gene
+        int[] familyIndexes = new int[postingsCount];
+        int[] intersectionSizes = new int[postingsCount];
+        int candidatesCount = 0;
+        for (i = 0; i < postingsCount; i++) {
+            if (i == 0 || postings[i] != postings[i-1]) {
+                familyIndexes[candidatesCount++] = postings[i];
+            }
+            intersectionSizes[candidatesCount-1]++;
+        }
+
+        return new Candidates(familyIndexes, intersectionSizes, candidatesCount);
+    }
+
+    /**
+     * Families that share genes with a pattern, ordered by family index
+     */
+    public static class Candidates {
+
+        private final int[] familyIndexes;
+        private final int[] intersectionSizes;
+        private final int size;
+
+        Candidates(int[] familyIndexes, int[] intersectionSizes, int size){
+            this.familyIndexes = familyIndexes;
+            this.intersectionSizes = intersectionSizes;
+            this.size = size;
+        }
+
+        public int size(){
+            return size;
+        }
+
+        public int getFamilyIndex(int i){
+            return familyIndexes[i];
+        }
+
+        /**
+         * @return the number of genes that the i-th family shares with the pattern
+         */
+        public int getIntersectionSize(int i){
+            return intersectionSizes[i];
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package model.postprocess;
 
 import model.genomes.Gene;
+import model.genomes.GeneTable;
 import model.genomes.GenomesInfo;
 import model.patterns.Pattern;
 import model.genomes.Strand;
@@ -41,6 +42,22 @@ public class Family {
         addCharsToCharsSet(firstPattern);
     }
 
+    /**
+     * @param firstPatternGeneSet the letters of the genes of the first pattern, regardless of strand
+     */
+    public Family(int familyId, Pattern firstPattern, Set<Integer> firstPatternGeneSet, GenomesInfo genomesInfo){
+        charSet = new HashSet<>(firstPatternGeneSet);
+
+        this.genomesInfo = genomesInfo;
+        this.score = -1;
+        this.familyId = familyId;
+
+        patterns = new ArrayList<>();
+        patterns.add(firstPattern);
+
+        longestPattern = firstPattern.getLength();
+    }
+
     public Family(int familyId, GenomesInfo genomesInfo, List<Pattern> patterns) {
         this.patterns = new ArrayList<>(patterns);
 
@@ -74,7 +91,8 @@ public class Family {
 
     private void addCharsToCharsSet(Pattern pattern){
         for (Gene gene: pattern.getPatternGenes()) {
-            int cogIndex = genomesInfo.getLetter(new Gene(gene.getCogId().intern(), Strand.INVALID));
+            int cogIndex = genomesInfo.getLetter(genomesInfo.getGeneTable().getGene(gene.getCogId(),
+                    Strand.INVALID));
 
             if (cogIndex != -1){
                 charSet.add(cogIndex);
@@ -102,6 +120,18 @@ public class Family {
         }
     }
 
+    /**
+     * @param geneSet the letters of the genes of the pattern, regardless of strand
+     */
+    public void addPattern(Pattern pattern, Set<Integer> geneSet){
+        charSet.addAll(geneSet);
+        patterns.add(pattern);
+
+        if (pattern.getLength() > longestPattern){
+            longestPattern = pattern.getLength();
+        }
+    }
+
     public int getFamilyId(){
         return familyId;
     }
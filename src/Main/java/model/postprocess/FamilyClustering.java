@@ -2,11 +2,13 @@ package model.postprocess;
 
 import model.ClusterDenominator;
 import model.genomes.Gene;
+import model.genomes.GeneTable;
 import model.genomes.GenomesInfo;
 import model.genomes.Strand;
 import model.patterns.Pattern;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import model.ClusterBy;
 
@@ -15,89 +17,270 @@ import model.ClusterBy;
  */
 public class FamilyClustering {
 
+    /**
+     * Number of patterns per thread in each block of the parallel clustering
+     */
+    private static final int BLOCK_SIZE_PER_THREAD = 512;
+
     public static List<Family> Cluster(List<Pattern> patterns, double threshold, ClusterBy clusterBy,
                                        ClusterDenominator clusterDenominator, GenomesInfo gi){
+        return Cluster(patterns, threshold, clusterBy, clusterDenominator, gi, 1);
+    }
+
+    /**
+     * @param numOfThreads if greater than 1, candidate families are evaluated concurrently. The resulting families
+     *                     are identical to the families computed by a single thread.
+     */
+    public static List<Family> Cluster(List<Pattern> patterns, double threshold, ClusterBy clusterBy,
+                                       ClusterDenominator clusterDenominator, GenomesInfo gi, int numOfThreads){
+        return Cluster(patterns, threshold, clusterBy, clusterDenominator, gi, numOfThreads, new ClusteringCache());
+    }
+
+    /**
+     * @param cache gene sets of the patterns, the genes they share if they were already clustered in the same order,
+     *              and their clusterings with recent settings. Updated by this call.
+     */
+    public static List<Family> Cluster(List<Pattern> patterns, double threshold, ClusterBy clusterBy,
+                                       ClusterDenominator clusterDenominator, GenomesInfo gi, int numOfThreads,
+                                       ClusteringCache cache){
+
+        patterns.sort(clusterBy.patternComparator);
+        cache.computeGeneSets(patterns, gi);
+
+        List<Family> families;
+        int[] familyIndexes = cache.getFamilyIndexes(patterns, threshold, clusterBy, clusterDenominator);
+        if (familyIndexes != null) {
+            families = createFamilies(patterns, familyIndexes, cache, gi);
+        } else {
+            familyIndexes = cache.clusterFromIntersections(patterns, threshold, clusterDenominator);
+            if (familyIndexes != null) {
+                families = createFamilies(patterns, familyIndexes, cache, gi);
+            } else if (numOfThreads > 1) {
+                families = parallelGreedyClustering(patterns, threshold, clusterDenominator, gi, numOfThreads,
+                        cache);
+            } else {
+                families = greedyClustering(patterns, threshold, clusterDenominator, gi, cache);
+            }
+            cache.putFamilies(patterns, families, threshold, clusterBy, clusterDenominator);
+        }
+
+        sortFamilies(families);
+        return families;
+    }
 
-        List<Family> families = greedyClustering(patterns, threshold, clusterBy, clusterDenominator, gi);
+    /**
+     * Creates the families of a cached clustering
+     */
+    private static List<Family> createFamilies(List<Pattern> sortedPatterns, int[] familyIndexes,
+                                               ClusteringCache cache, GenomesInfo gi){
+        List<Family> families = new ArrayList<>();
+        for (int i = 0; i < familyIndexes.length; i++) {
+            Pattern pattern = sortedPatterns.get(i);
+            if (familyIndexes[i] == families.size()) {
+                families.add(new Family(families.size(), pattern, cache.getGeneSet(pattern), gi));
+            } else {
+                families.get(familyIndexes[i]).addPattern(pattern, cache.getGeneSet(pattern));
+            }
+        }
+        return families;
+    }
 
+    static void sortFamilies(List<Family> families){
         for (Family family: families){
             family.sortPatternsAndSetScore();
         }
 
         families.sort(new Family.ScoreComparator());
-        return families;
     }
 
-    private static boolean addToFamily(Family family, double threshold, Pattern currPattern,
-                                       ClusterDenominator clusterDenominator, Set<Integer> currPatternGeneSet){
-
-        Set<Integer> familySet = family.getGeneSet();
+    /**
+     * Checks if a pattern with {@code patternSetSize} genes should join a family with {@code familySetSize} genes,
+     * given the size of the intersection between them
+     */
+    static boolean passesThreshold(int intersectionSize, int patternSetSize, int familySetSize,
+                                           double threshold, ClusterDenominator clusterDenominator){
 
         int denominator = 1;
         if (clusterDenominator == ClusterDenominator.MIN_SET){
-            denominator = Math.min(familySet.size(), currPatternGeneSet.size());
+            denominator = Math.min(familySetSize, patternSetSize);
 
             threshold = denominator >= 1 && denominator <= 2 ? 1 : threshold;
 
         }else if (clusterDenominator == ClusterDenominator.MAX_SET){
-            denominator = Math.max(familySet.size(), currPatternGeneSet.size());
+            denominator = Math.max(familySetSize, patternSetSize);
         }else if (clusterDenominator == ClusterDenominator.UNION){
-            Set<Integer> union = new HashSet<>(currPatternGeneSet);
-            union.addAll(familySet);
-            denominator = union.size();
+            denominator = patternSetSize + familySetSize - intersectionSize;
         }
 
-        Set<Integer> intersection = new HashSet<>(currPatternGeneSet);
-        intersection.retainAll(familySet);
+        return (intersectionSize / (double) denominator) >= threshold;
+    }
 
-        if ((intersection.size() / (double) denominator) >= threshold) {
-            family.addPattern(currPattern);
-            return true;
+    /**
+     * Each pattern joins the first family (in order of creation) that passes the threshold, otherwise it opens a new
+     * family. A family that shares no genes with the pattern can pass the threshold only if it is not positive,
+     * therefore only families found in the {@link FamiliesGeneIndex} are examined.
+     */
+    private static List<Family> greedyClustering(List<Pattern> patterns, double threshold,
+                                                 ClusterDenominator clusterDenominator, GenomesInfo gi,
+                                                 ClusteringCache cache){
+
+        List<Family> families = new ArrayList<>();
+        FamiliesGeneIndex index = new FamiliesGeneIndex();
+
+        for (Pattern currPattern : patterns) {
+
+            Set<Integer> currPatternGeneSet = cache.getGeneSet(currPattern);
+
+            Family family = findFamily(families, index, currPatternGeneSet, threshold, clusterDenominator);
+
+            addToFamily(currPattern, currPatternGeneSet, family, families, index, gi);
         }
-        return false;
-    }
 
-    private static List<Family> greedyClustering(List<Pattern> patterns, double threshold, ClusterBy clusterBy,
-                                                 ClusterDenominator clusterDenominator, GenomesInfo gi){
+        return families;
+    }
 
-        patterns.sort(clusterBy.patternComparator);
+    /**
+     * Computes the same families as {@link #greedyClustering}, using {@code numOfThreads} threads.
+     *
+     * The patterns are processed in blocks. First, the family of each pattern in the block is found
+     * concurrently, against the families as they were at the beginning of the block. Then the patterns are added
+     * to their families in order. A family found for a pattern is still its first passing family, unless the gene
+     * set of this family or of a preceding family has changed since the beginning of the block, in which case the
+     * family of the pattern is found again.
+     */
+    private static List<Family> parallelGreedyClustering(List<Pattern> patterns, double threshold,
+                                                         ClusterDenominator clusterDenominator, GenomesInfo gi,
+                                                         int numOfThreads, ClusteringCache cache){
 
         List<Family> families = new ArrayList<>();
-        Iterator<Pattern> it = patterns.iterator();
-        if (it.hasNext()) {
-            Pattern first_pattern = it.next();
-            Family firstFamily = new Family(0, first_pattern, gi);
+        FamiliesGeneIndex index = new FamiliesGeneIndex();
 
-            families.add(firstFamily);
+        int blockSize = BLOCK_SIZE_PER_THREAD * numOfThreads;
 
-            while (it.hasNext()) {
-                Pattern currPattern = it.next();
+        Family[] foundFamilies = new Family[blockSize];
 
-                Set<Integer> currPatternGeneSet = getGenesSet(currPattern.getPatternGenes(), gi);
+        ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+        try {
+            for (int blockStart = 0; blockStart < patterns.size(); blockStart += blockSize) {
+                int blockEnd = Math.min(blockStart + blockSize, patterns.size());
 
-                boolean addedPattern = false;
-                for (Family family : families) {
-                    addedPattern = addToFamily(family, threshold, currPattern, clusterDenominator, currPatternGeneSet);
+                List<Callable<Object>> tasks = new ArrayList<>();
+                for (int chunkStart = blockStart; chunkStart < blockEnd; chunkStart += BLOCK_SIZE_PER_THREAD) {
+                    int start = chunkStart;
+                    int end = Math.min(chunkStart + BLOCK_SIZE_PER_THREAD, blockEnd);
+                    int offset = blockStart;
 
-                    if (addedPattern){
-                        break;
-                    }
+                    tasks.add(() -> {
+                        for (int i = start; i < end; i++) {
+                            Set<Integer> geneSet = cache.getGeneSet(patterns.get(i));
+                            foundFamilies[i - offset] = findFamily(families, index, geneSet, threshold,
+                                    clusterDenominator);
+                        }
+                        return null;
+                    });
                 }
 
-                if (!addedPattern) {
-                    Family newFamily = new Family(families.size(), currPattern, gi);
-                    families.add(newFamily);
+                for (Future<Object> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+
+                //smallest id of a family whose gene set has changed in this block
+                int minChangedFamilyId = Integer.MAX_VALUE;
+                for (int i = blockStart; i < blockEnd; i++) {
+                    Pattern currPattern = patterns.get(i);
+                    Set<Integer> currPatternGeneSet = cache.getGeneSet(currPattern);
+
+                    Family family = foundFamilies[i - blockStart];
+                    boolean isFamilyValid = family == null ? minChangedFamilyId == Integer.MAX_VALUE
+                            : family.getFamilyId() < minChangedFamilyId;
+                    if (!isFamilyValid) {
+                        family = findFamily(families, index, currPatternGeneSet, threshold, clusterDenominator);
+                    }
+
+                    int familyId = addToFamily(currPattern, currPatternGeneSet, family, families, index, gi);
+                    if (familyId != -1) {
+                        minChangedFamilyId = Math.min(minChangedFamilyId, familyId);
+                    }
                 }
             }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Clustering to families failed", e);
+        } finally {
+            executor.shutdown();
         }
 
         return families;
     }
 
-    private static Set<Integer> getGenesSet(Gene[] genes, GenomesInfo gi){
+    /**
+     * Adds the pattern to {@code family}, or to a new family if {@code family} is null, and updates the index
+     *
+     * @return the id of the family if its gene set has changed, -1 otherwise
+     */
+    private static int addToFamily(Pattern pattern, Set<Integer> patternGeneSet, Family family,
+                                   List<Family> families, FamiliesGeneIndex index, GenomesInfo gi){
+        if (family == null) {
+            family = new Family(families.size(), pattern, patternGeneSet, gi);
+            families.add(family);
+            index.addGenes(family.getFamilyId(), family.getGeneSet());
+            return family.getFamilyId();
+        }
+
+        List<Integer> newGenes = new ArrayList<>();
+        for (int gene : patternGeneSet) {
+            if (!family.getGeneSet().contains(gene)) {
+                newGenes.add(gene);
+            }
+        }
+        family.addPattern(pattern, patternGeneSet);
+        index.addGenes(family.getFamilyId(), newGenes);
+
+        return newGenes.isEmpty() ? -1 : family.getFamilyId();
+    }
+
+    /**
+     * @return the first family that passes the threshold, or null if there is no such family
+     */
+    private static Family findFamily(List<Family> families, FamiliesGeneIndex index, Set<Integer> patternGeneSet,
+                                     double threshold, ClusterDenominator clusterDenominator){
+
+        if (threshold <= 0) {
+            //families that share no genes with the pattern can also pass the threshold
+            for (Family family : families) {
+                int intersectionSize = intersectionSize(patternGeneSet, family.getGeneSet());
+                if (passesThreshold(intersectionSize, patternGeneSet.size(), family.getGeneSet().size(),
+                        threshold, clusterDenominator)) {
+                    return family;
+                }
+            }
+            return null;
+        }
+
+        FamiliesGeneIndex.Candidates candidates = index.findFamiliesSharingGenes(patternGeneSet);
+        for (int i = 0; i < candidates.size(); i++) {
+            Family family = families.get(candidates.getFamilyIndex(i));
+            if (passesThreshold(candidates.getIntersectionSize(i), patternGeneSet.size(),
+                    family.getGeneSet().size(), threshold, clusterDenominator)) {
+                return family;
+            }
+        }
+        return null;
+    }
+
+    private static int intersectionSize(Set<Integer> set1, Set<Integer> set2){
+        int intersectionSize = 0;
+        for (int gene : set1) {
+            if (set2.contains(gene)) {
+                intersectionSize++;
+            }
+        }
+        return intersectionSize;
+    }
+
+    static Set<Integer> getGenesSet(Gene[] genes, GenomesInfo gi){
         Set<Integer> geneSet = new HashSet<>();
         for (Gene cog: genes) {
-            int cogIndex = gi.getLetter(new Gene(cog.getCogId(), Strand.INVALID));
+            int cogIndex = gi.getLetter(gi.getGeneTable().getGene(cog.getCogId(), Strand.INVALID));
             if (cogIndex != -1) {
                 geneSet.add(cogIndex);
             }
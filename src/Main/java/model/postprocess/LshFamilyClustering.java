@@ -0,0 +1,226 @@
+package model.postprocess;
+
+import model.ClusterBy;
+import model.ClusterDenominator;
+import model.genomes.GenomesInfo;
+import model.patterns.Pattern;
+
+import java.util.*;
+
+/**
+ * Clusters patterns to families, approximating {@link FamilyClustering} for very large pattern sets.
+ *
+ * The gene set of each pattern is sketched by a MinHash signature of {@link #BANDS} x {@link #ROWS} hash values, and
+ * each band of the signature is hashed to a bucket. A family is kept in the buckets of its members, and a pattern is
+ * compared, in order of family creation, only to the families found in its own buckets. The threshold test itself
+ * is exact.
+ *
+ * Two gene sets with Jaccard similarity s share no bucket with probability (1 - s^ROWS)^BANDS, see
+ * {@link #getMissProbability(double)}. In that case the pattern may open a new family, or join a later family,
+ * instead of the family it would have joined in the greedy clustering. Two gene sets that pass the threshold have a
+ * Jaccard similarity of at least {@link #getMinJaccardSimilarity(double, ClusterDenominator)}, which bounds the
+ * probability that a pattern shares no bucket with a pattern it passes the threshold with, see
+ * {@link #getPairMissProbability(double, ClusterDenominator)}.
+ *
+ * Each bucket keeps at most {@link #MAX_BUCKET_SIZE} families, the first that entered it, so the memory does not
+ * depend on the number of pairs of similar patterns, and the signatures are not kept after a pattern is clustered.
+ *
+ * The pair bound is not a bound on the probability that a pattern misses the family it would have joined: the
+ * threshold is tested against the genes of the whole family, the buckets are shared with single members, and a full
+ * bucket drops the families that enter it later.
+ */
+public class LshFamilyClustering {
+
+    public static final int BANDS = 32;
+    public static final int ROWS = 2;
+    public static final int MAX_BUCKET_SIZE = 64;
+
+    private static final long MERSENNE_PRIME = (1L << 31) - 1;
+    private static final long SEED = 17;
+
+    /**
+     * Coefficients of the hash functions h(x) = (a*x + b) mod MERSENNE_PRIME
+     */
+    private static final long[] A = new long[BANDS * ROWS];
+    private static final long[] B = new long[BANDS * ROWS];
+
+    static {
+        Random random = new Random(SEED);
+        for (int i = 0; i < A.length; i++) {
+            A[i] = 1 + (long) (random.nextDouble() * (MERSENNE_PRIME - 1));
+            B[i] = (long) (random.nextDouble() * MERSENNE_PRIME);
+        }
+    }
+
+    public static List<Family> Cluster(List<Pattern> patterns, double threshold, ClusterBy clusterBy,
+                                       ClusterDenominator clusterDenominator, GenomesInfo gi){
+
+        if (threshold <= 0) {
+            //every family passes the threshold, the greedy clustering examines only the first family
+            return FamilyClustering.Cluster(patterns, threshold, clusterBy, clusterDenominator, gi);
+        }
+
+        patterns.sort(clusterBy.patternComparator);
+
+        List<Family> families = new ArrayList<>();
+        //band hash -> ids of families that have a member in this bucket
+        Map<Long, List<Integer>> buckets = new HashMap<>();
+
+        for (Pattern currPattern : patterns) {
+
+            Set<Integer> currPatternGeneSet = FamilyClustering.getGenesSet(currPattern.getPatternGenes(), gi);
+            long[] bandHashes = getBandHashes(currPatternGeneSet);
+
+            Family family = findFamily(families, buckets, bandHashes, currPatternGeneSet, threshold,
+                    clusterDenominator);
+
+            if (family == null) {
+                family = new Family(families.size(), currPattern, gi);
+                families.add(family);
+            } else {
+                family.addPattern(currPattern);
+            }
+
+            for (long bandHash : bandHashes) {
+                List<Integer> bucket = buckets.computeIfAbsent(bandHash, k -> new ArrayList<>());
+                if (bucket.size() < MAX_BUCKET_SIZE && !bucket.contains(family.getFamilyId())) {
+                    bucket.add(family.getFamilyId());
+                }
+            }
+        }
+
+        FamilyClustering.sortFamilies(families);
+        return families;
+    }
+
+    /**
+     * @return the first family (in order of creation) among the families in the buckets of the pattern, that passes
+     * the threshold, or null if there is no such family
+     */
+    private static Family findFamily(List<Family> families, Map<Long, List<Integer>> buckets, long[] bandHashes,
+                                     Set<Integer> patternGeneSet, double threshold,
+                                     ClusterDenominator clusterDenominator){
+
+        int candidatesCount = 0;
+        for (long bandHash : bandHashes) {
+            List<Integer> bucket = buckets.get(bandHash);
+            if (bucket != null) {
+                candidatesCount += bucket.size();
+            }
+        }
+
+        int[] candidates = new int[candidatesCount];
+        int i = 0;
+        for (long bandHash : bandHashes) {
+            List<Integer> bucket = buckets.get(bandHash);
+            if (bucket != null) {
+                for (int familyId : bucket) {
+                    candidates[i++] = familyId;
+                }
+            }
+        }
+        Arrays.sort(candidates);
+
+        for (i = 0; i < candidatesCount; i++) {
+            if (i > 0 && candidates[i] == candidates[i-1]) {
+                continue;
+            }
+            Family family = families.get(candidates[i]);
+
+            int intersectionSize = 0;
+            for (int gene : patternGeneSet) {
+                if (family.getGeneSet().contains(gene)) {
+                    intersectionSize++;
+                }
+            }
+
+            if (FamilyClustering.passesThreshold(intersectionSize, patternGeneSet.size(),
+                    family.getGeneSet().size(), threshold, clusterDenominator)) {
+                return family;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the bucket of each band of the MinHash signature of {@code geneSet}, or no buckets if the set is empty
+     */
+    private static long[] getBandHashes(Set<Integer> geneSet){
+        if (geneSet.isEmpty()) {
+            return new long[0];
+        }
+
+        long[] signature = new long[BANDS * ROWS];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (int gene : geneSet) {
+            for (int i = 0; i < signature.length; i++) {
+                long hash = (A[i] * gene + B[i]) % MERSENNE_PRIME;
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+
+        long[] bandHashes = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long bandHash = band;
+            for (int row = 0; row < ROWS; row++) {
+                bandHash = bandHash * MERSENNE_PRIME + signature[band * ROWS + row];
+            }
+            bandHashes[band] = mix(bandHash);
+        }
+        return bandHashes;
+    }
+
+    /**
+     * Spreads the bits of a band hash, so that buckets of similar bands do not collide in the buckets map
+     */
+    private static long mix(long hash){
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @param jaccardSimilarity Jaccard similarity between two gene sets
+     * @return the probability (1 - s^ROWS)^BANDS that the MinHash signatures of the gene sets share no band. This is not the
+     * probability that a pattern misses a family, see {@link LshFamilyClustering}.
+     */
+    public static double getMissProbability(double jaccardSimilarity){
+        return Math.pow(1 - Math.pow(jaccardSimilarity, ROWS), BANDS);
+    }
+
+    /**
+     * @return the smallest Jaccard similarity between two gene sets that pass the threshold with this denominator:
+     * the threshold for {@link ClusterDenominator#UNION}, threshold/(2-threshold) for
+     * {@link ClusterDenominator#MAX_SET}, and 0 for {@link ClusterDenominator#MIN_SET}, where a small set passes
+     * with any larger set that contains it
+     */
+    public static double getMinJaccardSimilarity(double threshold, ClusterDenominator clusterDenominator){
+        if (threshold <= 0) {
+            return 0;
+        }
+        threshold = Math.min(threshold, 1);
+        switch (clusterDenominator) {
+            case UNION:
+                return threshold;
+            case MAX_SET:
+                //|A&B| >= t*max(|A|,|B|) and |A u B| <= 2*max(|A|,|B|) - |A&B|
+                return threshold / (2 - threshold);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return an upper bound on the probability that a pattern shares no bucket with another pattern, whose gene set
+     * passes the threshold with its own, see {@link #getMissProbability(double)}. The bound is per pair of patterns,
+     * and does not bound the probability that a pattern misses a family, see {@link LshFamilyClustering}.
+     */
+    public static double getPairMissProbability(double threshold, ClusterDenominator clusterDenominator){
+        return getMissProbability(getMinJaccardSimilarity(threshold, clusterDenominator));
+    }
+}
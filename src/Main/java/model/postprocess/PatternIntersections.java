@@ -0,0 +1,201 @@
+package model.postprocess;
+
+import model.ClusterDenominator;
+import model.patterns.Pattern;
+
+import java.util.*;
+
+/**
+ * The genes that each pattern shares with the preceding patterns, in the order in which the patterns are clustered.
+ *
+ * The genes of each pattern are numbered, and for each preceding pattern that shares genes with it, the shared genes
+ * are kept as a bit mask. The genes that a pattern shares with a family are the union of the masks of the family
+ * members, so the greedy clustering can be computed with any threshold and denominator from the masks, without the
+ * gene sets of the patterns and of the families.
+ */
+class PatternIntersections {
+
+    private final List<Pattern> sortedPatterns;
+    /**
+     * The number of genes of each pattern
+     */
+    private final int[] geneCounts;
+    /**
+     * The preceding patterns that share genes with pattern i are in [offsets[i], offsets[i+1])
+     */
+    private final int[] offsets;
+    private final int[] precedingPatterns;
+    /**
+     * Bit k is set if the preceding pattern contains the k-th gene of the pattern
+     */
+    private final long[] sharedGenes;
+
+    private PatternIntersections(List<Pattern> sortedPatterns, int[] geneCounts, int[] offsets,
+                                 int[] precedingPatterns, long[] sharedGenes){
+        this.sortedPatterns = sortedPatterns;
+        this.geneCounts = geneCounts;
+        this.offsets = offsets;
+        this.precedingPatterns = precedingPatterns;
+        this.sharedGenes = sharedGenes;
+    }
+
+    /**
+     * @param sortedPatterns the patterns, in the order in which they are clustered
+     * @param cache contains the gene sets of the patterns
+     * @return the intersections, or null if a pattern has more genes than the bits of a mask
+     */
+    static PatternIntersections compute(List<Pattern> sortedPatterns, ClusteringCache cache){
+        int patternsCount = sortedPatterns.size();
+
+        int[][] genes = new int[patternsCount][];
+        Map<Integer, Integer> geneIds = new HashMap<>();
+        for (int i = 0; i < patternsCount; i++) {
+            Set<Integer> geneSet = cache.getGeneSet(sortedPatterns.get(i));
+            if (geneSet.size() > Long.SIZE) {
+                return null;
+            }
+            genes[i] = new int[geneSet.size()];
+            int k = 0;
+            for (int gene : geneSet) {
+                Integer geneId = geneIds.get(gene);
+                if (geneId == null) {
+                    geneId = geneIds.size();
+                    geneIds.put(gene, geneId);
+                }
+                genes[i][k++] = geneId;
+            }
+        }
+
+        //gene id -> the patterns that contain it, in ascending order
+        int[] postingOffsets = new int[geneIds.size() + 1];
+        for (int[] patternGenes : genes) {
+            for (int gene : patternGenes) {
+                postingOffsets[gene + 1]++;
+            }
+        }
+        for (int gene = 0; gene < geneIds.size(); gene++) {
+            postingOffsets[gene + 1] += postingOffsets[gene];
+        }
+        int[] postings = new int[postingOffsets[geneIds.size()]];
+        int[] postingSizes = new int[geneIds.size()];
+        for (int i = 0; i < patternsCount; i++) {
+            for (int gene : genes[i]) {
+                postings[postingOffsets[gene] + postingSizes[gene]++] = i;
+            }
+        }
+
+        int[] geneCounts = new int[patternsCount];
+        int[] offsets = new int[patternsCount + 1];
+        int[] precedingPatterns = new int[16];
+        long[] sharedGenes = new long[16];
+        int size = 0;
+
+        long[] masks = new long[patternsCount];
+        int[] touched = new int[patternsCount];
+        for (int i = 0; i < patternsCount; i++) {
+            geneCounts[i] = genes[i].length;
+
+            int touchedCount = 0;
+            for (int k = 0; k < genes[i].length; k++) {
+                int gene = genes[i][k];
+                for (int p = postingOffsets[gene]; p < postingOffsets[gene + 1] && postings[p] < i; p++) {
+                    int j = postings[p];
+                    if (masks[j] == 0) {
+                        touched[touchedCount++] = j;
+                    }
+                    masks[j] |= 1L << k;
+                }
+            }
+
+            if (size + touchedCount > precedingPatterns.length) {
+                int length = Math.max(size + touchedCount, precedingPatterns.length * 2);
+                precedingPatterns = Arrays.copyOf(precedingPatterns, length);
+                sharedGenes = Arrays.copyOf(sharedGenes, length);
+            }
+            for (int t = 0; t < touchedCount; t++) {
+                int j = touched[t];
+                precedingPatterns[size] = j;
+                sharedGenes[size] = masks[j];
+                size++;
+                masks[j] = 0;
+            }
+            offsets[i + 1] = size;
+        }
+
+        return new PatternIntersections(new ArrayList<>(sortedPatterns), geneCounts, offsets,
+                Arrays.copyOf(precedingPatterns, size), Arrays.copyOf(sharedGenes, size));
+    }
+
+    List<Pattern> getSortedPatterns(){
+        return sortedPatterns;
+    }
+
+    /**
+     * Computes the families of the greedy clustering (see {@link FamilyClustering}): each pattern joins the first
+     * family that passes the threshold, in order of creation, otherwise it opens a new family.
+     *
+     * @return the family index of each pattern
+     */
+    int[] cluster(double threshold, ClusterDenominator clusterDenominator){
+        int patternsCount = geneCounts.length;
+
+        int[] familyIndexes = new int[patternsCount];
+        int[] familySizes = new int[patternsCount];
+        int familiesCount = 0;
+
+        //the genes of the current pattern in each family
+        long[] familyMasks = new long[patternsCount];
+        int[] touched = new int[patternsCount];
+
+        for (int i = 0; i < patternsCount; i++) {
+            int touchedCount = 0;
+            for (int e = offsets[i]; e < offsets[i + 1]; e++) {
+                int family = familyIndexes[precedingPatterns[e]];
+                if (familyMasks[family] == 0) {
+                    touched[touchedCount++] = family;
+                }
+                familyMasks[family] |= sharedGenes[e];
+            }
+
+            int foundFamily = -1;
+            int intersectionSize = 0;
+            if (threshold <= 0) {
+                //families that share no genes with the pattern can also pass the threshold
+                for (int family = 0; family < familiesCount && foundFamily == -1; family++) {
+                    int size = Long.bitCount(familyMasks[family]);
+                    if (FamilyClustering.passesThreshold(size, geneCounts[i], familySizes[family], threshold,
+                            clusterDenominator)) {
+                        foundFamily = family;
+                        intersectionSize = size;
+                    }
+                }
+            } else {
+                //the first passing family is the passing family with the smallest index
+                for (int t = 0; t < touchedCount; t++) {
+                    int family = touched[t];
+                    if (foundFamily != -1 && family > foundFamily) {
+                        continue;
+                    }
+                    int size = Long.bitCount(familyMasks[family]);
+                    if (FamilyClustering.passesThreshold(size, geneCounts[i], familySizes[family], threshold,
+                            clusterDenominator)) {
+                        foundFamily = family;
+                        intersectionSize = size;
+                    }
+                }
+            }
+
+            for (int t = 0; t < touchedCount; t++) {
+                familyMasks[touched[t]] = 0;
+            }
+
+            if (foundFamily == -1) {
+                foundFamily = familiesCount++;
+            }
+            familySizes[foundFamily] += geneCounts[i] - intersectionSize;
+            familyIndexes[i] = foundFamily;
+        }
+
+        return familyIndexes;
+    }
+}
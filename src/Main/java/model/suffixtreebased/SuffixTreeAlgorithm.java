@@ -5,10 +5,13 @@ import model.MemoryUtils;
 import model.Parameters;
 import model.patterns.Instance;
 import model.patterns.Pattern;
+import model.patterns.PatternKey;
 import model.patterns.PatternsUtils;
+import model.patterns.TopScoringPatterns;
 import model.suffixtreebased.suffixtrees.*;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import model.genomes.*;
 
@@ -37,7 +40,17 @@ public class SuffixTreeAlgorithm implements Algorithm {
     private DatasetTree datasetTree;
 
     //contains all extracted patterns
-    private Map<String, Pattern> patterns;
+    private Map<PatternKey, Pattern> patterns;
+    /**
+     * In cross-strand runs, the number of instances of the patterns that were found in the orientation that is not
+     * canonical. Only the canonical orientation is kept in patterns, these are used to remove redundant patterns.
+     */
+    private Map<PatternKey, Integer> reverseComplimentCounts;
+    /**
+     * If not null, receives the patterns as they are found instead of patterns, see
+     * {@link #findPatterns(Consumer)}
+     */
+    private Consumer<Pattern> patternConsumer;
 
     private boolean multCount;
 
@@ -54,13 +67,21 @@ public class SuffixTreeAlgorithm implements Algorithm {
 
     private List<Pattern> patternsFromFile;
 
+    /**
+     * If not null, extensions that cannot be one of the top scoring patterns are pruned, and only the top scoring
+     * patterns are kept after the search
+     */
+    private TopScoringPatterns topScoringPatterns;
+
     public SuffixTreeAlgorithm() {
 
         parameters = null;
         this.gi = null;
 
         patterns = new HashMap<>();
+        reverseComplimentCounts = new HashMap<>();
         patternsFromFile = new ArrayList<>();
+        topScoringPatterns = null;
 
     }
 
@@ -109,10 +130,26 @@ public class SuffixTreeAlgorithm implements Algorithm {
         //TODO: implement
     }
 
+    @Override
+    public void setTopScoringPatterns(TopScoringPatterns topScoringPatterns) {
+        this.topScoringPatterns = topScoringPatterns;
+    }
+
+    /**
+     * @return the maximal length of an instance, a pattern of the maximal length with the maximal insertions
+     */
+    private int getMaxInstanceLength() {
+        return (int) Math.min((long) maxPatternLength + maxInsertion, Integer.MAX_VALUE);
+    }
+
     public int getPatternsCount() {
         return patterns.size();
     }
 
+    private boolean isTopKMode(){
+        return topScoringPatterns != null && patternTreeRoot.getType() == TreeType.VIRTUAL;
+    }
+
     private void initialize() {
         totalCharsInData = -1;
         lastPatternKey = 0;
@@ -120,6 +157,7 @@ public class SuffixTreeAlgorithm implements Algorithm {
         countNodesInDataTree = 0;
 
         patterns = new HashMap<>();
+        reverseComplimentCounts = new HashMap<>();
 
         setPatternTreeRoot();
     }
@@ -137,6 +175,23 @@ public class SuffixTreeAlgorithm implements Algorithm {
     }
 
 
+    public void findPatterns(Consumer<Pattern> patternConsumer) {
+        if (parameters != null && parameters.keepAllPatterns && topScoringPatterns == null) {
+            //no pattern is removed after the search, so each pattern is final once it is found
+            this.patternConsumer = patternConsumer;
+            try {
+                findPatterns();
+            } finally {
+                this.patternConsumer = null;
+            }
+        } else {
+            findPatterns();
+        }
+
+        //the redundant patterns are removed only after all patterns are found
+        PatternsUtils.releasePatterns(patterns, patternConsumer);
+    }
+
     public void findPatterns() {
         if (parameters == null || gi == null || datasetTree == null) {
             return;
@@ -144,7 +199,7 @@ public class SuffixTreeAlgorithm implements Algorithm {
 
         initialize();
 
-        datasetTree.buildTree(parameters.crossStrand);
+        datasetTree.buildTree(parameters.crossStrand, getMaxInstanceLength());
         GeneralizedSuffixTree datasetSuffixTree = datasetTree.getSuffixTree();
         datasetSuffixTree.computeCount();
         totalCharsInData = datasetSuffixTree.getRoot().getCountMultipleInstancesPerGenome();
@@ -163,6 +218,10 @@ public class SuffixTreeAlgorithm implements Algorithm {
         }
 
         removeRedundantPatterns();
+
+        if (isTopKMode()) {
+            PatternsUtils.retainTopScoringPatterns(patterns, topScoringPatterns.getK());
+        }
     }
 
     /**
@@ -173,28 +232,54 @@ public class SuffixTreeAlgorithm implements Algorithm {
      * Therefore it is sufficient to remove each pattern suffix if it has the same instance count
      */
     private void removeRedundantPatterns() {
-        HashSet<String> patternsToRemove = new HashSet<>();
-        for (Map.Entry<String, Pattern> entry : patterns.entrySet()) {
+        if (parameters.keepAllPatterns) {
+            return;
+        }
+
+        HashSet<PatternKey> patternsToRemove = new HashSet<>();
+        for (Map.Entry<PatternKey, Pattern> entry : patterns.entrySet()) {
 
             Pattern pattern = entry.getValue();
 
-            if (!parameters.keepAllPatterns) {
-                String suffixStr = getSuffix(pattern);
-                PatternsUtils.addSubPatternToRemoveList(patterns, suffixStr, pattern, patternsToRemove);
-            }
+            PatternKey suffixKey = getSuffix(pattern.getPatternGenes());
+            PatternsUtils.addSubPatternToRemoveList(patterns, suffixKey, pattern, patternsToRemove);
+        }
 
-            if (crossStrand) {
-                PatternsUtils.removeReverseCompliments(patterns, pattern, patternsToRemove);
-            }
+        if (crossStrand) {
+            removeRedundantOrientations(patternsToRemove);
+        } else {
+            patterns.keySet().removeAll(patternsToRemove);
         }
-        patterns.keySet().removeAll(patternsToRemove);
     }
 
-    private String getSuffix(Pattern pattern) {
+    /**
+     * Removes the cross-strand patterns that are redundant in the orientations in which they were found: the suffixes
+     * of the patterns in both orientations are marked, and a pattern is removed if it is marked, unless its reverse
+     * compliment was found and is not marked
+     *
+     * @param patternsToRemove the marked suffixes of the canonical patterns
+     */
+    private void removeRedundantOrientations(HashSet<PatternKey> patternsToRemove) {
+        for (Map.Entry<PatternKey, Integer> entry : reverseComplimentCounts.entrySet()) {
+            PatternKey suffixKey = entry.getKey().suffix();
+            Integer suffixCount = reverseComplimentCounts.get(suffixKey);
+            if (suffixCount == null && patterns.containsKey(suffixKey)) {
+                suffixCount = patterns.get(suffixKey).getInstancesPerGenomeCount();
+            }
+            if (suffixCount != null && suffixCount.equals(entry.getValue())) {
+                patternsToRemove.add(suffixKey);
+            }
+        }
+
+        patterns.values().removeIf(pattern -> patternsToRemove.contains(pattern.getKey())
+                && (!reverseComplimentCounts.containsKey(pattern.getReverseComplimentKey())
+                || patternsToRemove.contains(pattern.getReverseComplimentKey())));
+        reverseComplimentCounts = new HashMap<>();
+    }
 
-        Gene[] suffix = Arrays.copyOfRange(pattern.getPatternGenes(), 1, pattern.getLength());
+    private PatternKey getSuffix(Gene[] genes) {
 
-        return Pattern.toString(suffix);
+        return PatternKey.of(genes, 1, genes.length);
     }
 
     /**
@@ -395,7 +480,8 @@ public class SuffixTreeAlgorithm implements Algorithm {
 
             TreeType type = extendedPatternNode.getType();
             int ret = -1;
-            if (extendedPatternLength < maxPatternLength) {
+            if (extendedPatternLength < maxPatternLength && (!isTopKMode() ||
+                    topScoringPatterns.canExtend(extendedPatternLength, extendedPatternNode.getInstanceKeysSize()))) {
                 if (type == TreeType.VIRTUAL) {
                     ret = spellPatternsVirtually(extendedPatternNode, data_node, data_edge_index, data_edge,
                             extendedPattern, extendedPatternLength);
@@ -411,13 +497,30 @@ public class SuffixTreeAlgorithm implements Algorithm {
                 if (extendedPatternNode.getPatternKey() != null &&
                         (instancesCount > ret || parameters.keepAllPatterns)) // instancesCount >= ret always
                 {
+                    //in cross-strand runs the reverse compliment of the pattern is spelled too, with the same
+                    // instances on the opposite strands, only the canonical orientation is kept
+                    if (crossStrand && !Pattern.isCanonical(extendedPattern)) {
+                        if (!parameters.keepAllPatterns) {
+                            reverseComplimentCounts.put(PatternKey.of(extendedPattern),
+                                    extendedPatternNode.getInstanceKeysSize());
+                        }
+                        return instancesCount;
+                    }
 
                     Pattern newPattern = new Pattern(extendedPatternNode.getPatternKey(),
                             extendedPattern);
 
                     newPattern.addInstanceLocations(extendedPatternNode.getInstances());
 
-                    patterns.put(newPattern.toString(), newPattern);
+                    if (isTopKMode()) {
+                        addTopScoringPattern(newPattern, extendedPatternNode);
+                    }
+
+                    if (patternConsumer != null) {
+                        patternConsumer.accept(newPattern);
+                    } else {
+                        patterns.put(newPattern.getKey(), newPattern);
+                    }
 
                     if (debug && (getPatternsCount() % 5000 == 0)) {
                         MemoryUtils.measure();
@@ -438,6 +541,17 @@ public class SuffixTreeAlgorithm implements Algorithm {
 
     }
 
+    /**
+     * Scores the pattern using its instance genomes, and offers it to the top scoring patterns, which bound the
+     * extensions that are explored. The pattern is kept even if it does not enter them: a sub-pattern is redundant
+     * only if the pattern that contains it was found, hence the top K patterns are selected after the redundant
+     * patterns are removed.
+     */
+    private void addTopScoringPattern(Pattern pattern, PatternNode patternNode){
+        pattern.setScore(topScoringPatterns.computeScore(pattern.getPatternGenes(), patternNode.getInstanceKeys()));
+        topScoringPatterns.offer(pattern);
+    }
+
     /**
      * Extends instance, increments error depending on ch
      *
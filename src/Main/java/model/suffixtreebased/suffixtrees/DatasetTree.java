@@ -13,6 +13,11 @@ public class DatasetTree {
     private GeneralizedSuffixTree datasetTree;
     private GenomesInfo genomesInfo;
     public boolean crossStrand;
+    /**
+     * The maximal length of an instance, which limits the genes from the start of a circular replicon that are
+     * indexed after its last gene
+     */
+    private int maxInstanceLength;
 
     public DatasetTree(GenomesInfo gi) {
         datasetTree = null;
@@ -20,6 +25,7 @@ public class DatasetTree {
         genomesInfo = gi;
 
         crossStrand = false;
+        maxInstanceLength = Integer.MAX_VALUE;
 
     }
 
@@ -35,7 +41,10 @@ public class DatasetTree {
      */
     private void putWordInDataTree(GenomicSegment genomicSegment, int currGenomeIndex) {
 
-        List<Gene> genes = genomicSegment.getGenes();
+        putWordInDataTree(genomicSegment, genomicSegment.getGenes(), currGenomeIndex);
+    }
+
+    private void putWordInDataTree(GenomicSegment genomicSegment, List<Gene> genes, int currGenomeIndex) {
 
 
         WordArray wordArray = genomesInfo.createWordArray(genes);
@@ -57,16 +66,18 @@ public class DatasetTree {
      */
     private void updateDataTree(Replicon replicon, int currGenomeIndex, boolean crossStrand) {
 
+        //both strands are indexed: the instances of a pattern on the reverse strand are the instances of its reverse
+        // compliment, which are collected by the same traversal of the tree
         if (crossStrand) {//putWithSuffix replicon and its reverseComplement
 
-            putWordInDataTree(replicon, currGenomeIndex);
+            putWordInDataTree(replicon, replicon.getGenes(maxInstanceLength), currGenomeIndex);
 
             replicon = replicon.reverseComplement();
-            putWordInDataTree(replicon, currGenomeIndex);
+            putWordInDataTree(replicon, replicon.getGenes(maxInstanceLength), currGenomeIndex);
 
         } else {//split replicon to directons
 
-            List<Directon> directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR);
+            List<Directon> directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR, maxInstanceLength);
 
             for (Directon directon : directons) {
                 putWordInDataTree(directon, currGenomeIndex);
@@ -75,12 +86,16 @@ public class DatasetTree {
         }
     }
 
-    public void buildTree(boolean crossStrand) {
-        if (datasetTree != null && this.crossStrand == crossStrand) {
+    /**
+     * @param maxInstanceLength the maximal length of an instance, see {@link Replicon#getGenes(int)}
+     */
+    public void buildTree(boolean crossStrand, int maxInstanceLength) {
+        if (datasetTree != null && this.crossStrand == crossStrand && this.maxInstanceLength == maxInstanceLength) {
             return;
         }
         datasetTree = new GeneralizedSuffixTree();
         this.crossStrand = crossStrand;
+        this.maxInstanceLength = maxInstanceLength;
 
         for (Genome genome : genomesInfo.getGenomes()) {
 
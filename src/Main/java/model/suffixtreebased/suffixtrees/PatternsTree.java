@@ -35,9 +35,9 @@ public class PatternsTree {
                 if (crossStrand) {
                     putWordInTree(patternGenes);
 
-                    putWordInTree(Replicon.reverseComplementGenes(patternGenes));
+                    putWordInTree(Replicon.reverseComplementGenes(patternGenes, genomesInfo.getGeneTable()));
                 } else {
-                    Replicon replicon = new Replicon();
+                    Replicon replicon = new Replicon(genomesInfo.getGeneTable());
                     replicon.addAllGenes(patternGenes);
                     List<Directon> directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR);
 
@@ -144,8 +144,8 @@ public class CSBFinderController {
         model.computeScores(threshold);
     }
 
-    public Map<String, Taxon> getGenomeToTaxa(){
-        return model.getGenomeToTaxa();
+    public TaxonomyIndex getTaxonomy(){
+        return model.getTaxonomy();
     }
 
     public Map<String, Object[]> getGenomeToMetadata(){
@@ -28,7 +28,7 @@ public class CSBFinderModel {
 
     private GenomesInfo gi;
     private CogInfo cogInfo;
-    private Map<String,Taxon> genomeToTaxa;
+    private TaxonomyIndex taxonomy;
     private Map<String,Object[]> genomeToMetadata;
     private String[] genomeMetadataColumnNames;
 
@@ -46,7 +46,7 @@ public class CSBFinderModel {
         cogInfo = new CogInfo();
         arguments = "";
         inputGenomesPath = "";
-        genomeToTaxa = new HashMap<>();
+        taxonomy = new TaxonomyIndex();
         genomeToMetadata = new HashMap<>();
         genomeMetadataColumnNames = new String[0];
 
@@ -91,7 +91,7 @@ public class CSBFinderModel {
         }
 
         List<Family> families = new ArrayList<>();
-        Parsers.parseSessionFile(families, path, gi, colors, params.circular);
+        Parsers.parseSessionFile(families, path, gi, colors, params.circular, params.getProcCount());
 
         workflow = new CSBFinderWorkflow(gi);
         workflow.setParameters(params);
@@ -207,11 +207,11 @@ public class CSBFinderModel {
 
     public void loadTaxa(String path) throws IOException, IllegalArgumentException {
 
-        genomeToTaxa = new HashMap<>();
+        taxonomy = new TaxonomyIndex();
 
         if (path != null) {
 
-            genomeToTaxa = Parsers.parseTaxaFile(path);
+            taxonomy = Parsers.parseTaxaFile(path);
 
         }
     }
@@ -235,8 +235,18 @@ public class CSBFinderModel {
         }
     }
 
+    /**
+     * Saves the session in the binary format if the file has the extension of {@link OutputType#BINARY_SESSION},
+     * and in the text format otherwise
+     */
     public void saveSession(List<Family> families, File currentSession, GeneColors colors){
-        Writer writer = WriteUtils.saveSessionFile(families, gi,  cogInfo, params, arguments, colors, currentSession);
+        Writer writer;
+        if (currentSession.getName().endsWith("." + OutputType.BINARY_SESSION.extension)) {
+            writer = WriteUtils.saveBinarySessionFile(families, gi, cogInfo, params, arguments, colors,
+                    currentSession);
+        } else {
+            writer = WriteUtils.saveSessionFile(families, gi, cogInfo, params, arguments, colors, currentSession);
+        }
         //this.families = families;
         workflow.setFamilies(families);
         //updateFamiliesListener.UpdateFamiliesOccurred(new UpdateFamiliesEvent(families));
@@ -341,8 +351,8 @@ public class CSBFinderModel {
         return gi.getMaxGenomeSize();
     }
 
-    public Map<String, Taxon> getGenomeToTaxa() {
-        return genomeToTaxa;
+    public TaxonomyIndex getTaxonomy() {
+        return taxonomy;
     }
     public Map<String, Object[]> getGenomeToMetadata() {
         return genomeToMetadata;
@@ -31,7 +31,7 @@ public class Menu implements ActionListener {
     private static final String[] LOAD_EXTENSIONS = {"fasta", "txt"};
     private static final String[] CSV_FILE_EXTENSION = {"csv"};
 
-    private String sessionFileExtension;
+    private String[] sessionFileExtensions;
 
     private Listener<FileEvent> loadGenomesListener;
     private Listener<FileEvent> importSessionListener;
@@ -63,10 +63,10 @@ public class Menu implements ActionListener {
 
     private JFrame mainFrame;
 
-    public Menu(JFileChooser fileChooser, JFrame mainFrame, String sessionFileExtension){
+    public Menu(JFileChooser fileChooser, JFrame mainFrame, String... sessionFileExtensions){
         this.fileChooser = fileChooser;
         this.mainFrame = mainFrame;
-        this.sessionFileExtension = sessionFileExtension;
+        this.sessionFileExtensions = sessionFileExtensions;
 
         mainMenu = new JMenuBar();
         this.mainFrame.setJMenuBar(mainMenu);
@@ -186,8 +186,7 @@ public class Menu implements ActionListener {
 
                 break;
             case OPEN:
-                String[] extensions = {sessionFileExtension};
-                initInputFileChooser(e.getActionCommand(), extensions);
+                initInputFileChooser(e.getActionCommand(), sessionFileExtensions);
                 loadEventOccured(e, importSessionListener);
 
                 break;
@@ -12,10 +12,11 @@ import mvc.view.components.shapes.Label;
 import mvc.view.events.*;
 import mvc.view.graphics.Icon;
 import mvc.view.listeners.*;
+import model.OutputType;
 import model.genomes.Alphabet;
 import model.genomes.Gene;
 import model.genomes.GenomesInfo;
-import model.genomes.Taxon;
+import model.genomes.TaxonomyIndex;
 import model.cogs.COG;
 import model.patterns.Pattern;
 import model.postprocess.Family;
@@ -44,7 +45,8 @@ public class MainFrame extends JFrame {
     private static final String LOADING_MSG = "Loading File";
     private static final int MSG_WIDTH = 500;
 
-    private static final String SESSION_FILE_EXTENSION = "csb";
+    private static final String SESSION_FILE_EXTENSION = OutputType.SESSION.extension;
+    private static final String BINARY_SESSION_FILE_EXTENSION = OutputType.BINARY_SESSION.extension;
 
     private File currentSessionFile;
 
@@ -155,7 +157,7 @@ public class MainFrame extends JFrame {
         filterDialog = new FilterDialog();
         exportDialog = new ExportDialog(fc, this);
         saveDialog = new SaveDialog(this);
-        saveAsDialog = new SaveAsDialog(fc, this, SESSION_FILE_EXTENSION);
+        saveAsDialog = new SaveAsDialog(fc, this, SESSION_FILE_EXTENSION, BINARY_SESSION_FILE_EXTENSION);
         settingsDialog = new SettingsDialog(this);
 
         toolbar = new Toolbar();
@@ -164,7 +166,7 @@ public class MainFrame extends JFrame {
 
         summaryPanel = new SummaryPanel(Icon.FILTER.getIcon());
 
-        menuBar = new Menu(fc, this, SESSION_FILE_EXTENSION);
+        menuBar = new Menu(fc, this, SESSION_FILE_EXTENSION, BINARY_SESSION_FILE_EXTENSION);
 
         disableBtnsInit();
 
@@ -525,8 +527,9 @@ public class MainFrame extends JFrame {
             File file = fc.getSelectedFile();
             String ext = FileTypeFilter.getExtension(file);
 
-            if (!SESSION_FILE_EXTENSION.equals(ext)){
-                file = new File(file.toString() + "." + SESSION_FILE_EXTENSION);
+            String selectedExt = saveAsDialog.getSelectedExtension();
+            if (!selectedExt.equals(ext)){
+                file = new File(file.toString() + "." + selectedExt);
             }
 
             if (file.exists()){
@@ -750,8 +753,8 @@ public class MainFrame extends JFrame {
         Function<FileEvent, String> doInBackgroundFunc = (FileEvent e) -> {
             try {
                 controller.loadTaxa(e.getFile().getPath());
-                Map<String, Taxon> genomeToTaxa = controller.getGenomeToTaxa();
-                middlePanel.setGenomeToTaxa(genomeToTaxa);
+                TaxonomyIndex taxonomy = controller.getTaxonomy();
+                middlePanel.setTaxonomy(taxonomy);
             }catch (Exception exception){
                 return exception.getMessage();
             }
@@ -12,12 +12,16 @@ public class SaveAsDialog {
     private static final String SAVE_FILES_DIALOG_BTN_NAME = "Save";
     private static final String DIALOG_NAME = "Save As...";
 
-    private String sessionFileExtension;
+    private String[] sessionFileExtensions;
+    private FileTypeFilter[] filters;
 
-    public SaveAsDialog(JFileChooser fileChooser, JFrame mainFrame, String sessionFileExtension){
+    /**
+     * @param sessionFileExtensions the extensions of the session formats, the first one is selected by default
+     */
+    public SaveAsDialog(JFileChooser fileChooser, JFrame mainFrame, String... sessionFileExtensions){
         this.fileChooser = fileChooser;
         this.mainFrame = mainFrame;
-        this.sessionFileExtension = sessionFileExtension;
+        this.sessionFileExtensions = sessionFileExtensions;
     }
 
     public int openDialog(){
@@ -28,12 +32,29 @@ public class SaveAsDialog {
 
     private void initOutputFileChooser(){
         fileChooser.resetChoosableFileFilters();
-        String[] extensions = {sessionFileExtension};
-        fileChooser.addChoosableFileFilter(new FileTypeFilter(extensions));
+        filters = new FileTypeFilter[sessionFileExtensions.length];
+        for (int i = 0; i < sessionFileExtensions.length; i++) {
+            String[] extensions = {sessionFileExtensions[i]};
+            filters[i] = new FileTypeFilter(extensions);
+            fileChooser.addChoosableFileFilter(filters[i]);
+        }
+        fileChooser.setFileFilter(filters[0]);
         fileChooser.setAcceptAllFileFilterUsed(false);
         fileChooser.setAccessory(null);
         fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
         fileChooser.setDialogTitle(DIALOG_NAME);
     }
 
+    /**
+     * @return the extension of the session format that was selected in the last dialog
+     */
+    public String getSelectedExtension(){
+        for (int i = 0; i < filters.length; i++) {
+            if (filters[i] == fileChooser.getFileFilter()) {
+                return sessionFileExtensions[i];
+            }
+        }
+        return sessionFileExtensions[0];
+    }
+
 }
@@ -4,7 +4,7 @@ import mvc.view.components.shapes.GeneShape;
 import mvc.view.events.DoubleClickGeneEvent;
 import mvc.view.graphics.GeneColors;
 import model.genomes.GenomesInfo;
-import model.genomes.Taxon;
+import model.genomes.TaxonomyIndex;
 import model.patterns.Pattern;
 import mvc.view.events.TooltipGeneEvent;
 import mvc.view.listeners.Listener;
@@ -42,8 +42,8 @@ public class MiddlePanel extends JPanel {
         viewInstancesPanel.setGenomesInfo(genomesInfo);
     }
 
-    public void setGenomeToTaxa(Map<String, Taxon> genomeToTaxa){
-        taxaPanel.setGenomeToTaxa(genomeToTaxa);
+    public void setTaxonomy(TaxonomyIndex taxonomy){
+        taxaPanel.setTaxonomy(taxonomy);
     }
 
     public void setGenomeMetadata(String[] columnNames, Map<String, Object[]> genomeToMetadata){
@@ -1,6 +1,7 @@
 package mvc.view.components.panels;
 
 import model.genomes.Taxon;
+import model.genomes.TaxonomyIndex;
 
 import javax.swing.*;
 
@@ -12,7 +13,6 @@ import java.util.List;
 
 public class TaxaPanel extends JPanel{
 
-    private static final int NUM_OF_LEVELS = 4;
     private static final int NUM_OF_LEVELS_TO_DISPLAY = 3;
     private JTree tree;
     private DefaultTreeModel model;
@@ -20,13 +20,13 @@ public class TaxaPanel extends JPanel{
     private JLabel text;
 
     private DefaultMutableTreeNode topNode;
-    private Map<String, Taxon> genomeToTaxa;
+    private TaxonomyIndex taxonomy;
 
     public TaxaPanel(){
 
         super(new BorderLayout());
 
-        genomeToTaxa = new HashMap<>();
+        taxonomy = new TaxonomyIndex();
 
         topNode = new DefaultMutableTreeNode("");
         model = new DefaultTreeModel(topNode);
@@ -52,23 +52,49 @@ public class TaxaPanel extends JPanel{
     }
 
 
-    public void setGenomeToTaxa(Map<String, Taxon> genomeToTaxa) {
-        this.genomeToTaxa = genomeToTaxa;
+    public void setTaxonomy(TaxonomyIndex taxonomy) {
+        this.taxonomy = taxonomy;
     }
 
 
     public void displayTaxa(List<String> genomeNames) {
-        if (genomeToTaxa.size() == 0){
+        if (taxonomy.size() == 0){
             return;
         }
 
         topNode.removeAllChildren();
 
-        for (String genomeName : genomeNames){
-            Taxon taxon = genomeToTaxa.getOrDefault(genomeName, new Taxon());
+        int[][] genomesCounts = taxonomy.countGenomes(genomeNames);
 
-            insertInto(genomeName, taxon, 0, topNode);
+        //the nodes of the taxa of the previous level, by taxon id
+        DefaultMutableTreeNode[] parentNodes = null;
+        for (int level = 0; level < TaxonomyIndex.LEVELS_COUNT; level++) {
 
+            List<Integer> taxonIds = new ArrayList<>();
+            for (int taxonId = 0; taxonId < genomesCounts[level].length; taxonId++) {
+                if (genomesCounts[level][taxonId] > 0) {
+                    taxonIds.add(taxonId);
+                }
+            }
+            //ordered alphabetically
+            final int currLevel = level;
+            taxonIds.sort(Comparator.comparing(taxonId -> taxonomy.getTaxonName(currLevel, taxonId)));
+
+            DefaultMutableTreeNode[] nodes = new DefaultMutableTreeNode[genomesCounts[level].length];
+            for (int taxonId : taxonIds) {
+                nodes[taxonId] = new DefaultMutableTreeNode(new TaxaInfo(level, taxonId,
+                        genomesCounts[level][taxonId]));
+
+                DefaultMutableTreeNode parentNode = parentNodes == null ? topNode
+                        : parentNodes[taxonomy.getParentId(level, taxonId)];
+                parentNode.add(nodes[taxonId]);
+            }
+            parentNodes = nodes;
+        }
+
+        for (String genomeName : genomeNames) {
+            int taxonId = taxonomy.getTaxonId(TaxonomyIndex.LEVELS_COUNT - 1, genomeName);
+            parentNodes[taxonId].add(new DefaultMutableTreeNode(genomeName));
         }
 
         model.reload();
@@ -95,43 +121,6 @@ public class TaxaPanel extends JPanel{
 
     }
 
-    private void insertInto(String genomeName, Taxon taxon, int taxaLevel, DefaultMutableTreeNode node){
-
-        if (taxaLevel > NUM_OF_LEVELS) {
-            DefaultMutableTreeNode genome = new DefaultMutableTreeNode(genomeName);
-            model.insertNodeInto(genome, node, node.getChildCount());
-
-            return;
-        }
-
-        tree.expandPath(new TreePath(node.getPath()));
-
-        DefaultMutableTreeNode nextNode = null;
-        DefaultMutableTreeNode child;
-
-        for (int i = 0; i < node.getChildCount() & nextNode == null; i++) {
-            child = (DefaultMutableTreeNode) node.getChildAt(i);
-            TaxaInfo taxaInfo = (TaxaInfo) child.getUserObject();
-
-            if (taxaInfo.taxaName.equals(taxon.getTaxaAtLevel(taxaLevel))) {
-                taxaInfo.incrementGenomesCount();
-                nextNode = child;
-                //insert ordered alphabetically
-            }else if (taxaInfo.taxaName.compareTo(taxon.getTaxaAtLevel(taxaLevel)) > 0){
-                nextNode = new DefaultMutableTreeNode(new TaxaInfo(taxon.getTaxaAtLevel(taxaLevel), 1));
-                model.insertNodeInto(nextNode, node, i);
-            }
-        }
-
-        if (nextNode == null){
-            nextNode = new DefaultMutableTreeNode(new TaxaInfo(taxon.getTaxaAtLevel(taxaLevel), 1));
-            model.insertNodeInto(nextNode, node, node.getChildCount());
-        }
-
-        insertInto(genomeName, taxon, taxaLevel+1, nextNode);
-
-    }
-
     public void setText(String text){
         this.text.setText(text);
     }
@@ -148,15 +137,19 @@ public class TaxaPanel extends JPanel{
     private class TaxaInfo {
         public String taxaName;
         public int genomesCount;
+        /**
+         * The number of genomes of the taxonomy in the taxon, or -1 if the genomes are not in the taxonomy
+         */
+        public int totalTaxa;
 
-        public TaxaInfo(String taxaName, int genomesCount) {
-            this.taxaName = taxaName;
+        public TaxaInfo(int level, int taxonId, int genomesCount) {
+            this.taxaName = taxonomy.getTaxonName(level, taxonId);
             this.genomesCount = genomesCount;
+
+            totalTaxa = taxaName.equals(Taxon.NO_TAXA) ? -1 : taxonomy.getGenomesCount(level, taxonId);
         }
 
         public String toString() {
-            int totalTaxa = Taxon.getTaxaCount(taxaName);
-
             String text = String.format("%s [%s]", taxaName, genomesCount);
             if (totalTaxa != -1){
                 text = String.format("%s [%s/%s]", taxaName, genomesCount, totalTaxa);
@@ -164,15 +157,6 @@ public class TaxaPanel extends JPanel{
 
             return text;
         }
-
-        public void setGenomesCount(int genomesCount){
-            this.genomesCount = genomesCount;
-        }
-
-        public void incrementGenomesCount(){
-            this.genomesCount += 1;
-        }
     }
 
 }
-
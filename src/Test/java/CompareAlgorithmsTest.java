@@ -4,12 +4,17 @@ import model.CSBFinderWorkflow;
 import model.genomes.GenomesInfo;
 import model.Parameters;
 import model.patterns.Pattern;
+import model.patterns.PatternKey;
 import model.postprocess.Family;
 import io.Parsers;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +27,7 @@ public class CompareAlgorithmsTest {
     private final String GENOMES_FILE_PATH4 = this.getClass().getResource("/genomes6.fasta").getPath();
     private final String GENOMES_FILE_PATH5 = this.getClass().getResource("/genomes7.fasta").getPath();
     private final String GENOMES_FILE_PATH6 = this.getClass().getResource("/genomes8.fasta").getPath();
+    private final String GENOMES_FILE_PATH7 = this.getClass().getResource("/genomes14.fasta").getPath();
     private final String REF_GENOMES_FILE_PATH = this.getClass().getResource("/ref_genomes.txt").getPath();
     private final String PATTERNS_FILE_PATH = this.getClass().getResource("/patterns3.fasta").getPath();
     private final String PATTERNS_FILE_PATH2 = this.getClass().getResource("/patterns4.fasta").getPath();
@@ -121,6 +127,54 @@ public class CompareAlgorithmsTest {
 
     }
 
+    @Test
+    public void testCrossStrandPatternsInCanonicalOrientation() throws Exception {
+        for (AlgorithmType algorithmType : AlgorithmType.values()) {
+            Parameters params = new Parameters();
+            params.quorum2 = 10;
+            params.crossStrand = true;
+            params.maxInsertion = 1;
+
+            List<Pattern> patterns = runAlgorithm(algorithmType.getAlgorithm(), PLASMID_GENOMES_FILE_PATH, params);
+
+            Set<PatternKey> keys = new HashSet<>();
+            for (Pattern pattern : patterns) {
+                Assert.assertTrue(pattern.isCanonical());
+                Assert.assertTrue(keys.add(pattern.getKey()));
+            }
+            for (Pattern pattern : patterns) {
+                Assert.assertTrue(pattern.getKey().equals(pattern.getReverseComplimentKey())
+                        || !keys.contains(pattern.getReverseComplimentKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testCrossStrandPalindromes() throws Exception {
+        Parameters params = new Parameters();
+        params.quorum2 = 3;
+        params.crossStrand = true;
+
+        List<Pattern> patternsAlg1 = runAlgorithm(AlgorithmType.SUFFIX_TREE.getAlgorithm(), GENOMES_FILE_PATH7, params);
+
+        List<Pattern> patternsAlg2 = runAlgorithm(AlgorithmType.MATCH_POINTS.getAlgorithm(), GENOMES_FILE_PATH7, params);
+
+        comparePatterns(patternsAlg1, patternsAlg2);
+
+        for (List<Pattern> patterns : Arrays.asList(patternsAlg1, patternsAlg2)) {
+            Set<String> patternStrings = patterns.stream().map(Pattern::toString).collect(Collectors.toSet());
+            //the palindrome equals its reverse compliment and is reported once
+            Assert.assertTrue(patternStrings.contains("COG0001+,COG0002+,COG0002-,COG0001-"));
+            //its sub-patterns have the same instances
+            Assert.assertFalse(patternStrings.contains("COG0001+,COG0002+"));
+            Assert.assertFalse(patternStrings.contains("COG0002-,COG0001-"));
+            //the pattern is found in both orientations, and kept in the canonical one
+            Assert.assertTrue(patternStrings.contains("COG0003+,COG0004+"));
+            Assert.assertFalse(patternStrings.contains("COG0004-,COG0003-"));
+            Assert.assertEquals(2, patterns.size());
+        }
+    }
+
     @Test
     public void testRealDatasetEqualOutput() throws Exception {
         Parameters params = new Parameters();
@@ -158,6 +212,48 @@ public class CompareAlgorithmsTest {
 
     }
 
+    @Test
+    public void testTopKEqualsTopScoringPatterns() throws Exception {
+        //with q=2 and k=100 some of the top 100 patterns are redundant sub-patterns, which are removed before the
+        // top K patterns are selected
+        int[][] quorumAndK = {{5, 20}, {2, 100}};
+
+        for (int[] test : quorumAndK) {
+            int k = test[1];
+            for (AlgorithmType algorithmType : AlgorithmType.values()) {
+                Parameters params = new Parameters();
+                params.quorum2 = test[0];
+                params.maxInsertion = 1;
+                params.skipClusterStep = true;
+
+                List<Double> allScores = runWorkflowScores(algorithmType, PLASMID_GENOMES_FILE_PATH, params);
+
+                params.topK = k;
+                List<Double> topKScores = runWorkflowScores(algorithmType, PLASMID_GENOMES_FILE_PATH, params);
+
+                Assert.assertEquals(allScores.subList(0, k), topKScores);
+
+                if (test[0] == 2) {
+                    params.keepAllPatterns = true;
+                    List<Double> topKScoresWithRedundant = runWorkflowScores(algorithmType,
+                            PLASMID_GENOMES_FILE_PATH, params);
+                    Assert.assertNotEquals(topKScores, topKScoresWithRedundant);
+                }
+            }
+        }
+    }
+
+    private List<Double> runWorkflowScores(AlgorithmType algorithmType, String genomesFile, Parameters params)
+            throws Exception{
+
+        GenomesInfo gi = Parsers.parseGenomesFile(genomesFile, params.circular);
+        CSBFinderWorkflow workflow = new CSBFinderWorkflow(gi);
+        workflow.setAlgorithm(algorithmType.getAlgorithm());
+        workflow.run(params);
+
+        return workflow.getFamilies().stream().map(Family::getPatterns).flatMap(List::stream)
+                .map(Pattern::getScore).sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+    }
 
     private void comparePatterns(List<Pattern> patternsAlg1, List<Pattern> patternsAlg2){
         Assert.assertEquals(patternsAlg1.size(), patternsAlg2.size());
@@ -1,7 +1,23 @@
+import io.Parsers;
+import model.Algorithm;
+import model.CSBFinderWorkflow;
 import model.Controller;
+import model.Parameters;
+import model.genomes.GenomesInfo;
+import model.matchpointsbased.MatchPointAlgorithm;
+import model.patterns.Pattern;
+import model.postprocess.Family;
+import model.suffixtreebased.SuffixTreeAlgorithm;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 public class ControllerTest {
 
     private final String PLASMID_GENOMES_FILE_PATH = this.getClass().getResource("/plasmid_genomes.fasta").getPath();
@@ -19,4 +35,95 @@ public class ControllerTest {
 
         Assert.assertEquals(numOfCsbs, controller.getPrintedCSBs());
     }
+
+    @Test
+    public void testStreamedOutputEqualsOutput() throws IOException {
+        Path outputDir = Files.createTempDirectory("output");
+        Path streamedOutputDir = Files.createTempDirectory("streamed");
+
+        String[] args = {"-in", PLASMID_GENOMES_FILE_PATH,
+                "-q", "5",
+                "-skip-cluster-step",
+                "-out", "TXT",
+                "-out-dir", outputDir.toString()};
+        Controller controller = new Controller(args);
+
+        String[] streamedArgs = {"-in", PLASMID_GENOMES_FILE_PATH,
+                "-q", "5",
+                "-skip-cluster-step",
+                "-out", "TXT",
+                "-out-dir", streamedOutputDir.toString(),
+                "-stream-output"};
+        Controller streamedController = new Controller(streamedArgs);
+
+        Assert.assertEquals(controller.getPrintedCSBs(), streamedController.getPrintedCSBs());
+
+        //the streamed CSBs are not sorted by score
+        Assert.assertEquals(readSortedLines(outputDir, "dataset1.txt"),
+                readSortedLines(streamedOutputDir, "dataset1.txt"));
+        Assert.assertEquals(readSortedLines(outputDir, "dataset1_instances.fasta"),
+                readSortedLines(streamedOutputDir, "dataset1_instances.fasta"));
+    }
+
+    @Test
+    public void testStreamedOutputBeginsDuringExtraction() throws Exception {
+        for (boolean crossStrand : new boolean[]{false, true}) {
+            //set when the search of the algorithm ends
+            boolean[] extractionEnded = new boolean[1];
+            Algorithm[] algorithms = {
+                    new SuffixTreeAlgorithm() {
+                        @Override
+                        public void findPatterns() {
+                            super.findPatterns();
+                            extractionEnded[0] = true;
+                        }
+                    },
+                    new MatchPointAlgorithm() {
+                        @Override
+                        public void findPatterns() {
+                            super.findPatterns();
+                            extractionEnded[0] = true;
+                        }
+                    }};
+
+            for (Algorithm algorithm : algorithms) {
+                Parameters params = new Parameters();
+                params.quorum2 = 5;
+                params.keepAllPatterns = true;
+                params.skipClusterStep = true;
+                params.crossStrand = crossStrand;
+                params.procCount = 1;
+
+                GenomesInfo gi = Parsers.parseGenomesFile(PLASMID_GENOMES_FILE_PATH, params.circular);
+                CSBFinderWorkflow workflow = new CSBFinderWorkflow(gi);
+                workflow.setAlgorithm(algorithm);
+                workflow.run(params);
+                Map<String, Integer> expected = new HashMap<>();
+                workflow.getFamilies().get(0).getPatterns().forEach(pattern -> expected.put(pattern.toString(),
+                        pattern.getPatternLocations().getInstanceLocations().size()));
+
+                extractionEnded[0] = false;
+                List<Boolean> batchesDuringExtraction = new ArrayList<>();
+                Map<String, Integer> streamed = new HashMap<>();
+                workflow.run(params, family -> {
+                    batchesDuringExtraction.add(!extractionEnded[0]);
+                    //the locations are sorted as the writers sort them, while the search goes on
+                    family.getPatterns().forEach(pattern -> Assert.assertNull(streamed.put(pattern.toString(),
+                            pattern.getPatternLocations().getSortedLocations().size())));
+                });
+
+                Assert.assertTrue(batchesDuringExtraction.size() > 1);
+                Assert.assertTrue(batchesDuringExtraction.get(0));
+                Assert.assertEquals(expected, streamed);
+            }
+        }
+    }
+
+    private List<String> readSortedLines(Path outputDir, String fileName) throws IOException {
+        try (Stream<Path> files = Files.walk(outputDir)) {
+            Path file = files.filter(path -> path.getFileName().toString().equals(fileName)).findFirst().get();
+            file.toFile().deleteOnExit();
+            return Files.readAllLines(file).stream().sorted().collect(Collectors.toList());
+        }
+    }
 }
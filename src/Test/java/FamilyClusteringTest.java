@@ -0,0 +1,364 @@
+import io.Parsers;
+import model.AlgorithmType;
+import model.CSBFinderWorkflow;
+import model.ClusterBy;
+import model.ClusterDenominator;
+import model.Parameters;
+import model.genomes.Gene;
+import model.genomes.GenomesInfo;
+import model.genomes.Strand;
+import model.patterns.Pattern;
+import model.postprocess.ClusteringCache;
+import model.postprocess.Family;
+import model.postprocess.FamilyClustering;
+import model.postprocess.LshFamilyClustering;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.*;
+
+/**
+ */
+public class FamilyClusteringTest {
+
+    private final String PLASMID_GENOMES_FILE_PATH = this.getClass().getResource("/plasmid_genomes.fasta").getPath();
+
+    private static final double[] THRESHOLDS = {0, 0.3, 0.5, 0.8, 1};
+
+    private GenomesInfo gi;
+    private List<Pattern> patterns;
+
+    @Before
+    public void setUp() throws Exception {
+        Parameters params = new Parameters();
+        params.quorum2 = 5;
+        params.maxInsertion = 1;
+        params.skipClusterStep = true;
+
+        gi = Parsers.parseGenomesFile(PLASMID_GENOMES_FILE_PATH, params.circular);
+        CSBFinderWorkflow workflow = new CSBFinderWorkflow(gi);
+        workflow.setAlgorithm(AlgorithmType.SUFFIX_TREE.getAlgorithm());
+        workflow.run(params);
+
+        patterns = workflow.getFamilies().get(0).getPatterns();
+    }
+
+    @Test
+    public void testClusteringEqualsGreedyClustering() {
+
+        for (ClusterDenominator clusterDenominator : ClusterDenominator.values()) {
+            for (double threshold : THRESHOLDS) {
+
+                List<Family> expected = naiveGreedyClustering(new ArrayList<>(patterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator);
+                List<Family> families = FamilyClustering.Cluster(new ArrayList<>(patterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator, gi);
+
+                compareFamilies(expected, families);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelClusteringEqualsClustering() {
+
+        for (ClusterDenominator clusterDenominator : ClusterDenominator.values()) {
+            for (double threshold : THRESHOLDS) {
+
+                List<Family> expected = FamilyClustering.Cluster(new ArrayList<>(patterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator, gi);
+                List<Family> families = FamilyClustering.Cluster(new ArrayList<>(patterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator, gi, 4);
+
+                compareFamilies(expected, families);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelClusteringEqualsClusteringOnLargerDataset() throws Exception {
+        Parameters params = new Parameters();
+        params.quorum2 = 2;
+        params.maxInsertion = 1;
+        params.skipClusterStep = true;
+
+        CSBFinderWorkflow workflow = new CSBFinderWorkflow(gi);
+        workflow.setAlgorithm(AlgorithmType.SUFFIX_TREE.getAlgorithm());
+        workflow.run(params);
+        List<Pattern> largerPatterns = workflow.getFamilies().get(0).getPatterns();
+
+        //several blocks of patterns, whose size is not a multiple of the block size of 3 threads
+        Assert.assertTrue(largerPatterns.size() > 4 * 512 * 3);
+
+        for (ClusterBy clusterBy : ClusterBy.values()) {
+            for (ClusterDenominator clusterDenominator : ClusterDenominator.values()) {
+                for (double threshold : new double[]{0.3, 0.5, 0.8, 1}) {
+
+                    List<Family> expected = FamilyClustering.Cluster(new ArrayList<>(largerPatterns), threshold,
+                            clusterBy, clusterDenominator, gi);
+                    for (int numOfThreads : new int[]{2, 3, 8}) {
+                        List<Family> families = FamilyClustering.Cluster(new ArrayList<>(largerPatterns),
+                                threshold, clusterBy, clusterDenominator, gi, numOfThreads);
+
+                        compareFamilies(expected, families);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallelClusteringEqualsClusteringWhenFamiliesGrow() {
+
+        //random patterns over few orthology groups, so that most families grow within each block
+        List<String> cogIds = new ArrayList<>();
+        for (Pattern pattern : patterns) {
+            for (Gene gene : pattern.getPatternGenes()) {
+                if (!cogIds.contains(gene.getCogId()) && cogIds.size() < 40) {
+                    cogIds.add(gene.getCogId());
+                }
+            }
+        }
+
+        Random random = new Random(29);
+        List<Pattern> randomPatterns = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Gene[] genes = new Gene[2 + random.nextInt(5)];
+            for (int j = 0; j < genes.length; j++) {
+                genes[j] = new Gene(cogIds.get(random.nextInt(cogIds.size())), Strand.FORWARD);
+            }
+            Pattern pattern = new Pattern(Integer.toString(i), genes);
+            pattern.setScore(random.nextDouble());
+            randomPatterns.add(pattern);
+        }
+
+        for (ClusterDenominator clusterDenominator : ClusterDenominator.values()) {
+            for (double threshold : THRESHOLDS) {
+
+                List<Family> expected = FamilyClustering.Cluster(new ArrayList<>(randomPatterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator, gi);
+                for (int numOfThreads : new int[]{2, 4}) {
+                    List<Family> families = FamilyClustering.Cluster(new ArrayList<>(randomPatterns), threshold,
+                            ClusterBy.SCORE, clusterDenominator, gi, numOfThreads);
+
+                    compareFamilies(expected, families);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCachedClusteringEqualsClustering() {
+
+        ClusteringCache cache = new ClusteringCache(THRESHOLDS.length * ClusterDenominator.values().length);
+        List<Pattern> cachedPatterns = new ArrayList<>(patterns);
+
+        for (int sweep = 0; sweep < 2; sweep++) {
+            for (ClusterDenominator clusterDenominator : ClusterDenominator.values()) {
+                for (double threshold : THRESHOLDS) {
+
+                    List<Family> expected = FamilyClustering.Cluster(new ArrayList<>(patterns), threshold,
+                            ClusterBy.SCORE, clusterDenominator, gi);
+                    List<Family> families = FamilyClustering.Cluster(cachedPatterns, threshold,
+                            ClusterBy.SCORE, clusterDenominator, gi, 1, cache);
+
+                    compareFamilies(expected, families);
+                }
+            }
+        }
+
+        //repeated settings are answered from the memo, the other settings after the first one from the shared genes
+        int settingsCount = THRESHOLDS.length * ClusterDenominator.values().length;
+        Assert.assertEquals(settingsCount, cache.getHits());
+        Assert.assertEquals(settingsCount, cache.getMisses());
+        Assert.assertEquals(1, cache.getIntersectionsComputations());
+        Assert.assertEquals(settingsCount - 1, cache.getIntersectionsClusterings());
+    }
+
+    @Test
+    public void testClusteringFromIntersectionsEqualsClustering() {
+
+        ClusteringCache cache = new ClusteringCache(0);
+        List<Pattern> cachedPatterns = new ArrayList<>(patterns);
+
+        for (ClusterBy clusterBy : ClusterBy.values()) {
+            for (ClusterDenominator clusterDenominator : ClusterDenominator.values()) {
+                for (double threshold : new double[]{-0.1, 0, 0.1, 0.25, 0.3, 1.0 / 3, 0.5, 2.0 / 3, 0.75, 0.8, 1}) {
+
+                    //sorted from the same order, so that ties are in the same order
+                    List<Family> expected = FamilyClustering.Cluster(new ArrayList<>(cachedPatterns), threshold,
+                            clusterBy, clusterDenominator, gi);
+                    List<Family> families = FamilyClustering.Cluster(cachedPatterns, threshold,
+                            clusterBy, clusterDenominator, gi, 1, cache);
+
+                    compareFamilies(expected, families);
+                }
+            }
+        }
+
+        //computed again when the order of the patterns changes
+        Assert.assertEquals(ClusterBy.values().length, cache.getIntersectionsComputations());
+    }
+
+    @Test
+    public void testLshClusteringApproximatesClustering() {
+
+        for (ClusterDenominator clusterDenominator : ClusterDenominator.values()) {
+            for (double threshold : THRESHOLDS) {
+
+                List<Family> expected = FamilyClustering.Cluster(new ArrayList<>(patterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator, gi);
+                List<Family> families = LshFamilyClustering.Cluster(new ArrayList<>(patterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator, gi);
+
+                List<Pattern> clusteredPatterns = new ArrayList<>();
+                families.forEach(family -> clusteredPatterns.addAll(family.getPatterns()));
+                Assert.assertEquals(patterns.size(), clusteredPatterns.size());
+                Assert.assertEquals(new HashSet<>(patterns), new HashSet<>(clusteredPatterns));
+
+                Assert.assertTrue(families.size() >= expected.size() * 0.85);
+                Assert.assertTrue(families.size() <= expected.size() * 1.15);
+            }
+        }
+    }
+
+    @Test
+    public void testLshClusteringEqualsClusteringAtHighThreshold() {
+
+        for (ClusterDenominator clusterDenominator : ClusterDenominator.values()) {
+            for (double threshold : new double[]{0.8, 0.9, 1}) {
+
+                List<Family> expected = FamilyClustering.Cluster(new ArrayList<>(patterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator, gi);
+                List<Family> families = LshFamilyClustering.Cluster(new ArrayList<>(patterns), threshold,
+                        ClusterBy.SCORE, clusterDenominator, gi);
+
+                if (clusterDenominator == ClusterDenominator.MIN_SET) {
+                    //a pattern that passes the threshold may have a low Jaccard similarity with the family members,
+                    // so it may be missed
+                    Set<Set<Pattern>> expectedFamilies = new HashSet<>();
+                    expected.forEach(family -> expectedFamilies.add(new HashSet<>(family.getPatterns())));
+                    int patternsInSameFamilies = 0;
+                    for (Family family : families) {
+                        if (expectedFamilies.contains(new HashSet<>(family.getPatterns()))) {
+                            patternsInSameFamilies += family.getPatterns().size();
+                        }
+                    }
+                    Assert.assertTrue(patternsInSameFamilies >= patterns.size() * 0.95);
+                } else {
+                    compareFamilies(expected, families);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLshPairMissProbability() {
+
+        Assert.assertEquals(0.8, LshFamilyClustering.getMinJaccardSimilarity(0.8, ClusterDenominator.UNION), 1e-9);
+        Assert.assertEquals(0.8 / 1.2, LshFamilyClustering.getMinJaccardSimilarity(0.8, ClusterDenominator.MAX_SET),
+                1e-9);
+        Assert.assertEquals(0, LshFamilyClustering.getMinJaccardSimilarity(0.8, ClusterDenominator.MIN_SET), 0);
+        Assert.assertEquals(1, LshFamilyClustering.getPairMissProbability(0.8, ClusterDenominator.MIN_SET), 0);
+        Assert.assertEquals(Math.pow(1 - 0.8 * 0.8, LshFamilyClustering.BANDS),
+                LshFamilyClustering.getPairMissProbability(0.8, ClusterDenominator.UNION), 1e-20);
+        Assert.assertEquals(0, LshFamilyClustering.getPairMissProbability(1, ClusterDenominator.MAX_SET), 0);
+
+        //every pair of patterns that passes the threshold has at least the Jaccard similarity of the bound
+        List<Set<Integer>> geneSets = new ArrayList<>();
+        patterns.forEach(pattern -> geneSets.add(getGenesSet(pattern)));
+        for (ClusterDenominator clusterDenominator : new ClusterDenominator[]{ClusterDenominator.MAX_SET,
+                ClusterDenominator.UNION}) {
+            for (double threshold : THRESHOLDS) {
+                double minJaccardSimilarity = LshFamilyClustering.getMinJaccardSimilarity(threshold,
+                        clusterDenominator);
+                for (int i = 0; i < geneSets.size(); i++) {
+                    for (int j = 0; j < i; j++) {
+                        Set<Integer> intersection = new HashSet<>(geneSets.get(i));
+                        intersection.retainAll(geneSets.get(j));
+                        Set<Integer> union = new HashSet<>(geneSets.get(i));
+                        union.addAll(geneSets.get(j));
+                        int denominator = clusterDenominator == ClusterDenominator.UNION ? union.size()
+                                : Math.max(geneSets.get(i).size(), geneSets.get(j).size());
+
+                        if (intersection.size() / (double) denominator >= threshold) {
+                            Assert.assertTrue(intersection.size() / (double) union.size()
+                                    >= minJaccardSimilarity - 1e-9);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void compareFamilies(List<Family> expected, List<Family> families){
+        Assert.assertEquals(expected.size(), families.size());
+
+        Map<Integer, Family> familiesById = new HashMap<>();
+        families.forEach(family -> familiesById.put(family.getFamilyId(), family));
+
+        for (Family expectedFamily : expected) {
+            Family family = familiesById.get(expectedFamily.getFamilyId());
+            Assert.assertNotNull(family);
+            Assert.assertEquals(new HashSet<>(expectedFamily.getPatterns()), new HashSet<>(family.getPatterns()));
+            Assert.assertEquals(expectedFamily.getGeneSet(), family.getGeneSet());
+        }
+    }
+
+    /**
+     * Compares every pattern to every existing family, in order of creation
+     */
+    private List<Family> naiveGreedyClustering(List<Pattern> patterns, double threshold, ClusterBy clusterBy,
+                                               ClusterDenominator clusterDenominator){
+        patterns.sort(clusterBy.patternComparator);
+
+        List<Family> families = new ArrayList<>();
+        for (Pattern pattern : patterns) {
+            Set<Integer> patternSet = getGenesSet(pattern);
+
+            boolean added = false;
+            for (Family family : families) {
+                Set<Integer> familySet = family.getGeneSet();
+
+                double currThreshold = threshold;
+                int denominator = 1;
+                if (clusterDenominator == ClusterDenominator.MIN_SET) {
+                    denominator = Math.min(familySet.size(), patternSet.size());
+                    currThreshold = denominator >= 1 && denominator <= 2 ? 1 : threshold;
+                } else if (clusterDenominator == ClusterDenominator.MAX_SET) {
+                    denominator = Math.max(familySet.size(), patternSet.size());
+                } else {
+                    Set<Integer> union = new HashSet<>(patternSet);
+                    union.addAll(familySet);
+                    denominator = union.size();
+                }
+
+                Set<Integer> intersection = new HashSet<>(patternSet);
+                intersection.retainAll(familySet);
+
+                if (intersection.size() / (double) denominator >= currThreshold) {
+                    family.addPattern(pattern);
+                    added = true;
+                    break;
+                }
+            }
+
+            if (!added) {
+                families.add(new Family(families.size(), pattern, gi));
+            }
+        }
+        return families;
+    }
+
+    private Set<Integer> getGenesSet(Pattern pattern){
+        Set<Integer> genes = new HashSet<>();
+        for (Gene gene : pattern.getPatternGenes()) {
+            int letter = gi.getLetter(new Gene(gene.getCogId(), Strand.INVALID));
+            if (letter != -1) {
+                genes.add(letter);
+            }
+        }
+        return genes;
+    }
+}
@@ -1,10 +1,24 @@
+import io.BinaryGenomesFile;
+import io.GenomesFileParser;
+import io.InputFiles;
 import io.Parsers;
-import model.genomes.GenomesInfo;
+import model.genomes.*;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.zip.GZIPOutputStream;
+
 public class GenomeParsingTest {
     private final String GENOMES_FILE_PATH = this.getClass().getResource("/genomes.fasta").getPath();
+    private final String PLASMID_GENOMES_FILE_PATH = this.getClass().getResource("/plasmid_genomes.fasta").getPath();
 
     @Test
     public void testRefGenomesEqualOutput() throws Exception {
@@ -15,4 +29,257 @@ public class GenomeParsingTest {
         double DELTA = 0.001;
         Assert.assertEquals(0.8, gi.getGenomesDistance(0, 1), DELTA);
     }
+
+    @Test
+    public void testParallelParsingEqualsParsing() throws Exception {
+
+        GenomesInfo expected = Parsers.parseGenomesFileLineByLine(PLASMID_GENOMES_FILE_PATH, false);
+        //small chunks, so that many replicons are parsed by different threads
+        GenomesInfo gi = new GenomesFileParser(4, 4096).parse(PLASMID_GENOMES_FILE_PATH, false);
+
+        assertSameGenomes(expected, gi);
+    }
+
+    @Test
+    public void testParallelParsingWithChunkBoundariesInsideRecords() throws Exception {
+
+        //the first replicon is much longer than the chunks, so chunk boundaries fall inside it and are moved to the
+        //next title, and a genome has replicons in different chunks
+        List<String> lines = new ArrayList<>();
+        addReplicon(lines, "genome1|replicon1", 300);
+        addReplicon(lines, "genome2|replicon1", 3);
+        addReplicon(lines, "genome1|replicon2", 40);
+        addReplicon(lines, "genome3|replicon1", 1);
+        addReplicon(lines, "genome2|replicon2", 120);
+        String filePath = writeGenomesFile(lines);
+
+        GenomesInfo expected = Parsers.parseGenomesFileLineByLine(filePath, true);
+        for (long chunkSize : new long[]{1, 13, 100, 1000, 1 << 20}) {
+            GenomesInfo gi = new GenomesFileParser(4, chunkSize).parse(filePath, true);
+
+            assertSameGenomes(expected, gi);
+        }
+    }
+
+    @Test
+    public void testParallelParsingErrorEqualsParsingError() throws Exception {
+
+        //a gene line without a strand, a gene line with an invalid strand and a title without a replicon name,
+        //each in a late chunk of the file
+        String[] invalidLines = {"COG0003", "COG0003\t*", ">genome4"};
+        for (String invalidLine : invalidLines) {
+            List<String> lines = new ArrayList<>();
+            addReplicon(lines, "genome1|replicon1", 200);
+            addReplicon(lines, "genome2|replicon1", 50);
+            lines.add(lines.size() - 20, invalidLine);
+            addReplicon(lines, "genome3|replicon1", 50);
+            String filePath = writeGenomesFile(lines);
+
+            String expected = getParsingError(() -> Parsers.parseGenomesFileLineByLine(filePath, false));
+            Assert.assertTrue(expected, expected.endsWith("line " + (lines.indexOf(invalidLine) + 1)));
+            for (long chunkSize : new long[]{1, 100, 1 << 20}) {
+                String error = getParsingError(() -> new GenomesFileParser(4, chunkSize).parse(filePath, false));
+
+                Assert.assertEquals(expected, error);
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryGenomesFileEqualsGenomesFile() throws Exception {
+
+        GenomesInfo expected = Parsers.parseGenomesFile(PLASMID_GENOMES_FILE_PATH, false);
+
+        File binaryFile = File.createTempFile("plasmid_genomes", ".csbg");
+        binaryFile.deleteOnExit();
+        BinaryGenomesFile.write(expected, binaryFile.getPath());
+
+        Assert.assertTrue(BinaryGenomesFile.isBinaryGenomesFile(binaryFile.getPath()));
+        Assert.assertFalse(BinaryGenomesFile.isBinaryGenomesFile(PLASMID_GENOMES_FILE_PATH));
+
+        GenomesInfo gi = Parsers.parseGenomesFile(binaryFile.getPath(), false);
+
+        assertSameGenomes(expected, gi);
+    }
+
+    @Test
+    public void testGzipGenomesFileEqualsGenomesFile() throws Exception {
+
+        GenomesInfo expected = Parsers.parseGenomesFile(PLASMID_GENOMES_FILE_PATH, false);
+
+        File gzipFile = File.createTempFile("plasmid_genomes", ".fasta.gz");
+        gzipFile.deleteOnExit();
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gzipFile))) {
+            Files.copy(Paths.get(PLASMID_GENOMES_FILE_PATH), out);
+        }
+
+        GenomesInfo gi = Parsers.parseGenomesFile(gzipFile.getPath(), false);
+
+        assertSameGenomes(expected, gi);
+    }
+
+    @Test
+    public void testCloseGzipFileBeforeEnd() throws Exception {
+
+        File gzipFile = File.createTempFile("plasmid_genomes", ".fasta.gz");
+        gzipFile.deleteOnExit();
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gzipFile))) {
+            Files.copy(Paths.get(PLASMID_GENOMES_FILE_PATH), out);
+        }
+
+        try (BufferedReader br = InputFiles.newBufferedReader(gzipFile.getPath())) {
+            Assert.assertTrue(br.readLine().startsWith(">"));
+        }
+
+        //the decompressing thread stopped before close returned
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            Assert.assertFalse(thread.getName().equals("decompress") && thread.isAlive());
+        }
+    }
+
+    @Test
+    public void testGeneTablePerDataset() throws Exception {
+
+        GenomesInfo expected = Parsers.parseGenomesFile(PLASMID_GENOMES_FILE_PATH, false);
+        GeneTable expectedTable = expected.getGeneTable();
+        int cogsCount = expectedTable.size();
+
+        Parsers.parseGenomesFile(GENOMES_FILE_PATH, false);
+        GenomesInfo gi = new GenomesFileParser(4, 4096).parse(PLASMID_GENOMES_FILE_PATH, false);
+
+        //the table of each dataset holds only its orthology groups, and codes are assigned in the same order
+        Assert.assertNotSame(expectedTable, gi.getGeneTable());
+        Assert.assertEquals(cogsCount, gi.getGeneTable().size());
+        for (Genome expectedGenome : expected.getGenomes()) {
+            for (Replicon expectedReplicon : expectedGenome.getReplicons()) {
+                Replicon replicon = gi.getGenome(expectedGenome.getId())
+                        .getReplicon(expectedReplicon.getRepliconId());
+                for (int i = 0; i < replicon.size(); i++) {
+                    Assert.assertEquals(expectedReplicon.getGeneCode(i), replicon.getGeneCode(i));
+                }
+            }
+        }
+
+        //the dataset that was loaded before keeps its table
+        assertSameGenomes(expected, gi);
+        Gene gene = expected.getGenomes().iterator().next().getReplicons().iterator().next().getGene(0);
+        Assert.assertEquals(expected.getLetter(gene), gi.getLetter(gene));
+    }
+
+    @Test
+    public void testAlphabetLetters() {
+        Alphabet alphabet = new Alphabet(new GeneTable());
+
+        Gene forward = new Gene("COG0001", Strand.FORWARD);
+        Gene reverse = new Gene("COG0001", Strand.REVERSE);
+        Assert.assertEquals(-1, alphabet.getLetter(forward));
+
+        int letter = alphabet.addLetter(reverse);
+        Assert.assertEquals(letter, alphabet.addLetter(reverse));
+        Assert.assertEquals(letter ^ 1, alphabet.getLetter(forward));
+        Assert.assertEquals(reverse, alphabet.getLetter(letter));
+        Assert.assertEquals(forward, alphabet.getLetter(alphabet.getLetter(forward)));
+
+        Assert.assertEquals(Alphabet.GAP_CHAR_INDEX, alphabet.getLetter(new Gene(Alphabet.GAP_CHAR, Strand.FORWARD)));
+        Assert.assertEquals(Alphabet.UNK_CHAR_INDEX, alphabet.getLetter(new Gene(Alphabet.UNK_CHAR, Strand.REVERSE)));
+        Assert.assertEquals(Alphabet.UNK_CHAR_INDEX, alphabet.getLetter(new Gene(Alphabet.UNK_CHAR, Strand.INVALID)));
+        Assert.assertEquals(Alphabet.UNK_CHAR, alphabet.getLetter(Alphabet.UNK_CHAR_INDEX).getCogId());
+
+        //the unknown orthology group does not take a strand of the gap
+        Assert.assertNotEquals(Alphabet.getCogIndex(Alphabet.GAP_CHAR_INDEX), Alphabet.getCogIndex(Alphabet.UNK_CHAR_INDEX));
+        Assert.assertEquals(3, alphabet.alphabetSize());
+        Assert.assertEquals(2, Alphabet.getCogIndex(letter));
+
+        List<Gene> letters = new ArrayList<>();
+        alphabet.getAlphabetLetters().forEachRemaining(letters::add);
+        Assert.assertEquals(5, letters.size());
+    }
+
+    @Test
+    public void testTaxonomyIndex() throws Exception {
+
+        File taxaFile = File.createTempFile("taxa", ".csv");
+        taxaFile.deleteOnExit();
+        Files.write(taxaFile.toPath(), Arrays.asList(
+                "Genome,Kingdom,Phylum,Class,Genus,Species",
+                "g1,Bacteria,Proteobacteria,Gamma,Escherichia,coli",
+                "g2,Bacteria,Proteobacteria,Gamma,Escherichia,albertii",
+                "g3,Bacteria,Firmicutes,Bacilli,Bacillus,subtilis"));
+
+        //reloading the file does not count the genomes twice
+        Parsers.parseTaxaFile(taxaFile.getPath());
+        TaxonomyIndex taxonomy = Parsers.parseTaxaFile(taxaFile.getPath());
+        Assert.assertEquals(3, taxonomy.size());
+
+        int bacteria = taxonomy.getTaxonId(0, "g1");
+        Assert.assertEquals("Bacteria", taxonomy.getTaxonName(0, bacteria));
+        Assert.assertEquals(3, taxonomy.getGenomesCount(0, bacteria));
+        Assert.assertEquals(2, taxonomy.getGenomesCount(3, taxonomy.getTaxonId(3, "g2")));
+        Assert.assertEquals(taxonomy.getTaxonId(2, "g1"),
+                taxonomy.getParentId(3, taxonomy.getTaxonId(3, "g1")));
+
+        int[][] counts = taxonomy.countGenomes(Arrays.asList("g1", "g3", "g4"));
+        Assert.assertEquals(2, counts[0][bacteria]);
+        Assert.assertEquals(1, counts[4][taxonomy.getTaxonId(4, "g1")]);
+        Assert.assertEquals(1, counts[4][TaxonomyIndex.NO_TAXON]);
+        Assert.assertEquals(TaxonomyIndex.NO_TAXON, taxonomy.getTaxonId(4, "g4"));
+        Assert.assertEquals(Taxon.NO_TAXA, taxonomy.getTaxonName(4, TaxonomyIndex.NO_TAXON));
+
+        //replacing the taxon of a genome
+        taxonomy.addGenome("g2", new Taxon("Bacteria", "Firmicutes", "Bacilli", "Bacillus", "cereus"));
+        Assert.assertEquals(1, taxonomy.getGenomesCount(3, taxonomy.getTaxonId(3, "g1")));
+        Assert.assertEquals(3, taxonomy.getGenomesCount(0, bacteria));
+    }
+
+    private static void addReplicon(List<String> lines, String title, int length){
+        lines.add(">" + title);
+        for (int i = 0; i < length; i++) {
+            //orthology groups shared by replicons, unknown genes and both strands
+            lines.add((i % 5 == 0 ? "X" : String.format("COG%04d", i % 17)) + "\t" + (i % 3 == 0 ? "-" : "+"));
+        }
+    }
+
+    private static String writeGenomesFile(List<String> lines) throws Exception {
+        File genomesFile = File.createTempFile("genomes", ".fasta");
+        genomesFile.deleteOnExit();
+        Files.write(genomesFile.toPath(), lines);
+        return genomesFile.getPath();
+    }
+
+    /**
+     * @return the message of the exception thrown for an invalid line
+     */
+    private static String getParsingError(Callable<GenomesInfo> parse) throws Exception {
+        try {
+            parse.call();
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        Assert.fail("An invalid line was parsed");
+        return null;
+    }
+
+    private void assertSameGenomes(GenomesInfo expected, GenomesInfo gi){
+        Assert.assertEquals(expected.getNumberOfGenomes(), gi.getNumberOfGenomes());
+        Assert.assertEquals(expected.getNumberOfReplicons(), gi.getNumberOfReplicons());
+        Assert.assertEquals(expected.getDatasetLengthSum(), gi.getDatasetLengthSum());
+
+        List<Gene> expectedLetters = new ArrayList<>();
+        expected.getAlphabetLetters().forEachRemaining(expectedLetters::add);
+        List<Gene> letters = new ArrayList<>();
+        gi.getAlphabetLetters().forEachRemaining(letters::add);
+        Assert.assertEquals(expectedLetters, letters);
+
+        for (Genome expectedGenome : expected.getGenomes()) {
+            Genome genome = gi.getGenome(expectedGenome.getId());
+            Assert.assertEquals(expectedGenome.getName(), genome.getName());
+            Assert.assertEquals(expectedGenome.getReplicons().size(), genome.getReplicons().size());
+
+            for (Replicon expectedReplicon : expectedGenome.getReplicons()) {
+                Replicon replicon = genome.getReplicon(expectedReplicon.getRepliconId());
+                Assert.assertEquals(expectedReplicon.getName(), replicon.getName());
+                Assert.assertEquals(expectedReplicon.getGenes(), replicon.getGenes());
+            }
+        }
+    }
 }
@@ -1,13 +1,21 @@
 import io.Parsers;
 import model.genomes.GenomesInfo;
+import model.genomes.ParalogCounts;
+import model.genomes.WordArray;
+import model.genomes.Strand;
+import model.patterns.GenomeSet;
+import model.patterns.InstanceLocation;
+import model.patterns.Pattern;
 import model.patterns.PatternScore;
+import model.patterns.ScoreCache;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 
 /**
  */
@@ -27,7 +35,7 @@ public class ScoreTest {
         double epsilon = 0.01;
 
         PatternScore patternScore = new PatternScore(MAX_GENOME_SIZE, NUMBER_OF_GENOMES, DATASET_LENGTH_SUM,
-                new HashMap<>(), new HashMap<>());
+                new ParalogCounts());
 
         double score = patternScore.pvalCrossGenome(PATTERN_LENGTH, MAX_INSERTIONS, PARALOG_FREQUENCY, GENOMES_WITH_INSTANCE);
 
@@ -48,8 +56,7 @@ public class ScoreTest {
         int MAX_INSERTIONS = 0;
         int PARALOG_FREQUENCY = 1;
 
-        PatternScore patternScore = new PatternScore(MAX_GENOME_SIZE, NUMBER_OF_GENOMES, DATASET_LENGTH_SUM, new HashMap<>(),
-                new HashMap<>());
+        PatternScore patternScore = new PatternScore(MAX_GENOME_SIZE, NUMBER_OF_GENOMES, DATASET_LENGTH_SUM, new ParalogCounts());
 
         double score = patternScore.pvalCrossGenome(PATTERN_LENGTH, MAX_INSERTIONS, PARALOG_FREQUENCY, GENOMES_WITH_INSTANCE);
 
@@ -66,8 +73,7 @@ public class ScoreTest {
         int MAX_INSERTIONS = 10;
         int PARALOG_FREQUENCY = 1;
 
-        PatternScore patternScore = new PatternScore(MAX_GENOME_SIZE, NUMBER_OF_GENOMES, DATASET_LENGTH_SUM, new HashMap<>(),
-                new HashMap<>());
+        PatternScore patternScore = new PatternScore(MAX_GENOME_SIZE, NUMBER_OF_GENOMES, DATASET_LENGTH_SUM, new ParalogCounts());
 
         double score = patternScore.pvalCrossGenome(PATTERN_LENGTH, MAX_INSERTIONS, PARALOG_FREQUENCY, GENOMES_WITH_INSTANCE);
 
@@ -84,8 +90,7 @@ public class ScoreTest {
         int MAX_INSERTIONS = 100;
         int PARALOG_FREQUENCY = 1;
 
-        PatternScore patternScore = new PatternScore(MAX_GENOME_SIZE, NUMBER_OF_GENOMES, DATASET_LENGTH_SUM, new HashMap<>(),
-                new HashMap<>());
+        PatternScore patternScore = new PatternScore(MAX_GENOME_SIZE, NUMBER_OF_GENOMES, DATASET_LENGTH_SUM, new ParalogCounts());
 
         double score = patternScore.pvalCrossGenome(PATTERN_LENGTH, MAX_INSERTIONS, PARALOG_FREQUENCY, GENOMES_WITH_INSTANCE);
 
@@ -108,8 +113,7 @@ public class ScoreTest {
         double epsilon = 1;
 
         PatternScore patternScore = new PatternScore(MAX_GENOME_SIZE, NUMBER_OF_GENOMES, DATASET_LENGTH_SUM,
-                new HashMap<>(),
-                new HashMap<>());
+                new ParalogCounts());
 
         double score = patternScore.pvalCrossGenome(PATTERN_LENGTH, MAX_INSERTIONS, PARALOG_FREQUENCY, GENOMES_WITH_INSTANCE);
         Assert.assertEquals(607, score, epsilon);
@@ -157,4 +161,80 @@ public class ScoreTest {
         Assert.assertEquals(2, patternScore.calcCorrectedNumOfGenomes(genomeIds));
 
     }
+
+    @Test
+    public void testScoreCache() {
+        ScoreCache scoreCache = new ScoreCache(2);
+
+        List<Integer> letters = Arrays.asList(5, 3, 5);
+        List<Integer> permutedLetters = Arrays.asList(3, 5, 5);
+        List<Integer> genomeIds = Arrays.asList(0, 1);
+
+        double score = scoreCache.getScore(new ScoreCache.ScoreKey(letters, genomeIds, 0, 1), () -> 7);
+        Assert.assertEquals(7, score, 0);
+
+        //same letter multiset and genome set
+        score = scoreCache.getScore(new ScoreCache.ScoreKey(permutedLetters, Arrays.asList(1, 0), 0, 1), () -> 8);
+        Assert.assertEquals(7, score, 0);
+        Assert.assertEquals(1, scoreCache.getHits());
+
+        //different delta
+        score = scoreCache.getScore(new ScoreCache.ScoreKey(letters, genomeIds, 0, 0.5), () -> 9);
+        Assert.assertEquals(9, score, 0);
+
+        //evicts the least recently used entry
+        scoreCache.getScore(new ScoreCache.ScoreKey(letters, Arrays.asList(2), 0, 1), () -> 10);
+        Assert.assertEquals(2, scoreCache.size());
+        score = scoreCache.getScore(new ScoreCache.ScoreKey(letters, genomeIds, 0, 1), () -> 11);
+        Assert.assertEquals(11, score, 0);
+        Assert.assertEquals(0.2, scoreCache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testInstanceGenomeIds() {
+        Pattern pattern = new Pattern();
+        pattern.addInstanceLocation(new InstanceLocation(0, 3, 0, 1, Strand.FORWARD, 0, 10, 0));
+        pattern.addInstanceLocation(new InstanceLocation(0, 1, 0, 1, Strand.FORWARD, 0, 10, 0));
+        pattern.addInstanceLocation(new InstanceLocation(0, 3, 5, 1, Strand.FORWARD, 0, 10, 0));
+
+        GenomeSet genomeIds = pattern.getInstanceGenomeIds();
+        Assert.assertEquals(2, pattern.getInstancesPerGenomeCount());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(1, 3)), genomeIds);
+        Assert.assertEquals(1, genomeIds.get(0));
+        Assert.assertTrue(genomeIds.contains(3));
+        Assert.assertFalse(genomeIds.contains(2));
+        //cached until the locations change
+        Assert.assertSame(genomeIds, pattern.getInstanceGenomeIds());
+
+        pattern.addInstanceLocation(new InstanceLocation(0, 2, 0, 1, Strand.FORWARD, 0, 10, 0));
+        Assert.assertEquals(3, pattern.getInstancesPerGenomeCount());
+        Assert.assertTrue(pattern.getInstanceGenomeIds().contains(2));
+
+        ScoreCache.ScoreKey key = new ScoreCache.ScoreKey(Arrays.asList(1, 2), pattern.getInstanceGenomeIds(), 0, 1);
+        Assert.assertEquals(new ScoreCache.ScoreKey(Arrays.asList(1, 2), Arrays.asList(3, 2, 1), 0, 1), key);
+    }
+
+    @Test
+    public void testParalogCounts() {
+        ParalogCounts paralogCounts = new ParalogCounts();
+        paralogCounts.count(new WordArray(new int[]{8, 4, 8}), 1);
+        paralogCounts.count(new WordArray(new int[]{4}), 0);
+
+        Assert.assertEquals(2, paralogCounts.getParalogCount(1, 8));
+        Assert.assertEquals(0, paralogCounts.getParalogCount(0, 8));
+        Assert.assertEquals(0, paralogCounts.getParalogCount(5, 8));
+        Assert.assertEquals(2, paralogCounts.getContainingGenomes(4).cardinality());
+
+        //counted after a query, added to the previous counts
+        paralogCounts.count(new WordArray(new int[]{9, 8}), 1);
+        paralogCounts.count(new WordArray(new int[]{8}), 3);
+
+        Assert.assertEquals(3, paralogCounts.getParalogCount(1, 8));
+        Assert.assertEquals(1, paralogCounts.getParalogCount(1, 9));
+        Assert.assertEquals(1, paralogCounts.getParalogCount(0, 4));
+        Assert.assertEquals(1, paralogCounts.getParalogCount(3, 8));
+        Assert.assertTrue(paralogCounts.getContainingGenomes(8).get(3));
+        Assert.assertEquals(1, paralogCounts.getGenomesContainingAll(new int[]{4, 8}).cardinality());
+        Assert.assertTrue(paralogCounts.getGenomesContainingAll(new int[]{4, 7}).isEmpty());
+    }
 }
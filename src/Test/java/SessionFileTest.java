@@ -0,0 +1,300 @@
+import io.BinarySessionFile;
+import io.ColumnarFile;
+import io.ColumnarWriter;
+import io.ExcelWriter;
+import io.Parsers;
+import io.WriteUtils;
+import model.AlgorithmType;
+import model.CSBFinderWorkflow;
+import model.OutputType;
+import model.Parameters;
+import model.cogs.CogInfo;
+import model.genomes.GenomesInfo;
+import model.patterns.InstanceLocation;
+import model.patterns.Pattern;
+import model.postprocess.Family;
+import mvc.model.CSBFinderModel;
+import mvc.view.graphics.GeneColors;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ */
+public class SessionFileTest {
+
+    private final String PLASMID_GENOMES_FILE_PATH = this.getClass().getResource("/plasmid_genomes.fasta").getPath();
+
+    //the text session file rounds the scores
+    private static final double SCORE_DELTA = 0.0001;
+
+    private static final String ARGUMENTS = "-in plasmid_genomes.fasta -q 5 -ins 1";
+
+    private Parameters params;
+    private GenomesInfo gi;
+    private List<Family> families;
+    private GeneColors colors;
+
+    @Before
+    public void setUp() throws Exception {
+        params = new Parameters();
+        params.quorum2 = 5;
+        params.maxInsertion = 1;
+
+        gi = Parsers.parseGenomesFile(PLASMID_GENOMES_FILE_PATH, params.circular);
+        CSBFinderWorkflow workflow = new CSBFinderWorkflow(gi);
+        workflow.setAlgorithm(AlgorithmType.SUFFIX_TREE.getAlgorithm());
+        workflow.run(params);
+
+        families = workflow.getFamilies();
+
+        colors = new GeneColors();
+        colors.getColor("COG0001");
+        colors.getColor("COG0002");
+    }
+
+    @Test
+    public void testBinarySessionEqualsSession() throws Exception {
+
+        File sessionFile = createTempFile();
+        WriteUtils.saveSessionFile(families, gi, new CogInfo(), params, ARGUMENTS, colors, sessionFile);
+
+        File binarySessionFile = createTempFile();
+        WriteUtils.saveBinarySessionFile(families, gi, new CogInfo(), params, ARGUMENTS, colors, binarySessionFile);
+
+        Assert.assertFalse(BinarySessionFile.isBinarySessionFile(sessionFile.getPath()));
+        Assert.assertTrue(BinarySessionFile.isBinarySessionFile(binarySessionFile.getPath()));
+
+        Assert.assertArrayEquals(Parsers.parseSessionFileFirstLine(sessionFile.getPath()),
+                Parsers.parseSessionFileFirstLine(binarySessionFile.getPath()));
+
+        GenomesInfo expectedGenomes = new GenomesInfo();
+        List<Family> expected = new ArrayList<>();
+        GeneColors expectedColors = new GeneColors();
+        Parsers.parseSessionFile(expected, sessionFile.getPath(), expectedGenomes, expectedColors, params.circular);
+
+        GenomesInfo genomes = new GenomesInfo();
+        List<Family> loaded = new ArrayList<>();
+        GeneColors loadedColors = new GeneColors();
+        Parsers.parseSessionFile(loaded, binarySessionFile.getPath(), genomes, loadedColors, params.circular);
+
+        Assert.assertEquals(expectedGenomes.getNumberOfReplicons(), genomes.getNumberOfReplicons());
+        Assert.assertEquals(expectedColors.getColor("COG0001"), loadedColors.getColor("COG0001"));
+        Assert.assertEquals(colors.getColor("COG0002"), loadedColors.getColor("COG0002"));
+
+        assertSameFamilies(expected, expectedGenomes, loaded, genomes);
+    }
+
+    @Test
+    public void testParallelSessionParsingEqualsParsing() throws Exception {
+
+        File sessionFile = createTempFile();
+        WriteUtils.saveSessionFile(families, gi, new CogInfo(), params, ARGUMENTS, colors, sessionFile);
+
+        GenomesInfo expectedGenomes = new GenomesInfo();
+        List<Family> expected = new ArrayList<>();
+        Parsers.parseSessionFile(expected, sessionFile.getPath(), expectedGenomes, new GeneColors(), params.circular);
+
+        GenomesInfo genomes = new GenomesInfo();
+        List<Family> loaded = new ArrayList<>();
+        Parsers.parseSessionFile(loaded, sessionFile.getPath(), genomes, new GeneColors(), params.circular, 4);
+
+        assertSameFamilies(expected, expectedGenomes, loaded, genomes);
+    }
+
+    @Test
+    public void testParallelSessionWriterEqualsSessionWriter() throws Exception {
+
+        File sessionFile = createTempFile();
+        WriteUtils.saveSessionFile(families, gi, new CogInfo(), params, ARGUMENTS, colors, sessionFile);
+
+        params.procCount = 4;
+        File parallelSessionFile = createTempFile();
+        WriteUtils.saveSessionFile(families, gi, new CogInfo(), params, ARGUMENTS, colors, parallelSessionFile);
+
+        Assert.assertArrayEquals(Files.readAllBytes(sessionFile.toPath()),
+                Files.readAllBytes(parallelSessionFile.toPath()));
+    }
+
+    @Test
+    public void testColumnarFilesEqualSession() throws Exception {
+
+        File sessionFile = createTempFile();
+        WriteUtils.saveSessionFile(families, gi, new CogInfo(), params, ARGUMENTS, colors, sessionFile);
+
+        GenomesInfo expectedGenomes = new GenomesInfo();
+        List<Family> expected = new ArrayList<>();
+        Parsers.parseSessionFile(expected, sessionFile.getPath(), expectedGenomes, new GeneColors(), params.circular);
+
+        File directory = Files.createTempDirectory("columnar").toFile();
+        directory.deleteOnExit();
+        ColumnarWriter columnarWriter = new ColumnarWriter(directory + "/catalog", directory + "/instances", gi);
+        columnarWriter.write(families, new CogInfo());
+        new File(columnarWriter.getPath()).deleteOnExit();
+        new File(columnarWriter.getInstancesPath()).deleteOnExit();
+
+        Assert.assertTrue(ColumnarFile.isColumnarFile(columnarWriter.getPath()));
+        Assert.assertTrue(ColumnarFile.isColumnarFile(columnarWriter.getInstancesPath()));
+
+        List<Family> loaded = new ArrayList<>();
+        Parsers.parseColumnarFiles(loaded, columnarWriter.getPath(), columnarWriter.getInstancesPath(), gi);
+
+        assertSameFamilies(expected, expectedGenomes, loaded, gi);
+    }
+
+    @Test
+    public void testShardedExcelCatalogEqualsCatalog() throws Exception {
+
+        List<String> expected = new ArrayList<>();
+        families.forEach(family -> family.getPatterns().forEach(pattern -> expected.add(pattern.getPatternId())));
+
+        File directory = Files.createTempDirectory("xlsx").toFile();
+        directory.deleteOnExit();
+        ExcelWriter excelWriter = new ExcelWriter(false, true, directory + "/catalog", 4, 11);
+        excelWriter.writeHeader("ID\tLength");
+        excelWriter.write(families, new CogInfo());
+        excelWriter.closeFile();
+
+        List<String> paths = excelWriter.getShardPaths();
+        Assert.assertEquals((expected.size() + 9) / 10, paths.size());
+        Assert.assertEquals(excelWriter.getPath(), paths.get(0));
+        Assert.assertEquals(expected.size(), excelWriter.getCountPrintedPatterns());
+
+        List<String> ids = new ArrayList<>();
+        for (String path : paths) {
+            new File(path).deleteOnExit();
+            try (XSSFWorkbook workbook = new XSSFWorkbook(new File(path))) {
+                Sheet sheet = workbook.getSheet("Catalog");
+                Assert.assertEquals("ID", sheet.getRow(0).getCell(0).getStringCellValue());
+                Assert.assertTrue(sheet.getLastRowNum() <= 10);
+                for (int i = 1; i <= sheet.getLastRowNum(); i++) {
+                    Row row = sheet.getRow(i);
+                    ids.add(row.getCell(0).getStringCellValue());
+                }
+            }
+        }
+        Assert.assertEquals(expected, ids);
+    }
+
+    @Test
+    public void testSaveBinarySessionToLoadedFile() throws Exception {
+
+        File binarySessionFile = createTempFile();
+        WriteUtils.saveBinarySessionFile(families, gi, new CogInfo(), params, ARGUMENTS, colors, binarySessionFile);
+
+        GenomesInfo genomes = new GenomesInfo();
+        List<Family> loaded = new ArrayList<>();
+        Parsers.parseSessionFile(loaded, binarySessionFile.getPath(), genomes, new GeneColors(), params.circular);
+
+        //the instances of the loaded families are read from the file that is overwritten
+        WriteUtils.saveBinarySessionFile(loaded, genomes, new CogInfo(), params, ARGUMENTS, colors,
+                binarySessionFile);
+
+        GenomesInfo reloadedGenomes = new GenomesInfo();
+        List<Family> reloaded = new ArrayList<>();
+        Parsers.parseSessionFile(reloaded, binarySessionFile.getPath(), reloadedGenomes, new GeneColors(),
+                params.circular);
+
+        assertSameFamilies(loaded, genomes, reloaded, reloadedGenomes);
+    }
+
+    @Test
+    public void testSortedLocationsAreOrdered() {
+
+        for (Family family : families) {
+            for (Pattern pattern : family.getPatterns()) {
+                List<InstanceLocation> shuffled = new ArrayList<>(pattern.getPatternLocations().getInstanceLocations());
+                Collections.shuffle(shuffled, new Random(pattern.getLength()));
+
+                Pattern shuffledPattern = new Pattern(pattern.getPatternId(), pattern.getPatternGenes());
+                shuffled.forEach(shuffledPattern::addInstanceLocation);
+
+                List<InstanceLocation> expected = new ArrayList<>(shuffled);
+                expected.sort(Comparator.comparing(InstanceLocation::getGenomeId)
+                        .thenComparing(InstanceLocation::getRepliconId)
+                        .thenComparing(InstanceLocation::getActualStartIndex));
+
+                Assert.assertEquals(expected, shuffledPattern.getPatternLocations().getSortedLocations());
+            }
+        }
+    }
+
+    @Test
+    public void testModelSavesSessionInFormatOfExtension() throws Exception {
+        CSBFinderModel model = new CSBFinderModel();
+        List<Family> found = new ArrayList<>();
+        model.setCSBFinderDoneListener(e -> {
+            found.clear();
+            found.addAll(e.getFamilyList());
+        });
+        model.loadInputGenomesFile(PLASMID_GENOMES_FILE_PATH);
+        model.findCSBs(ARGUMENTS.replace("plasmid_genomes.fasta", PLASMID_GENOMES_FILE_PATH).split(" "));
+
+        //text is the default format of the user interface
+        File sessionFile = createTempFile();
+        model.saveSession(new ArrayList<>(found), sessionFile, colors);
+        Assert.assertFalse(BinarySessionFile.isBinarySessionFile(sessionFile.getPath()));
+
+        File binarySessionFile = File.createTempFile("session", "." + OutputType.BINARY_SESSION.extension);
+        binarySessionFile.deleteOnExit();
+        model.saveSession(new ArrayList<>(found), binarySessionFile, colors);
+        Assert.assertTrue(BinarySessionFile.isBinarySessionFile(binarySessionFile.getPath()));
+
+        model.loadSessionFile(binarySessionFile.getPath());
+        Assert.assertEquals(families.size(), found.size());
+    }
+
+    private File createTempFile() throws Exception {
+        File file = File.createTempFile("session", "." + OutputType.SESSION.extension);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private void assertSameFamilies(List<Family> expected, GenomesInfo expectedGenomes, List<Family> families,
+                                    GenomesInfo genomes){
+
+        Assert.assertEquals(expected.size(), families.size());
+
+        Map<Integer, Family> familiesById = new HashMap<>();
+        families.forEach(family -> familiesById.put(family.getFamilyId(), family));
+
+        for (Family expectedFamily : expected) {
+            Family family = familiesById.get(expectedFamily.getFamilyId());
+            Assert.assertNotNull(family);
+            Assert.assertEquals(expectedFamily.getScore(), family.getScore(), SCORE_DELTA);
+            Assert.assertEquals(expectedFamily.getPatterns().size(), family.getPatterns().size());
+
+            for (int i = 0; i < expectedFamily.getPatterns().size(); i++) {
+                Pattern expectedPattern = expectedFamily.getPatterns().get(i);
+                Pattern pattern = family.getPatterns().get(i);
+
+                Assert.assertEquals(expectedPattern.getPatternId(), pattern.getPatternId());
+                Assert.assertEquals(expectedPattern.toString(), pattern.toString());
+                Assert.assertEquals(expectedPattern.getScore(), pattern.getScore(), SCORE_DELTA);
+                Assert.assertEquals(expectedPattern.getInstancesPerGenomeCount(),
+                        pattern.getInstancesPerGenomeCount());
+                Assert.assertEquals(toStrings(expectedPattern, expectedGenomes), toStrings(pattern, genomes));
+            }
+        }
+    }
+
+    private List<String> toStrings(Pattern pattern, GenomesInfo genomesInfo){
+        List<String> locations = new ArrayList<>();
+        for (InstanceLocation location : pattern.getPatternLocations().getSortedLocations()) {
+            String genomeName = genomesInfo.getGenome(location.getGenomeId()).getName();
+            String repliconName = genomesInfo.getGenome(location.getGenomeId())
+                    .getReplicon(location.getRepliconId()).getName();
+            locations.add(String.format("%s|%s|[%d,%d]", genomeName, repliconName, location.getActualStartIndex(),
+                    location.getActualEndIndex()));
+        }
+        Collections.sort(locations);
+        return locations;
+    }
+}
@@ -24,6 +24,29 @@ public class TestReplicon {
         Assert.assertEquals(0, directon.getStartIndex());
     }
 
+    @Test
+    public void testSplitCircularToDirectonsWithMaxInstanceLength() {
+        Replicon replicon = new Replicon("", 0, 0, Strand.FORWARD, true);
+        replicon.addGene(new Gene("A", Strand.FORWARD));
+        replicon.addGene(new Gene("B", Strand.FORWARD));
+        replicon.addGene(new Gene("C", Strand.FORWARD));
+        replicon.addGene(new Gene("D", Strand.FORWARD));
+        replicon.addGene(new Gene("E", Strand.FORWARD));
+
+        List<Directon> directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR, 3);
+
+        Assert.assertEquals(1, directons.size());
+
+        Directon directon = directons.get(0);
+        Assert.assertEquals(0, directon.getStartIndex());
+        Assert.assertEquals(replicon.size() + 2, directon.getGenes().size());
+        Assert.assertEquals("A", directon.getGenes().get(5).getCogId());
+        Assert.assertEquals("B", directon.getGenes().get(6).getCogId());
+
+        Assert.assertEquals(2 * replicon.size() - 1,
+                replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR).get(0).getGenes().size());
+    }
+
     @Test
     public void testSplitToDirectonsX() {
 
@@ -108,4 +131,115 @@ public class TestReplicon {
         Assert.assertEquals(2, secondDirecton.getGenes().size());
         Assert.assertEquals(1, secondDirecton.size());
     }
+
+    @Test
+    public void testReverseComplementView() {
+        Replicon replicon = new Replicon("", 0, 0, Strand.FORWARD, false);
+        replicon.addGene(new Gene("A", Strand.FORWARD));
+        replicon.addGene(new Gene("B", Strand.REVERSE));
+        replicon.addGene(new Gene("C", Strand.FORWARD));
+
+        Replicon reverseComplement = replicon.reverseComplement();
+
+        Assert.assertEquals(Strand.REVERSE, reverseComplement.getStrand());
+        Assert.assertEquals(Replicon.reverseComplementGenes(replicon.getGenes(), replicon.getGeneTable()), reverseComplement.getGenes());
+        Assert.assertEquals(replicon.getGenes(), reverseComplement.reverseComplement().getGenes());
+
+        //the genes are shared objects
+        Assert.assertSame(replicon.getGeneTable().getGene("C", Strand.REVERSE), reverseComplement.getGenes().get(0));
+        Assert.assertSame(replicon.getGenes().get(1), replicon.getGeneTable().getGene("B", Strand.REVERSE));
+
+        try {
+            reverseComplement.addGene(new Gene("D", Strand.FORWARD));
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            Assert.assertEquals(3, reverseComplement.size());
+        }
+    }
+
+    @Test
+    public void testReverseDirectonView() {
+        Replicon replicon = new Replicon("", 0, 0, Strand.FORWARD, false);
+        replicon.addGene(new Gene("A", Strand.FORWARD));
+        replicon.addGene(new Gene("B", Strand.REVERSE));
+        replicon.addGene(new Gene("C", Strand.REVERSE));
+        replicon.addGene(new Gene("X", Strand.REVERSE));
+
+        List<Directon> directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR);
+
+        Assert.assertEquals(1, directons.size());
+        Directon directon = directons.get(0);
+        Assert.assertEquals(Strand.REVERSE, directon.getStrand());
+        Assert.assertEquals(1, directon.getStartIndex());
+        Assert.assertEquals(Arrays.asList(new Gene("C", Strand.INVALID), new Gene("B", Strand.INVALID)),
+                directon.getGenes());
+
+        //adding a gene to a view copies its genes
+        directon.addGene(new Gene("D", Strand.INVALID));
+        Assert.assertEquals(Arrays.asList(new Gene("D", Strand.INVALID), new Gene("C", Strand.INVALID),
+                new Gene("B", Strand.INVALID)), directon.getGenes());
+        Assert.assertEquals(new Gene("X", Strand.REVERSE), replicon.getGenes().get(3));
+    }
+
+    @Test
+    public void testCircularGenesView() {
+        Replicon replicon = new Replicon("", 0, 0, Strand.FORWARD, true);
+        for (int i = 0; i < 120; i++) {
+            Strand strand = i >= 70 && i < 80 ? Strand.REVERSE : Strand.FORWARD;
+            replicon.addGene(new Gene("COG" + i, strand));
+        }
+
+        List<Gene> genes = replicon.getGenes();
+        Assert.assertEquals(2 * replicon.size() - 1, genes.size());
+        Assert.assertSame(genes.get(5), genes.get(replicon.size() + 5));
+
+        List<Gene> wraparound = replicon.getGenes(10);
+        Assert.assertEquals(replicon.size() + 9, wraparound.size());
+        Assert.assertEquals(new Gene("COG8", Strand.FORWARD), wraparound.get(wraparound.size() - 1));
+        Assert.assertEquals(genes.size(), replicon.getGenes(Integer.MAX_VALUE).size());
+        Assert.assertEquals(replicon.size(), replicon.getGenes(1).size());
+
+        //the directon from index 80 spans the origin, and ends before index 70
+        Directon spanningDirecton = null;
+        for (Directon directon : replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR)) {
+            if (directon.getStartIndex() == 80) {
+                spanningDirecton = directon;
+            }
+        }
+        Assert.assertNotNull(spanningDirecton);
+        Assert.assertEquals(110, spanningDirecton.getGenes().size());
+        Assert.assertEquals(new Gene("COG69", Strand.INVALID), spanningDirecton.getGenes().get(109));
+    }
+
+    @Test
+    public void testReverseComplementId() {
+        Replicon replicon = new Replicon("", 0, 0, Strand.FORWARD, false);
+        replicon.addGene(new Gene("A", Strand.FORWARD));
+        Replicon reverseComplement = replicon.reverseComplement();
+
+        Assert.assertNotEquals(replicon.getId(), reverseComplement.getId());
+        Assert.assertEquals(-replicon.getId(), reverseComplement.getId());
+        Assert.assertNotEquals(replicon.getId(), new Replicon("", 1, 0, Strand.FORWARD, false).getId());
+    }
+
+    @Test
+    public void testDirectonsAfterAddingGenes() {
+        Replicon replicon = new Replicon("", 0, 0, Strand.FORWARD, false);
+        replicon.addGene(new Gene("A", Strand.FORWARD));
+        replicon.addGene(new Gene("B", Strand.FORWARD));
+        replicon.addGene(new Gene("C", Strand.REVERSE));
+
+        List<Directon> directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR);
+        Assert.assertEquals(1, directons.size());
+        Assert.assertEquals(directons.get(0).getGenes(),
+                replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR).get(0).getGenes());
+
+        replicon.addGene(new Gene("D", Strand.REVERSE));
+
+        directons = replicon.splitRepliconToDirectons(Alphabet.UNK_CHAR);
+        Assert.assertEquals(2, directons.size());
+        Assert.assertEquals(2, directons.get(1).getStartIndex());
+        Assert.assertEquals(Arrays.asList(new Gene("D", Strand.INVALID), new Gene("C", Strand.INVALID)),
+                directons.get(1).getGenes());
+    }
 }